@@ -0,0 +1,75 @@
+/*
+ * Copyright 2011 Ikarus, René Kübler, Andreas J.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ai;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Replaces files atomically: the new content is written to a temporary
+ * file next to the target, which is then renamed, so readers never see a
+ * partly written file.
+ *
+ * @see ScoreMatrix#write(java.nio.file.Path, int, int)
+ * @see GeneticParameters#put(int, int, boolean, GeneticParameters)
+ */
+final class AtomicFile {
+
+    /**
+     * Writes the new content of a file.
+     */
+    interface Content {
+        /**
+         * Write the content.
+         *
+         * @param tmp The temporary file. It does not exist yet, create it
+         * (e.g. with StandardOpenOption.CREATE_NEW).
+         * @throws IOException If writing failed.
+         */
+        void write(Path tmp) throws IOException;
+    }
+
+    /**
+     * No instances. This class only has static functions.
+     */
+    private AtomicFile() {
+    }
+
+    /**
+     * Replace a file (or create it).
+     *
+     * @param file The file.
+     * @param content Writes the new content.
+     * @throws IOException If writing or renaming failed. The file is
+     * unchanged then.
+     */
+    static void write(Path file, Content content) throws IOException {
+        // Not Files.createTempFile(): other users have to be able to read.
+        Path tmp = file.resolveSibling(file.getFileName() + "."
+                + ProcessHandle.current().pid() + ".tmp");
+        try {
+            content.write(tmp);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+}
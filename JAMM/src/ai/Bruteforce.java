@@ -30,10 +30,6 @@ public class Bruteforce implements SolvingAlgorithm {
      * The ControlInterface to work with.
      */
     private ControlInterface ci;
-    /**
-      * Holding the guess
-      */
-    Row guess;
     /**
      * Width of the Row
      */
@@ -46,25 +42,15 @@ public class Bruteforce implements SolvingAlgorithm {
      * Allowance of same colors
      */
     private boolean doubleColors;
-    /**
-     * Arrays of colors holding all colors (allCols)
-     * and the colors used in the running game (allowedCols).
-     */
-    Color[] allowedCols;
-    Color[] allCols;
 
     /**
      * Initialize the AI with settings from the Mastermind engine.
      */
     public Bruteforce(ControlInterface ci){
+        this.ci = ci;
         width = ci.getSettingWidth();
         colQuant = ci.getSettingColQuant();
         doubleColors = ci.getSettingDoubleCol();
-        guess = new Row(width);
-        //Prepare values to fit colorQuant-rule
-        allowedCols = new Color[colQuant];
-        allCols = Color.values();
-        System.arraycopy(allCols, 0, allowedCols, 0, colQuant);
     }
     
     /**
@@ -74,74 +60,53 @@ public class Bruteforce implements SolvingAlgorithm {
      * 
      * @return -1 = Game ended and code was not broken. <br />
      * 1 = Game ended an code was broken. <br />
-     * 0 = Just a normal turn or game already ended.
-     * @see ControlInterface#turn() 
+     * 0 = Just a normal turn. <br />
+     * ControlInterface.STALE_TURN = The game changed while the guess was
+     * generated, the guess was not played.
+     * @see ControlInterface#submitTurn(int, int[])
      */
     public int makeGuess(){
+        int row = ci.getActiveRowNumber();
         Row tmp = generateGuess();
-        Debug.dbgPrint("Code generiert.");
-        ci.writeToGameField(tmp.getColors());
-        return ci.turn();
+        Log.debug("Code generiert.");
+        return ci.submitTurn(row, tmp.getPegs());
     }
 
     /**
-     * Generate a guess by "incrementing" the previous guess.
+     * Generate a guess by "incrementing" the previous guess of the game.
      * If no previous guess available generate "lowest" possible guess.
-     * (Every color is given a value what makes it possible to generate
+     * (The pegs are the color indices, what makes it possible to generate
      * a "lowest" guess and to "increment" a guess.)
+     * The guess only depends on the game history, so the algorithm is
+     * deterministic (see StrategyEvaluator).
      * @return The generated guess.
      */
     public Row generateGuess(){
+        int row = ci.getActiveRowNumber();
+        int[] tmp = new int[width];
         // First try?
-        int col=0;
-        if(ci.getActiveRowNumber() == 0){
-            Debug.dbgPrint("First try.");
-            //fill guess with the first Color(s)
+        if(row == 0){
+            Log.debug("First try.");
+            //fill guess with the first color(s)
             for(int i=0; i < width; i++){
-                guess.setColorAtPos(i, allowedCols[col]);
-                col = doubleColors?0:col++;
+                tmp[i] = doubleColors ? 0 : i;
             }
-            return guess;
+            return CodePool.row(tmp, colQuant);
         }
-        Debug.dbgPrint("Not first try.");
+        Log.debug("Not first try.");
         // Later try?
-        boolean carry = true;
-        Color[] tmp = guess.getColors();
-        int index;
-        for(int i=tmp.length-1; i>=0; i--){
-            if(!carry){
-                break;
-            }
-            index = findColorIndex(allowedCols,tmp[i]);
-            if(++index < allowedCols.length){
-                tmp[i] = allowedCols[index];
-                carry = false;
+        tmp = ci.getGameFieldRow(row - 1).getPegs();
+        do {
+            boolean carry = true;
+            for(int i=tmp.length-1; i>=0 && carry; i--){
+                if(++tmp[i] < colQuant){
+                    carry = false;
+                }
+                else{
+                    tmp[i] = 0;
+                }
             }
-            else{
-                tmp[i] = allowedCols[0];
-                carry = true;
-            }
-        }
-        if(!doubleColors && guess.containsDoubleColor()){
-            return generateGuess();
-        }
-        return guess;
-    }
-    
-    /**
-     * Search for a Color in an array and return its index.
-     * @param ca The array within we want to do a search.
-     * @param c The Color to be found.
-     * @return Index of the Color, "-1" if not found.
-     */
-    private int findColorIndex(Color[] ca, Color c){
-        int i=0;
-        while(i<ca.length){
-            if(ca[i]==c){
-                return i;
-            }
-            i++;
-        }
-        return -1;
+        } while(!doubleColors && new Row(tmp).containsDoubleColor());
+        return CodePool.row(tmp, colQuant);
     }
 }
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2011 Ikarus, René Kübler, Andreas J.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ai;
+
+import game.ControlInterface;
+
+/**
+ * The providers of the solving algorithms of JAMM.
+ * They are listed in META-INF/services/ai.SolverProvider.
+ *
+ * @see SolverRegistry
+ */
+public final class BuiltinSolvers {
+
+    /**
+     * No instances. This class only holds the providers.
+     */
+    private BuiltinSolvers() {
+    }
+
+    /**
+     * The genetic algorithm (GeneticSolver).
+     */
+    public static final class Genetic implements SolverProvider {
+        public String getName() {
+            return "genetic";
+        }
+
+        public SolvingAlgorithm create(ControlInterface ci) {
+            return new GeneticSolver(ci);
+        }
+
+        public boolean supports(int width, int colQuant,
+                boolean doubleColors) {
+            return true;
+        }
+
+        public Strength getStrength() {
+            return Strength.CONSISTENT;
+        }
+
+        public boolean isDeterministic() {
+            return false;
+        }
+
+        public double estimateCost(long codes) {
+            // The population is fixed, more codes need more generations.
+            return 10 * Math.log10(codes + 1);
+        }
+    }
+
+    /**
+     * The candidate based solver sharing its guesses between the games
+     * (CandidateSolver with GuessCache.shared()). Only this deterministic
+     * solver is cached: a cached randomized solver would play the same
+     * guesses in every game.
+     */
+    public static final class Cached implements SolverProvider {
+        private final Exact exact = new Exact();
+
+        public String getName() {
+            return "cached";
+        }
+
+        public SolvingAlgorithm create(ControlInterface ci) {
+            return create(ci, SolverCaches.shared());
+        }
+
+        public SolvingAlgorithm create(ControlInterface ci,
+                SolverCaches caches) {
+            return new CachingSolver(ci, exact.create(ci, caches),
+                    caches.getGuesses());
+        }
+
+        public boolean supports(int width, int colQuant,
+                boolean doubleColors) {
+            return exact.supports(width, colQuant, doubleColors);
+        }
+
+        public Strength getStrength() {
+            return exact.getStrength();
+        }
+
+        public boolean isDeterministic() {
+            return true;
+        }
+
+        public double estimateCost(long codes) {
+            // Like exact, but common histories are looked up.
+            return exact.estimateCost(codes) / 2;
+        }
+    }
+
+    /**
+     * The candidate based solver (CandidateSolver). Its guesses are only
+     * optimal in small end games, "exact" refers to the candidate set.
+     */
+    public static final class Exact implements SolverProvider {
+        public String getName() {
+            return "exact";
+        }
+
+        public SolvingAlgorithm create(ControlInterface ci) {
+            return create(ci, SolverCaches.shared());
+        }
+
+        public SolvingAlgorithm create(ControlInterface ci,
+                SolverCaches caches) {
+            return new CandidateSolver(ci, caches.getTable());
+        }
+
+        public boolean supports(int width, int colQuant,
+                boolean doubleColors) {
+            return Math.pow(colQuant, width) <= MappedCandidateSet.MAX_CODES;
+        }
+
+        public Strength getStrength() {
+            return Strength.ENDGAME_SEARCH;
+        }
+
+        public boolean isDeterministic() {
+            return true;
+        }
+
+        public double estimateCost(long codes) {
+            // Every guess filters all codes once per played row.
+            return 0.05 + 0.0003 * codes;
+        }
+    }
+
+    /**
+     * Random guesses (RandomGuesses).
+     */
+    public static final class Random implements SolverProvider {
+        public String getName() {
+            return "random";
+        }
+
+        public SolvingAlgorithm create(ControlInterface ci) {
+            return new RandomGuesses(ci);
+        }
+
+        public boolean supports(int width, int colQuant,
+                boolean doubleColors) {
+            return true;
+        }
+
+        public Strength getStrength() {
+            return Strength.BLIND;
+        }
+
+        public boolean isDeterministic() {
+            return false;
+        }
+
+        public double estimateCost(long codes) {
+            return 0.01;
+        }
+    }
+
+    /**
+     * All codes in order (Bruteforce).
+     */
+    public static final class Brute implements SolverProvider {
+        public String getName() {
+            return "bruteforce";
+        }
+
+        public SolvingAlgorithm create(ControlInterface ci) {
+            return new Bruteforce(ci);
+        }
+
+        public boolean supports(int width, int colQuant,
+                boolean doubleColors) {
+            return true;
+        }
+
+        public Strength getStrength() {
+            return Strength.BLIND;
+        }
+
+        public boolean isDeterministic() {
+            return true;
+        }
+
+        public double estimateCost(long codes) {
+            return 0.01;
+        }
+    }
+}
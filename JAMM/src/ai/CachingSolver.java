@@ -0,0 +1,85 @@
+/*
+ * Copyright 2011 Ikarus, René Kübler, Andreas J.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ai;
+
+import common.*;
+import game.ControlInterface;
+import game.History;
+
+/**
+ * A solving algorithm which looks up its guesses in a GuessCache first.
+ * Only if the history of the game is not cached, the guess is searched by
+ * another solving algorithm and then cached. Games with the same history
+ * (e.g. the same opening) share the search this way.<br />
+ * The wrapped algorithm should be deterministic: the first guess found for
+ * a history is used by every game sharing the cache, so a randomized
+ * algorithm would lose its variation (see SolverProvider.isDeterministic()).
+ *
+ * @see GuessCache
+ */
+public class CachingSolver implements SolvingAlgorithm {
+    private final ControlInterface ci;
+    private final SolvingAlgorithm solver;
+    private final GuessCache cache;
+
+    /**
+     * Initialize the AI.
+     *
+     * @param ci A control interface the AI will use to
+     * interact with a game.
+     * @param solver The solving algorithm which searches guesses which are
+     * not cached. Its strategy identifies the cached guesses.
+     * @see SolvingAlgorithm#getStrategy()
+     * @param cache The cache.
+     */
+    public CachingSolver(ControlInterface ci, SolvingAlgorithm solver,
+            GuessCache cache) {
+        this.ci = ci;
+        this.solver = solver;
+        this.cache = cache;
+    }
+
+    /**
+     * Do a full guess on the Mastermind engine.
+     *
+     * @return The state of the submitTurn() function.
+     * @see ControlInterface#submitTurn(int, int[])
+     */
+    public int makeGuess() {
+        int row = ci.getActiveRowNumber();
+        Row guess = generateGuess();
+        return ci.submitTurn(row, guess.getPegs());
+    }
+
+    /**
+     * Get the cached guess for the history of the game or search it.
+     *
+     * @return The guess.
+     */
+    public Row generateGuess() {
+        History history = ci.history();
+        Object strategy = solver.getStrategy();
+        Row guess = cache.get(strategy, history);
+        if (guess == null) {
+            guess = solver.generateGuess();
+            cache.put(strategy, history, guess);
+        }
+        return guess;
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2011 Ikarus, René Kübler, Andreas J.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ai;
+
+import common.*;
+import game.History;
+import java.util.Arrays;
+
+/**
+ * The set of codes which can still be the secret code of a game
+ * (the candidates). The codes of a game configuration are numbered by
+ * their rank (the pegs are the digits, base colQuant, position 0 is the
+ * lowest digit, see CodePool).<br />
+ * Every set has a Zobrist hash: the XOR of a random 64 bit key for the
+ * configuration and for every code which is no candidate. It is updated
+ * while candidates are removed, so equal sets of different histories are
+ * found fast (see TranspositionTable).<br />
+ * Sets are immutable and can be shared between threads.
+ *
+ * @see MappedCandidateSet
+ * @see RoaringCandidateSet
+ */
+public interface CandidateSet {
+
+    /**
+     * Getter for the game width.
+     *
+     * @return The width of the codes.
+     */
+    public int getWidth();
+
+    /**
+     * Getter for the color quantity.
+     *
+     * @return The quantity of colors.
+     */
+    public int getColQuant();
+
+    /**
+     * Getter for the number of codes of the configuration.
+     *
+     * @return colQuant ^ width.
+     */
+    public long capacity();
+
+    /**
+     * Getter for the number of candidates.
+     *
+     * @return The size of the set.
+     */
+    public long size();
+
+    /**
+     * Check if a code is a candidate.
+     *
+     * @param rank The rank of the code.
+     * @return True if the code is in the set.
+     */
+    public boolean contains(long rank);
+
+    /**
+     * Find the next candidate.
+     *
+     * @param rank The rank to start from.
+     * @return The rank of the first candidate >= rank. -1 if there is none.
+     */
+    public long next(long rank);
+
+    /**
+     * Build the set of the candidates which would have got a feedback
+     * for a guess.
+     *
+     * @param guess The packed guess.
+     * @param feedback The feedback.
+     * @return The new set.
+     * @see common.Feedback
+     */
+    public CandidateSet filter(long guess, int feedback);
+
+    /**
+     * Getter for the Zobrist hash.
+     *
+     * @return The hash of the set.
+     */
+    public long getHash();
+
+    /**
+     * Get the packed code of a rank.
+     *
+     * @param rank The rank.
+     * @return The packed code.
+     * @see common.Codes
+     */
+    public default long code(long rank) {
+        int colQuant = getColQuant();
+        int bits = Codes.bitsPerPeg(colQuant);
+        long code = 0;
+        for (int i = 0; i < getWidth(); i++) {
+            code |= (rank % colQuant) << (i * bits);
+            rank /= colQuant;
+        }
+        return code;
+    }
+
+    /**
+     * Get the rank of a packed code.
+     *
+     * @param code The packed code.
+     * @return The rank.
+     */
+    public default long rank(long code) {
+        int colQuant = getColQuant();
+        int bits = Codes.bitsPerPeg(colQuant);
+        long mask = (1L << bits) - 1;
+        long rank = 0;
+        for (int i = getWidth() - 1; i >= 0; i--) {
+            rank = rank * colQuant + (int) (code >>> (i * bits) & mask);
+        }
+        return rank;
+    }
+
+    /**
+     * Take candidates evenly spread over the set (e.g. to rate guesses on
+     * very large sets).
+     *
+     * @param max The max. number of candidates to take.
+     * @return The packed codes of all candidates if there are not more
+     * than max, otherwise of up to max of them.
+     */
+    public default long[] sample(int max) {
+        long size = size();
+        int n = (int) Math.min(size, max);
+        long[] sample = new long[n];
+        int count = 0;
+        if (size <= max) {
+            for (long rank = next(0); rank >= 0; rank = next(rank + 1)) {
+                sample[count++] = code(rank);
+            }
+            return sample;
+        }
+        // Take the first candidate behind evenly spread ranks.
+        long last = -1;
+        for (int i = 0; i < n; i++) {
+            long rank = next(Math.max(last + 1, i * (capacity() / n)));
+            if (rank < 0) {
+                break;
+            }
+            sample[count++] = code(rank);
+            last = rank;
+        }
+        return count == n ? sample : Arrays.copyOf(sample, count);
+    }
+
+    /**
+     * Get the Zobrist key of a code.
+     *
+     * @param rank The rank of the code.
+     * @return The random (but fixed) key of the code.
+     */
+    public static long zobrist(long rank) {
+        return mix(rank + 0x9E3779B97F4A7C15L);
+    }
+
+    /**
+     * Get the Zobrist key of a configuration. It is part of the hash of
+     * every set, so sets of different configurations differ.
+     *
+     * @param width The game width.
+     * @param colQuant The quantity of colors.
+     * @param doubleColors Allowance of same colors.
+     * @return The key of the configuration.
+     */
+    public static long zobrist(int width, int colQuant, boolean doubleColors) {
+        return mix(-((width * 256L + colQuant) * 2 + (doubleColors ? 1 : 0)));
+    }
+
+    /**
+     * Mix the bits of a number (the finalizer of SplitMix64).
+     *
+     * @param z The number.
+     * @return The mixed number.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Build the candidates of a game.
+     *
+     * @param history The history of the game.
+     * @return The codes which are consistent with the history.
+     * The candidates are stored compressed (see RoaringCandidateSet).
+     * Configurations with more than RoaringCandidateSet.MAX_CODES codes are
+     * stored in memory-mapped files until the set is small enough to be
+     * compressed.
+     * @throws IllegalArgumentException If the configuration has more than
+     * MappedCandidateSet.MAX_CODES codes.
+     */
+    public static CandidateSet of(History history) {
+        int width = history.getWidth();
+        int colQuant = history.getColQuant();
+        long capacity = 1;
+        for (int i = 0; i < width && capacity <= MappedCandidateSet.MAX_CODES;
+                i++) {
+            capacity *= colQuant;
+        }
+        CandidateSet set = capacity <= RoaringCandidateSet.MAX_CODES
+                ? RoaringCandidateSet.all(width, colQuant,
+                        history.getDoubleCol())
+                : MappedCandidateSet.all(width, colQuant,
+                        history.getDoubleCol());
+        for (int i = 0; i < history.getDepth(); i++) {
+            SearchTask.checkpoint();
+            SearchTask.progress(i, -1, set.size());
+            PhaseEvent event = PhaseEvent.start("CandidateSet.filter", width,
+                    colQuant, i);
+            try {
+                // The mapped sets are only used here: reuse their files.
+                set = set instanceof MappedCandidateSet
+                        ? ((MappedCandidateSet) set).replace(
+                                history.getGuess(i), history.getFeedback(i))
+                        : set.filter(history.getGuess(i),
+                                history.getFeedback(i));
+                if (set instanceof MappedCandidateSet && set.size()
+                        <= capacity / RoaringCandidateSet.PARTITION_DENSITY) {
+                    set = RoaringCandidateSet.copyOf(set);
+                }
+            } finally {
+                event.commit();
+            }
+        }
+        return set;
+    }
+}
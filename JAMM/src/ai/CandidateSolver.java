@@ -0,0 +1,267 @@
+/*
+ * Copyright 2011 Ikarus, René Kübler, Andreas J.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ai;
+
+import common.*;
+import game.ControlInterface;
+import game.History;
+import java.util.Arrays;
+
+/**
+ * A deterministic solving algorithm working on the set of candidates
+ * (the codes which can still be the secret code).
+ * Only candidates are guessed. This is a heuristic with an exact end game:
+ * if there are few candidates left, the guess is searched exactly: it
+ * minimizes the total number of guesses needed to solve every candidate.
+ * Search results are stored in a TranspositionTable, so a candidate set is
+ * only searched once, no matter by which history it was reached. For more
+ * candidates, the guess which splits the candidates into the most parts
+ * (by feedback) is chosen.
+ *
+ * @see CandidateSet
+ * @see TranspositionTable
+ */
+public class CandidateSolver implements SolvingAlgorithm {
+    /**
+     * Max. number of candidates for which the guess is searched exactly.
+     */
+    private final int EXACT_LIMIT = 64;
+    /**
+     * Max. number of guesses rated by the heuristic.
+     */
+    private final int MAX_RATED_GUESSES = 1000;
+    /**
+     * Max. number of candidates the heuristic compares a guess with.
+     */
+    private final int MAX_RATED_CANDIDATES = 2000;
+    private final ControlInterface ci;
+    private final TranspositionTable table;
+    private final int width;
+    private final int colQuant;
+    private final int bits;
+
+    /**
+     * Initialize the AI with settings from the Mastermind engine.
+     * The transposition table is shared with all other searches.
+     *
+     * @param ci A control interface the AI will use to
+     * interact with a game.
+     */
+    public CandidateSolver(ControlInterface ci) {
+        this(ci, TranspositionTable.shared());
+    }
+
+    /**
+     * Initialize the AI with settings from the Mastermind engine.
+     *
+     * @param ci A control interface the AI will use to
+     * interact with a game.
+     * @param table The transposition table for the search results.
+     */
+    public CandidateSolver(ControlInterface ci, TranspositionTable table) {
+        this.ci = ci;
+        this.table = table;
+        width = ci.getSettingWidth();
+        colQuant = ci.getSettingColQuant();
+        bits = Codes.bitsPerPeg(colQuant);
+    }
+
+    /**
+     * Do a full guess on the Mastermind engine.
+     * This includes to generate a guess, pass it to the engine
+     * and do a full game turn.
+     *
+     * @return The state of the submitTurn() function.
+     * @see ControlInterface#submitTurn(int, int[])
+     */
+    public int makeGuess() {
+        int row = ci.getActiveRowNumber();
+        Row guess = generateGuess();
+        return ci.submitTurn(row, guess.getPegs());
+    }
+
+    /**
+     * Generate the next guess from the candidates of the game.
+     *
+     * @return The guess.
+     */
+    public Row generateGuess() {
+        History history = ci.history();
+        PhaseEvent event = PhaseEvent.start("CandidateSolver.search", width,
+                colQuant, history.getDepth());
+        try {
+            CandidateSet candidates = CandidateSet.of(history);
+            SearchTask.progress(-1, -1, candidates.size());
+            if (candidates.size() == 0) {
+                // The results were wrong. Guess anything.
+                return new RandomGuesses(ci).generateGuess();
+            }
+            long guess = candidates.size() <= EXACT_LIMIT
+                    ? search(candidates).guess : mostParts(candidates);
+            Row row = Codes.unpack(guess, width, bits);
+            CodePool pool = CodePool.get(width, colQuant);
+            return pool != null ? pool.intern(row) : row;
+        } finally {
+            event.commit();
+        }
+    }
+
+    /**
+     * Search the guess which needs the fewest guesses in total to solve
+     * every candidate.
+     *
+     * @param candidates The candidates (not empty).
+     * @return The best guess and its score (the total number of guesses).
+     */
+    private TranspositionTable.Entry search(CandidateSet candidates) {
+        int n = (int) candidates.size();
+        if (n == 1) {
+            return new TranspositionTable.Entry(candidates.getHash(),
+                    candidates.code(candidates.next(0)), 1, 1);
+        }
+        TranspositionTable.Entry known = table.get(candidates.getHash());
+        // The table is shared and keyed by a 64 bit hash only. Check that
+        // the entry can belong to this set before trusting it.
+        if (known != null && known.size == n
+                && candidates.contains(candidates.rank(known.guess))) {
+            return known;
+        }
+        SearchTask.checkpoint();
+        long[] codes = candidates.sample(n);
+        int win = key(Feedback.of(width, 0));
+        int[] counts = new int[(width + 1) * (width + 1)];
+        long bestGuess = codes[0];
+        int best = Integer.MAX_VALUE;
+        for (long guess : byParts(codes)) {
+            partition(guess, codes, counts);
+            // Every part of size p needs at least 2p - 1 guesses.
+            int bound = n;
+            for (int key = 0; key < counts.length; key++) {
+                if (key != win && counts[key] > 0) {
+                    bound += 2 * counts[key] - 1;
+                }
+            }
+            for (int key = 0; key < counts.length && bound < best; key++) {
+                if (key != win && counts[key] > 1) {
+                    int score = search(candidates.filter(guess,
+                            feedback(key))).score;
+                    bound += score - (2 * counts[key] - 1);
+                }
+            }
+            if (bound < best) {
+                best = bound;
+                bestGuess = guess;
+            }
+        }
+        TranspositionTable.Entry entry = new TranspositionTable.Entry(
+                candidates.getHash(), bestGuess, best, n);
+        table.put(entry);
+        return entry;
+    }
+
+    /**
+     * Choose the guess which splits the candidates into the most parts.
+     * For many candidates only a sample of guesses and candidates is
+     * compared.
+     *
+     * @param candidates The candidates (not empty).
+     * @return The guess.
+     */
+    private long mostParts(CandidateSet candidates) {
+        long[] guesses = candidates.sample(MAX_RATED_GUESSES);
+        long[] codes = candidates.sample(MAX_RATED_CANDIDATES);
+        int[] counts = new int[(width + 1) * (width + 1)];
+        long bestGuess = guesses[0];
+        int best = -1;
+        int rated = 0;
+        for (long guess : guesses) {
+            SearchTask.checkpoint();
+            SearchTask.progress(rated++, -1, candidates.size());
+            int parts = partition(guess, codes, counts);
+            if (parts > best) {
+                best = parts;
+                bestGuess = guess;
+            }
+        }
+        return bestGuess;
+    }
+
+    /**
+     * Sort guesses by the number of parts they split the candidates into,
+     * most parts first. Good guesses are searched first this way, so more
+     * of the others can be skipped.
+     *
+     * @param codes The candidates.
+     * @return The candidates, sorted.
+     */
+    private long[] byParts(long[] codes) {
+        int[] counts = new int[(width + 1) * (width + 1)];
+        // Parts in the high bits, index in the low bits.
+        long[] order = new long[codes.length];
+        for (int i = 0; i < codes.length; i++) {
+            order[i] = ((long) -partition(codes[i], codes, counts) << 32) | i;
+        }
+        Arrays.sort(order);
+        long[] sorted = new long[codes.length];
+        for (int i = 0; i < codes.length; i++) {
+            sorted[i] = codes[(int) order[i]];
+        }
+        return sorted;
+    }
+
+    /**
+     * Count the candidates for every feedback of a guess.
+     *
+     * @param guess The packed guess.
+     * @param codes The candidates.
+     * @param counts Gets the number of candidates by feedback key.
+     * @return The number of different feedbacks.
+     */
+    private int partition(long guess, long[] codes, int[] counts) {
+        Arrays.fill(counts, 0);
+        int parts = 0;
+        for (long code : codes) {
+            if (counts[key(Codes.feedback(guess, code, width, bits))]++ == 0) {
+                parts++;
+            }
+        }
+        return parts;
+    }
+
+    /**
+     * Index of a feedback in the count arrays.
+     *
+     * @param feedback The feedback.
+     * @return blacks * (width + 1) + whites.
+     */
+    private int key(int feedback) {
+        return Feedback.blacks(feedback) * (width + 1)
+                + Feedback.whites(feedback);
+    }
+
+    /**
+     * Feedback of an index of the count arrays.
+     *
+     * @param key The index.
+     * @return The feedback.
+     */
+    private int feedback(int key) {
+        return Feedback.of(key / (width + 1), key % (width + 1));
+    }
+}
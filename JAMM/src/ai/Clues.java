@@ -19,6 +19,7 @@ package ai;
 
 import common.*;
 import game.ControlInterface;
+import game.History;
 
 /**
  * Check if a guess is valide or makes no sense in context
@@ -45,54 +46,10 @@ public class Clues {
      * @return True if guess is good. Otherwise false.
      */
     public static boolean isFeasible(ControlInterface ci, Row row) {
-        for (int i = 0; i < ci.getActiveRowNumber(); i++) {
-            int[] result = compare(row,
-                    ci.getGameFieldRow(i));
-
-            if (result[0] != ci.getResultRow(i)
-                    .containsColor(Color.Black) ||
-                    result[1] != ci.getResultRow(i)
-                    .containsColor(Color.White)) {
-                return false;
-            }
-        }
-        return true;
-    }
-    
-    /**
-     * Compare two Rows to another.
-     * @param a The guess Row.
-     * @param b The secret code Row.
-     * @return [0] is the number of black pegs, [1] is the number of white pegs.
-     */
-    private static int[] compare(Row a, Row b) {
-        int[] result = {0, 0};
-        Color[] code = new Color[a.width()];
-        Color[] secret = new Color[code.length];
-        // Create real copy.
-        System.arraycopy(a.getColors(), 0, code, 0, code.length);
-        System.arraycopy(b.getColors(), 0, secret, 0, code.length);
-
-        for (int i = 0; i < code.length; i++) {
-            if (code[i] == secret[i]) {
-                result[0]++;
-                secret[i] = null;
-                code[i] = null;
-            }
-        }
-        
-        outer:
-        for (int i = 0; i < code.length; i++) {
-            if (code[i] != null) {
-                for (int j = 0; j < code.length; j++) {
-                    if (code[i] == secret[j]) {
-                        result[1]++;
-                        secret[j] = null;
-                        continue outer;
-                    }
-                }
-            }
-        }
-        return result;
+        // No flight recorder event: a single check is far too short and
+        // may be called in loops.
+        History history = ci.history();
+        return history.isConsistent(
+                Codes.pack(row, history.getBitsPerPeg()));
     }
 }
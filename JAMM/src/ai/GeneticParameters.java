@@ -0,0 +1,419 @@
+/*
+ * Copyright 2011 Ikarus, René Kübler, Andreas J.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ai;
+
+import common.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * The parameters of the genetic solving algorithm: the sizes of the
+ * population and the generations, the rates of the genetic operators and
+ * the part of the population used as parents.<br />
+ * The std. parameters (DEFAULTS) are the ones of the paper for 4 x 6.
+ * GeneticTuner searches better parameters for a configuration and saves
+ * them to the parameter file (see getFile()). GeneticSolver uses the saved
+ * parameters of its configuration if there are any.
+ *
+ * @see GeneticSolver
+ * @see GeneticTuner
+ */
+public final class GeneticParameters {
+    /**
+     * The std. parameters: a population of 2000, 500 generations, 0.03
+     * chance for mutation, 0.03 for permutation, 0.02 for inversion, 0.5
+     * probability for both crossovers and the best fifth as parents.
+     */
+    public static final GeneticParameters DEFAULTS =
+            new GeneticParameters(2000, 500, 0.03, 0.03, 0.02, 0.5, 0.2);
+    /**
+     * System property which overrides the location of the parameter file.
+     */
+    public static final String FILE_PROPERTY = "jamm.genetic.parameters";
+    /**
+     * The names of the parameters in the parameter file.
+     */
+    private static final String[] KEYS = {"populationSize",
+        "generationSize", "mutationRate", "permutationRate",
+        "inversionRate", "xOver1Rate", "eliteFraction"};
+    /**
+     * The content of the parameter file. Null if it is not read yet.
+     */
+    private static Properties saved;
+    private final int populationSize;
+    private final int generationSize;
+    private final double mutationRate;
+    private final double permutationRate;
+    private final double inversionRate;
+    private final double xOver1Rate;
+    private final double eliteFraction;
+
+    /**
+     * Create a set of parameters.
+     *
+     * @param populationSize Size of the population within a generation
+     * (an even number, at least 2).
+     * @param generationSize Max. number of generations per population.
+     * @param mutationRate Chance for a mutation of a child.
+     * @param permutationRate Chance for a permutation of a child (if it is
+     * not mutated).
+     * @param inversionRate Chance for an inversion of a child (if it is
+     * neither mutated nor permuted).
+     * @param xOver1Rate Probability of the one-point crossover. The
+     * two-point crossover is used otherwise.
+     * @param eliteFraction The part of the population (sorted by fitness)
+     * the parents are chosen from.
+     * @throws IllegalArgumentException If a parameter is out of range.
+     */
+    public GeneticParameters(int populationSize, int generationSize,
+            double mutationRate, double permutationRate, double inversionRate,
+            double xOver1Rate, double eliteFraction) {
+        if (populationSize < 2 || populationSize % 2 != 0
+                || generationSize < 1 || isRate(mutationRate) == false
+                || isRate(permutationRate) == false
+                || isRate(inversionRate) == false
+                || isRate(xOver1Rate) == false
+                || eliteFraction <= 0 || eliteFraction > 1) {
+            throw new IllegalArgumentException("Invalid genetic parameters");
+        }
+        this.populationSize = populationSize;
+        this.generationSize = generationSize;
+        this.mutationRate = mutationRate;
+        this.permutationRate = permutationRate;
+        this.inversionRate = inversionRate;
+        this.xOver1Rate = xOver1Rate;
+        this.eliteFraction = eliteFraction;
+    }
+
+    /**
+     * Getter for the size of the population.
+     *
+     * @return The number of codes of a generation.
+     */
+    public int getPopulationSize() {
+        return populationSize;
+    }
+
+    /**
+     * Getter for the number of generations.
+     *
+     * @return The max. number of generations before a new population is
+     * created.
+     */
+    public int getGenerationSize() {
+        return generationSize;
+    }
+
+    /**
+     * Getter for the mutation rate.
+     *
+     * @return The chance for a mutation.
+     */
+    public double getMutationRate() {
+        return mutationRate;
+    }
+
+    /**
+     * Getter for the permutation rate.
+     *
+     * @return The chance for a permutation.
+     */
+    public double getPermutationRate() {
+        return permutationRate;
+    }
+
+    /**
+     * Getter for the inversion rate.
+     *
+     * @return The chance for an inversion.
+     */
+    public double getInversionRate() {
+        return inversionRate;
+    }
+
+    /**
+     * Getter for the crossover mix.
+     *
+     * @return The probability of the one-point crossover.
+     */
+    public double getXOver1Rate() {
+        return xOver1Rate;
+    }
+
+    /**
+     * Getter for the elite fraction.
+     *
+     * @return The part of the population the parents are chosen from.
+     */
+    public double getEliteFraction() {
+        return eliteFraction;
+    }
+
+    /**
+     * Get the number of codes the parents are chosen from.
+     *
+     * @return The size of the elite (at least 1).
+     */
+    public int getEliteSize() {
+        return Math.max(1, (int) (populationSize * eliteFraction));
+    }
+
+    /**
+     * Create random parameters. With a neighbourhood the parameters are
+     * varied by up to +-25 % around it, otherwise they are taken from the
+     * whole search space.
+     *
+     * @param random The random numbers.
+     * @param around The neighbourhood. Null for the whole search space.
+     * @return The parameters.
+     */
+    static GeneticParameters random(Random random, GeneticParameters around) {
+        if (around == null) {
+            return new GeneticParameters(
+                    even(100 + random.nextInt(3901)),
+                    20 + random.nextInt(981),
+                    random.nextDouble() * 0.1,
+                    random.nextDouble() * 0.1,
+                    random.nextDouble() * 0.1,
+                    random.nextDouble(),
+                    0.05 + random.nextDouble() * 0.45);
+        }
+        return new GeneticParameters(
+                even(Math.max(2, (int) vary(random, around.populationSize))),
+                Math.max(1, (int) vary(random, around.generationSize)),
+                Math.min(1, vary(random, around.mutationRate)),
+                Math.min(1, vary(random, around.permutationRate)),
+                Math.min(1, vary(random, around.inversionRate)),
+                Math.min(1, vary(random, around.xOver1Rate)),
+                Math.max(0.01, Math.min(1,
+                        vary(random, around.eliteFraction))));
+    }
+
+    /**
+     * Get the parameters for a configuration.
+     *
+     * @param width The game width.
+     * @param colQuant The quantity of colors.
+     * @param doubleColors Allowance of same colors.
+     * @return The saved parameters of the configuration. DEFAULTS if there
+     * are none (or they are invalid).
+     */
+    public static synchronized GeneticParameters get(int width, int colQuant,
+            boolean doubleColors) {
+        if (saved == null) {
+            saved = read(getFile());
+        }
+        String prefix = prefix(width, colQuant, doubleColors);
+        if (saved.getProperty(prefix + KEYS[0]) == null) {
+            return DEFAULTS;
+        }
+        try {
+            return new GeneticParameters(
+                    Integer.parseInt(saved.getProperty(prefix + KEYS[0])),
+                    Integer.parseInt(saved.getProperty(prefix + KEYS[1])),
+                    Double.parseDouble(saved.getProperty(prefix + KEYS[2])),
+                    Double.parseDouble(saved.getProperty(prefix + KEYS[3])),
+                    Double.parseDouble(saved.getProperty(prefix + KEYS[4])),
+                    Double.parseDouble(saved.getProperty(prefix + KEYS[5])),
+                    Double.parseDouble(saved.getProperty(prefix + KEYS[6])));
+        } catch (RuntimeException e) {
+            // A missing, unparsable or out of range value.
+            Log.error("Invalid genetic parameters for {}", prefix);
+            return DEFAULTS;
+        }
+    }
+
+    /**
+     * Save the parameters of a configuration to the parameter file.
+     * The parameters of other configurations are kept. The file is
+     * replaced atomically (see AtomicFile).
+     *
+     * @param width The game width.
+     * @param colQuant The quantity of colors.
+     * @param doubleColors Allowance of same colors.
+     * @param parameters The parameters.
+     * @throws IOException If writing failed.
+     */
+    public static synchronized void put(int width, int colQuant,
+            boolean doubleColors, GeneticParameters parameters)
+            throws IOException {
+        Path file = getFile();
+        // Reread the file, it may have been changed by another process.
+        Properties properties = read(file);
+        String prefix = prefix(width, colQuant, doubleColors);
+        String[] values = {
+            Integer.toString(parameters.populationSize),
+            Integer.toString(parameters.generationSize),
+            Double.toString(parameters.mutationRate),
+            Double.toString(parameters.permutationRate),
+            Double.toString(parameters.inversionRate),
+            Double.toString(parameters.xOver1Rate),
+            Double.toString(parameters.eliteFraction)};
+        for (int i = 0; i < KEYS.length; i++) {
+            properties.setProperty(prefix + KEYS[i], values[i]);
+        }
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        AtomicFile.write(file, tmp -> {
+            try (OutputStream out = Files.newOutputStream(tmp,
+                    StandardOpenOption.CREATE_NEW)) {
+                properties.store(out, "JAMM genetic parameters "
+                        + "(<width>x<colors>[d].<parameter>)");
+            }
+        });
+        saved = properties;
+    }
+
+    /**
+     * Get the location of the parameter file: the system property
+     * FILE_PROPERTY or ".jamm/genetic.properties" in the home directory.
+     *
+     * @return The path of the parameter file.
+     */
+    public static Path getFile() {
+        String file = System.getProperty(FILE_PROPERTY);
+        if (file != null) {
+            return Paths.get(file);
+        }
+        return Paths.get(System.getProperty("user.home"), ".jamm",
+                "genetic.properties");
+    }
+
+    /**
+     * Compare the parameters with other parameters.
+     *
+     * @param o The other parameters.
+     * @return True if all parameters are equal.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o instanceof GeneticParameters == false) {
+            return false;
+        }
+        GeneticParameters p = (GeneticParameters) o;
+        return populationSize == p.populationSize
+                && generationSize == p.generationSize
+                && mutationRate == p.mutationRate
+                && permutationRate == p.permutationRate
+                && inversionRate == p.inversionRate
+                && xOver1Rate == p.xOver1Rate
+                && eliteFraction == p.eliteFraction;
+    }
+
+    /**
+     * Get the hash code of the parameters.
+     *
+     * @return The hash code.
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(populationSize, generationSize, mutationRate,
+                permutationRate, inversionRate, xOver1Rate, eliteFraction);
+    }
+
+    /**
+     * Build a readable list of the parameters.
+     *
+     * @return The parameters.
+     */
+    @Override
+    public String toString() {
+        return String.format("population %d, generations %d, mutation %.4f, "
+                + "permutation %.4f, inversion %.4f, one-point crossover "
+                + "%.2f, elite %.3f", populationSize, generationSize,
+                mutationRate, permutationRate, inversionRate, xOver1Rate,
+                eliteFraction);
+    }
+
+    /**
+     * Read the parameter file.
+     *
+     * @param file The file.
+     * @return The content. Empty if there is no (readable) file.
+     */
+    private static Properties read(Path file) {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        } catch (NoSuchFileException e) {
+            // Nothing tuned yet.
+        } catch (IOException e) {
+            Log.error("Could not read genetic parameters: {}", e);
+        }
+        return properties;
+    }
+
+    /**
+     * Get the prefix of the keys of a configuration, e.g. "4x6d." for 4 x 6
+     * with double colors.
+     *
+     * @param width The game width.
+     * @param colQuant The quantity of colors.
+     * @param doubleColors Allowance of same colors.
+     * @return The prefix.
+     */
+    private static String prefix(int width, int colQuant,
+            boolean doubleColors) {
+        return width + "x" + colQuant + (doubleColors ? "d" : "") + ".";
+    }
+
+    /**
+     * Check if a value is a probability.
+     *
+     * @param rate The value.
+     * @return True if it is within 0 and 1.
+     */
+    private static boolean isRate(double rate) {
+        return rate >= 0 && rate <= 1;
+    }
+
+    /**
+     * Vary a value randomly by up to +-25 %.
+     *
+     * @param random The random numbers.
+     * @param value The value.
+     * @return The varied value.
+     */
+    private static double vary(Random random, double value) {
+        return value * (0.75 + random.nextDouble() * 0.5);
+    }
+
+    /**
+     * Round a number up to the next even number.
+     *
+     * @param n The number.
+     * @return n or n + 1.
+     */
+    private static int even(int n) {
+        return n + (n & 1);
+    }
+}
@@ -19,7 +19,10 @@ package ai;
 
 import common.*;
 import game.ControlInterface;
+import game.History;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 
 /**
  * A genetic solving algorithm.
@@ -32,16 +35,21 @@ import java.util.ArrayList;
  */
 public class GeneticSolver implements SolvingAlgorithm {
 
+    /**
+     * The population and generation sizes and the rates of the genetic
+     * operators.
+     */
+    private final GeneticParameters parameters;
     /**
      * Size of the population within a generation.
      */
-    private final int POPULATION_SIZE = 2000;
+    private final int populationSize;
     /**
      * Number of generations. If no feasible code was found after all
      * generations, a new guess with new generations and populations will be
      * made.
      */
-    private final int GENERATION_SIZE = 500;
+    private final int generationSize;
     /**
      * Max. amount of feasible codes. Feasible codes are good guesses. If the
      * max. of feasible codes are found, the solver stops and take a turn with
@@ -54,43 +62,84 @@ public class GeneticSolver implements SolvingAlgorithm {
     private int width;
     private int colorQuant;
     private boolean doubleColors;
-    private Row[] population = new Row[POPULATION_SIZE];
-    private int[] fitness = new int[POPULATION_SIZE];
-    private int[] blacks;
-    private int[] whites;
+    private Row[] population;
+    private int[] fitness;
+    /**
+     * The history of the game the guess is generated for.
+     */
+    private History history;
+    /**
+     * The shared codes of the game configuration. Null if the code space
+     * is too large to be pooled.
+     */
+    private CodePool pool;
     private ArrayList<Row> feasibleCodes = new ArrayList<Row>();
     private int parentPos = 0;
 
     /**
      * Initialize the AI with settings from the Mastermind engine.
+     * The saved parameters of the game configuration are used (see
+     * GeneticParameters.get()).
      *
      * @param ci A control interface the AI will use to
      * interact with a game.
      */
     public GeneticSolver(ControlInterface ci) {
+        this(ci, GeneticParameters.get(ci.getSettingWidth(),
+                ci.getSettingColQuant(), ci.getSettingDoubleCol()));
+    }
+
+    /**
+     * Initialize the AI with settings from the Mastermind engine and the
+     * given parameters.
+     *
+     * @param ci A control interface the AI will use to
+     * interact with a game.
+     * @param parameters The parameters of the genetic algorithm.
+     */
+    public GeneticSolver(ControlInterface ci, GeneticParameters parameters) {
         this.ci = ci;
+        this.parameters = parameters;
         width = ci.getSettingWidth();
         colorQuant = ci.getSettingColQuant();
         doubleColors = ci.getSettingDoubleCol();
-        population = new Row[POPULATION_SIZE];
-        fitness = new int[POPULATION_SIZE];
-        blacks = new int[ci.getSettingMaxTries()];
-        whites = new int[ci.getSettingMaxTries()];
+        populationSize = parameters.getPopulationSize();
+        generationSize = parameters.getGenerationSize();
+        population = new Row[populationSize];
+        fitness = new int[populationSize];
+        pool = CodePool.get(width, colorQuant);
         initResults();
     }
 
     /**
-     * Initialize the arrays "blacks" and "whites" with values from the
-     * GameField. The arrays "blacks" and "whites" are needed to accelerate
-     * the processing.
+     * Getter for the parameters of the genetic algorithm.
+     *
+     * @return The parameters.
+     */
+    public GeneticParameters getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Identifies the strategy in a GuessCache. Solvers with other
+     * parameters (e.g. tuned ones) do not share their guesses.
+     *
+     * @return The class and the parameters.
+     */
+    @Override
+    public Object getStrategy() {
+        return Arrays.asList(GeneticSolver.class, parameters);
+    }
+
+    /**
+     * Read the history (guesses and results) of the game.
+     * The history is needed to accelerate the processing: the guesses are
+     * packed and the results are primitive values.
+     *
+     * @see ControlInterface#history()
      */
     public void initResults() {
-        for (int i = 0; i < ci.getActiveRowNumber(); i++) {
-            blacks[i] = ci.getResultRow(i)
-                    .containsColor(Color.Black);
-            whites[i] = ci.getResultRow(i)
-                    .containsColor(Color.White);
-        }
+        history = ci.history();
     }
 
     /**
@@ -100,20 +149,22 @@ public class GeneticSolver implements SolvingAlgorithm {
      *
      * @return -1 = Game ended and code was not broken. <br />
      * 1 = Game ended an code was broken. <br />
-     * 0 = Just a normal turn or the game already ended.
-     * @see ControlInterface#turn()
+     * 0 = Just a normal turn. <br />
+     * ControlInterface.STALE_TURN = The game changed while the guess was
+     * generated, the guess was not played.
+     * @see ControlInterface#submitTurn(int, int[])
      */
     public int makeGuess() {
+        int row = ci.getActiveRowNumber();
         Row guess = generateGuess();
-        ci.writeToGameField(guess.getColors());
-        int[] result = compare(guess, ci.getSecretCode());
-        blacks[ci.getActiveRowNumber()] = result[0];
-        whites[ci.getActiveRowNumber()] = result[1];
-        return ci.turn();
+        return ci.submitTurn(row, guess.getPegs());
     }
 
     /**
      * Create new generations until enough egible codes are found.
+     * The results of the game are reread first, so turns which were not
+     * made by makeGuess() are taken into account. If the guess is generated
+     * in the background, the search can be cancelled after every generation.
      *
      * @return An egible guess.
      *
@@ -122,46 +173,51 @@ public class GeneticSolver implements SolvingAlgorithm {
      * @see #sortFeasibleByFitness(int[], common.Row[])
      * @see #evolvePopulation()
      * @see #addToFeasibleCodes()
+     * @see SearchTask#checkpoint()
      */
     public Row generateGuess() {
         Row guess = new Row(width);
         boolean doCalc;
+        initResults();
         // First guess?
-        if (ci.getActiveRowNumber() == 0) {
+        if (history.getDepth() == 0) {
             return generateRndGuess();
         }
         do {
+            SearchTask.checkpoint();
             int genNumber = 0;
             doCalc = true;
             initPopulation();
             calcFitness();
             sortFeasibleByFitness(fitness, population);
 
-            while (doCalc == true && genNumber <= GENERATION_SIZE
+            while (doCalc == true && genNumber <= generationSize
                     && feasibleCodes.size() <= FEASIBLE_CODES_MAX) {
+                SearchTask.checkpoint();
                 parentPos = 0;
                 evolvePopulation();
                 calcFitness();
                 sortFeasibleByFitness(fitness, population);
                 doCalc = addToFeasibleCodes();
                 genNumber++;
+                SearchTask.progress(genNumber, fitness[0], -1);
             }
             if (feasibleCodes.isEmpty() == true) {
-                Debug.dbgPrint("AI: No feasible code found. "
+                Log.debug("AI: No feasible code found. "
                         + "Retry with new population");
             }
         } while (feasibleCodes.isEmpty() == true);
         // Choose guess.
-        Debug.dbgPrint("AI: There are " + feasibleCodes.size() +
-                " feasible code(s)");
+        Log.debug("AI: There are {} feasible code(s)",
+                feasibleCodes.size());
         guess = feasibleCodes.get((int) (Math.random() * feasibleCodes.size()));
-        Debug.dbgPrint("AI: guess is " + guess);
+        Log.debug("AI: guess is {}", guess);
         return guess;
     }
 
     /**
      * Evolve the population using cross over, mutation, permutation and
-     * inversion.
+     * inversion. The probabilities are given by the parameters, std.:
      * 0.5 probability for both xOver1 and xOver2
      * after the crossover
      * 0.03 chance for mutation
@@ -178,31 +234,39 @@ public class GeneticSolver implements SolvingAlgorithm {
      * @see #inversion(common.Row[], int)
      */
     private void evolvePopulation() {
-        Row[] newPopulation = new Row[POPULATION_SIZE];
-        for (int i = 0; i < POPULATION_SIZE; i++) {
+        PhaseEvent event = startPhase("GeneticSolver.evolvePopulation");
+        Row[] newPopulation = new Row[populationSize];
+        for (int i = 0; i < populationSize; i++) {
             newPopulation[i] = new Row(width);
         }
-        for (int i = 0; i < POPULATION_SIZE; i += 2) {
-            if ((int) (Math.random() * 2) == 0) {
+        for (int i = 0; i < populationSize; i += 2) {
+            if (Math.random() < parameters.getXOver1Rate()) {
                 xOver1(newPopulation, i, i + 1);
             } else {
                 xOver2(newPopulation, i, i + 1);
             }
         }
 
-        for (int i = 0; i < POPULATION_SIZE; i++) {
-            if ((int) (Math.random() * 100) < 3) {
+        for (int i = 0; i < populationSize; i++) {
+            if (Math.random() < parameters.getMutationRate()) {
                 mutation(newPopulation, i);
-            } else if ((int) (Math.random() * 100) < 3) {
+            } else if (Math.random() < parameters.getPermutationRate()) {
                 permutation(newPopulation, i);
-            } else if ((int) (Math.random() * 100) < 2) {
+            } else if (Math.random() < parameters.getInversionRate()) {
                 inversion(newPopulation, i);
             }
         }
 
+        if (pool != null) {
+            // Share the codes, so that comparing them is cheap.
+            for (int i = 0; i < populationSize; i++) {
+                newPopulation[i] = pool.intern(newPopulation[i]);
+            }
+        }
         doubleToRnd(newPopulation);
 
         population = newPopulation;
+        event.commit();
     }
 
     /**
@@ -215,62 +279,48 @@ public class GeneticSolver implements SolvingAlgorithm {
      * @return False if feasibleCodes is full. Otherwise true.
      */
     private boolean addToFeasibleCodes() {
-        outer:
-        for (int i = 0; i < POPULATION_SIZE; i++) {
-            for (int j = 0; j < ci.getActiveRowNumber(); j++) {
-                int[] result = compare(population[i],
-                        ci.getGameFieldRow(j));
-
-                if (result[0] != blacks[j] || result[1] != whites[j]) {
-                    continue outer;
+        PhaseEvent event = startPhase("GeneticSolver.addToFeasibleCodes");
+        try {
+            int bits = history.getBitsPerPeg();
+            for (int i = 0; i < populationSize; i++) {
+                if (history.isConsistent(Codes.pack(population[i], bits))
+                        == false) {
+                    continue;
                 }
-            }
 
-            if (feasibleCodes.size() < FEASIBLE_CODES_MAX) {
-                if (feasibleCodes.contains(population[i]) == false) {
-                    feasibleCodes.add(population[i]);
-                    if (feasibleCodes.size() < FEASIBLE_CODES_MAX) {
-                        return false;
+                if (feasibleCodes.size() < FEASIBLE_CODES_MAX) {
+                    if (feasibleCodes.contains(population[i]) == false) {
+                        feasibleCodes.add(population[i]);
+                        if (feasibleCodes.size() < FEASIBLE_CODES_MAX) {
+                            return false;
+                        }
                     }
+                } else {
+                    // E is full.
+                    return false;
                 }
-            } else {
-                // E is full.
-                return false;
             }
+            return true;
+        } finally {
+            event.commit();
         }
-        return true;
     }
 
     /**
-     * Replaces double elements in newPopulation.
+     * Replaces elements in newPopulation which are already in the
+     * (old) population by random Rows.
      *
      * @param newPopulation The population array that will be manipulated.
      */
     private void doubleToRnd(Row[] newPopulation) {
-        for (int i = 0; i < POPULATION_SIZE; i++) {
-            if (lookForSame(newPopulation, i) == true) {
+        HashSet<Row> old = new HashSet<Row>(Arrays.asList(population));
+        for (int i = 0; i < populationSize; i++) {
+            if (old.contains(newPopulation[i]) == true) {
                 newPopulation[i] = generateRndGuess();
             }
         }
     }
 
-    /**
-     * Look for Rows that are equal to the Row at popPos in newPopulation.
-     *
-     * @param newPopulation The population array that will be searched.
-     * @param popPos The position of the Row within the population array that
-     * will be compared.
-     * @return true if equal Row found. false if no equal Row found.
-     */
-    private boolean lookForSame(Row[] newPopulation, int popPos) {
-        for (int i = 0; i < POPULATION_SIZE; i++) {
-            if (population[popPos].equals(newPopulation[popPos]) == true) {
-                return true;
-            }
-        }
-        return false;
-    }
-
     /**
      * Mutation. Replaces the color of one randomly chosen position by a random
      * other color.
@@ -280,8 +330,8 @@ public class GeneticSolver implements SolvingAlgorithm {
      * will be changed.
      */
     private void mutation(Row[] newPopulation, int popPos) {
-        newPopulation[popPos].setColorAtPos((int) (Math.random() * width),
-                Color.values()[(int) (Math.random() * colorQuant)]);
+        newPopulation[popPos].setPeg((int) (Math.random() * width),
+                (int) (Math.random() * colorQuant));
     }
 
     /**
@@ -294,10 +344,10 @@ public class GeneticSolver implements SolvingAlgorithm {
     private void permutation(Row[] newPopulation, int popPos) {
         int pos1 = (int) (Math.random() * width);
         int pos2 = (int) (Math.random() * width);
-        Color tmp = newPopulation[popPos].getColorAtPos(pos1);
-        newPopulation[popPos].setColorAtPos(pos1,
-                newPopulation[popPos].getColorAtPos(pos2));
-        newPopulation[popPos].setColorAtPos(pos2, tmp);
+        int tmp = newPopulation[popPos].getPeg(pos1);
+        newPopulation[popPos].setPeg(pos1,
+                newPopulation[popPos].getPeg(pos2));
+        newPopulation[popPos].setPeg(pos2, tmp);
     }
 
     /**
@@ -319,10 +369,10 @@ public class GeneticSolver implements SolvingAlgorithm {
         }
 
         for (int i = 0; i < (pos2 - pos1)/2; i++) {
-            Color tmp = newPopulation[popPos].getColorAtPos(pos1 + i);
-            newPopulation[popPos].setColorAtPos(pos1 + i,
-                    newPopulation[popPos].getColorAtPos(pos2 - i));
-            newPopulation[popPos].setColorAtPos(pos2 - i, tmp);
+            int tmp = newPopulation[popPos].getPeg(pos1 + i);
+            newPopulation[popPos].setPeg(pos1 + i,
+                    newPopulation[popPos].getPeg(pos2 - i));
+            newPopulation[popPos].setPeg(pos2 - i, tmp);
         }
     }
 
@@ -348,15 +398,15 @@ public class GeneticSolver implements SolvingAlgorithm {
 
         for (int i = 0; i < width; i++) {
             if (i <= sep) {
-                newPopulation[child1Pos].setColorAtPos(i,
-                        population[mother].getColorAtPos(i));
-                newPopulation[child2Pos].setColorAtPos(i,
-                        population[father].getColorAtPos(i));
+                newPopulation[child1Pos].setPeg(i,
+                        population[mother].getPeg(i));
+                newPopulation[child2Pos].setPeg(i,
+                        population[father].getPeg(i));
             } else {
-                newPopulation[child1Pos].setColorAtPos(i,
-                        population[father].getColorAtPos(i));
-                newPopulation[child2Pos].setColorAtPos(i,
-                        population[mother].getColorAtPos(i));
+                newPopulation[child1Pos].setPeg(i,
+                        population[father].getPeg(i));
+                newPopulation[child2Pos].setPeg(i,
+                        population[mother].getPeg(i));
             }
         }
     }
@@ -392,15 +442,15 @@ public class GeneticSolver implements SolvingAlgorithm {
 
         for (int i = 0; i < width; i++) {
             if (i <= sep1 || i > sep2) {
-                newPopulation[child1Pos].setColorAtPos(i,
-                        population[mother].getColorAtPos(i));
-                newPopulation[child2Pos].setColorAtPos(i,
-                        population[father].getColorAtPos(i));
+                newPopulation[child1Pos].setPeg(i,
+                        population[mother].getPeg(i));
+                newPopulation[child2Pos].setPeg(i,
+                        population[father].getPeg(i));
             } else {
-                newPopulation[child1Pos].setColorAtPos(i,
-                        population[father].getColorAtPos(i));
-                newPopulation[child2Pos].setColorAtPos(i,
-                        population[mother].getColorAtPos(i));
+                newPopulation[child1Pos].setPeg(i,
+                        population[father].getPeg(i));
+                newPopulation[child2Pos].setPeg(i,
+                        population[mother].getPeg(i));
             }
         }
 
@@ -408,16 +458,17 @@ public class GeneticSolver implements SolvingAlgorithm {
 
     /**
      * Getter for a good parent position in the population.
-     * In this case the one of the best fifth of the population is used.
+     * In this case the one of the best part (std. the best fifth, see
+     * GeneticParameters.getEliteFraction()) of the population is used.
      * It is important that only parents with a good fitness value are used to
      * generate the next generation.
      *
-     * @return One position in the first fifth of the population-array
+     * @return One position in the first part of the population-array
      * successively increasing.
      */
     private int getParentPos() {
         parentPos += (int) (Math.random() * 7);
-        if (parentPos < POPULATION_SIZE / 5) {
+        if (parentPos < parameters.getEliteSize()) {
             return parentPos;
         } else {
             parentPos = 0;
@@ -436,63 +487,24 @@ public class GeneticSolver implements SolvingAlgorithm {
      * on page 6.
      */
     private void calcFitness() {
-        int xtmp;
-        int ytmp;
-        for (int i = 0; i < POPULATION_SIZE; i++) {
-            xtmp = 0;
-            ytmp = 0;
-            for (int j = 0; j < ci.getActiveRowNumber(); j++) {
-                int[] result = compare(
-                        population[i], ci.getGameFieldRow(j));
-                xtmp += Math.abs(result[0] - blacks[j]);//+width * j;
-                ytmp += Math.abs(result[1] - whites[j]);//+width * j;
-            }
-            fitness[i] = (xtmp + ytmp);
+        PhaseEvent event = startPhase("GeneticSolver.calcFitness");
+        int bits = history.getBitsPerPeg();
+        for (int i = 0; i < populationSize; i++) {
+            fitness[i] = history.distance(Codes.pack(population[i], bits));
         }
+        event.commit();
     }
 
     /**
-     * Compares two Rows.
-     * result[0] is incremented if an equal value(color) is at an equal position.
-     * result[1] is incremented if an equal value is an different positions.
-     * result[0] are the black pegs.
-     * result[1] are the white pegs.
-     *<a href="http://en.wikipedia.org/wiki/Mastermind_%28board_game%29#Gameplay_and_rules">
-     * Mastermind Rules</a>
+     * Start a flight recorder event for a phase of this solver.
      *
-     * @param a Row Guesscode.
-     * @param b Row Secretcode.
-     * @return [0] is the number of black pegs, [1] is the number of white pegs.
-     */
-    private int[] compare(Row a, Row b) {
-        int[] result = {0, 0};
-        Color[] code = new Color[width];
-        Color[] secret = new Color[width];
-        // Create real copy.
-        System.arraycopy(a.getColors(), 0, code, 0, width);
-        System.arraycopy(b.getColors(), 0, secret, 0, width);
-
-        for (int i = 0; i < width; i++) {
-            if (code[i] == secret[i]) {
-                result[0]++;
-                secret[i] = null;
-                code[i] = null;
-            }
-        }
-
-        outer:
-        for (int i = 0; i < width; i++) {
-            if (code[i] != null) {
-                for (int j = 0; j < width; j++) {
-                    if (code[i] == secret[j]) {
-                        result[1]++;
-                        secret[j] = null;
-                        continue outer;
-                    }
-                }
-            }
-        }
-        return result;
+     * @param phase The name of the phase.
+     * @return The started event.
+     * @see PhaseEvent
+     */
+    private PhaseEvent startPhase(String phase) {
+        return PhaseEvent.start(phase, width, colorQuant,
+                history.getDepth());
     }
 
     /**
@@ -501,12 +513,14 @@ public class GeneticSolver implements SolvingAlgorithm {
      */
     private void initPopulation() {
         // Init population with random guesses.
+        PhaseEvent event = startPhase("GeneticSolver.initPopulation");
         int i = 0;
         feasibleCodes.clear();
-        while (i < POPULATION_SIZE) {
+        while (i < populationSize) {
             population[i] = generateRndGuess();
             i++;
         }
+        event.commit();
     }
 
     /**
@@ -524,23 +538,18 @@ public class GeneticSolver implements SolvingAlgorithm {
      */
     private Row generateRndGuess() {
         Row guess = new Row(width);
-        //Prepare values to fit colorQuant-rule
-        Color[] values = new Color[colorQuant];
-        Color[] all = Color.values();
-        System.arraycopy(all, 0, values, 0, colorQuant);
-        //Do the actual code generation...
         int i = 0;
         while (i < width) {
-            Color now = values[(int) (Math.random() * colorQuant)];
-            if (guess.containsColor(now) > 0) {
+            int now = (int) (Math.random() * colorQuant);
+            if (guess.containsPeg(now) > 0) {
                 if (doubleColors == true) {
-                    guess.setColorAtPos(i++, now);
+                    guess.setPeg(i++, now);
                 }
             } else {
-                guess.setColorAtPos(i++, now);
+                guess.setPeg(i++, now);
             }
         }
-        return guess;
+        return pool != null ? pool.intern(guess) : guess;
     }
 
     /**
@@ -555,7 +564,9 @@ public class GeneticSolver implements SolvingAlgorithm {
      * @see #swap(int[], int, int)
      */
     private void sortFeasibleByFitness(int[] fitness, Row[] pop) {
+        PhaseEvent event = startPhase("GeneticSolver.sort");
         sort(fitness, pop, 0, fitness.length - 1);
+        event.commit();
     }
 
     /**
@@ -0,0 +1,328 @@
+/*
+ * Copyright 2011 Ikarus, René Kübler, Andreas J.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ai;
+
+import common.*;
+import game.ControlInterface;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Searches the parameters of the genetic solving algorithm for a game
+ * configuration. The constants of the paper are tuned for 4 x 6, larger
+ * configurations need other sizes and rates.<br />
+ * Every trial plays the same sample of random secret codes with one set of
+ * parameters, the games are played in parallel. The best parameters are
+ * the ones with the shortest time per guess whose average number of
+ * guesses stays within a bound (std. the average of the current parameters
+ * plus STD_SLACK) without losing a game. The candidates are random: half
+ * of them from the whole search space, half near the best ones so far.
+ *
+ * @see GeneticParameters
+ */
+public class GeneticTuner {
+    /**
+     * Std. allowance for the average number of guesses, relative to the
+     * average of the current parameters (2 % worse).
+     */
+    public static final double STD_SLACK = 1.02;
+    /**
+     * Max. number of guesses of a tuning game. A lost game rules out the
+     * parameters.
+     */
+    private static final int TUNING_TRIES = 50;
+    /**
+     * A trial is aborted if it needs more than this factor times the
+     * guessing time of the best trial so far.
+     */
+    private static final int ABORT_FACTOR = 2;
+    private final int width;
+    private final int colQuant;
+    private final boolean doubleColors;
+    /**
+     * The secret codes every trial plays against.
+     */
+    private final int[][] secrets;
+    private final Random random;
+
+    /**
+     * Create a tuner for a configuration.
+     *
+     * @param width The game width.
+     * @param colQuant The quantity of colors.
+     * @param doubleColors Allowance of same colors.
+     * @param games The number of games played per trial.
+     * @param seed The seed of the secret codes and the candidates.
+     * @throws IllegalArgumentException If the settings are invalid.
+     */
+    public GeneticTuner(int width, int colQuant, boolean doubleColors,
+            int games, long seed) {
+        if (width < 1 || width > Codes.MAX_WIDTH || colQuant < 1
+                || colQuant > Codes.MAX_COLORS || games < 1
+                || (width > colQuant && doubleColors == false)) {
+            throw new IllegalArgumentException("Invalid settings");
+        }
+        this.width = width;
+        this.colQuant = colQuant;
+        this.doubleColors = doubleColors;
+        random = new Random(seed);
+        secrets = new int[games][];
+        for (int g = 0; g < games; g++) {
+            int[] pegs = new int[width];
+            do {
+                for (int i = 0; i < width; i++) {
+                    pegs[i] = random.nextInt(colQuant);
+                }
+            } while (doubleColors == false
+                    && new Row(pegs).containsDoubleColor() == true);
+            secrets[g] = pegs;
+        }
+    }
+
+    /**
+     * Search the best parameters.
+     * The first trial measures the current parameters of the configuration
+     * (see GeneticParameters.get()).
+     *
+     * @param trials The number of candidates tried after the first trial.
+     * @param maxAverage The bound of the average number of guesses. 0 for
+     * the average of the current parameters times STD_SLACK.
+     * @param threads The number of threads playing the games.
+     * @return The best trial. The first trial if no candidate was better.
+     * @throws InterruptedException If the tuning was interrupted.
+     * @throws IllegalStateException If a game failed.
+     */
+    public Trial tune(int trials, double maxAverage, int threads)
+            throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                new DaemonThreadFactory("JAMM-Tuner"));
+        try {
+            Trial best = measure(GeneticParameters.get(width, colQuant,
+                    doubleColors), Long.MAX_VALUE, executor);
+            Log.info("Tuning: current parameters {}", best);
+            double bound = maxAverage > 0 ? maxAverage
+                    : best.getAverage() * STD_SLACK;
+            boolean bestFeasible = best.isFeasible(bound);
+            for (int t = 1; t <= trials; t++) {
+                GeneticParameters candidate = GeneticParameters.random(
+                        random, random.nextBoolean() == true
+                        ? best.getParameters() : null);
+                long limit = bestFeasible == true
+                        ? best.guessNanos * ABORT_FACTOR : Long.MAX_VALUE;
+                Trial trial = measure(candidate, limit, executor);
+                Log.info("Tuning: trial {} {}", t, trial);
+                if (trial.isFeasible(bound) == true
+                        && (bestFeasible == false || trial.getMillisPerGuess()
+                        < best.getMillisPerGuess())) {
+                    best = trial;
+                    bestFeasible = true;
+                }
+            }
+            return best;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Play all secret codes with a set of parameters.
+     * The games run as searches (see SearchTask), so a guess which does not
+     * end (e.g. no feasible code is found) is stopped when the trial is
+     * aborted.
+     *
+     * @param parameters The parameters.
+     * @param limit Max. time for all guesses (in ns). The trial is aborted
+     * if it needs more.
+     * @param executor The executor playing the games.
+     * @return The trial.
+     * @throws InterruptedException If the trial was interrupted.
+     * @throws IllegalStateException If a game failed.
+     */
+    public Trial measure(GeneticParameters parameters, long limit,
+            ExecutorService executor) throws InterruptedException {
+        Trial trial = new Trial(parameters);
+        AtomicLong spent = new AtomicLong();
+        List<CompletableFuture<Integer>> games =
+                new ArrayList<CompletableFuture<Integer>>();
+        for (int[] secret : secrets) {
+            games.add(SearchTask.run(() -> play(secret, parameters, spent,
+                    limit), executor, null));
+        }
+        try {
+            // Nearly all the time of a trial some guess is generated, so a
+            // trial which runs longer than the limit has exceeded it. The
+            // time of a guess is only added when it ends.
+            CompletableFuture.allOf(games.toArray(
+                    new CompletableFuture<?>[games.size()]))
+                    .get(limit, TimeUnit.NANOSECONDS);
+            for (CompletableFuture<Integer> game : games) {
+                int guesses = game.get();
+                if (guesses < 0) {
+                    trial.aborted = true;
+                } else if (guesses > TUNING_TRIES) {
+                    trial.lost++;
+                } else {
+                    trial.games++;
+                    trial.guesses += guesses;
+                }
+            }
+        } catch (TimeoutException e) {
+            trial.aborted = true;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Tuning game failed",
+                    e.getCause());
+        } finally {
+            // Stop the games which still run.
+            for (CompletableFuture<Integer> game : games) {
+                game.cancel(false);
+            }
+        }
+        trial.guessNanos = spent.get();
+        return trial;
+    }
+
+    /**
+     * Play one game.
+     *
+     * @param secret The pegs of the secret code.
+     * @param parameters The parameters of the genetic algorithm.
+     * @param spent The time of all guesses of the trial (in ns).
+     * @param limit Max. time of all guesses of the trial (in ns).
+     * @return The number of guesses. TUNING_TRIES + 1 if the game was
+     * lost, -1 if the trial exceeded its time.
+     */
+    private int play(int[] secret, GeneticParameters parameters,
+            AtomicLong spent, long limit) {
+        ControlInterface ci = ControlInterface.create(width, colQuant,
+                doubleColors, TUNING_TRIES, secret);
+        GeneticSolver solver = new GeneticSolver(ci, parameters);
+        int state = 0;
+        while (state == 0) {
+            if (spent.get() > limit || Thread.interrupted() == true) {
+                return -1;
+            }
+            int row = ci.getActiveRowNumber();
+            long start = System.nanoTime();
+            Row guess = solver.generateGuess();
+            spent.addAndGet(System.nanoTime() - start);
+            state = ci.submitTurn(row, guess.getPegs());
+        }
+        return state == 1 ? ci.getActiveRowNumber() : TUNING_TRIES + 1;
+    }
+
+    /**
+     * The result of playing the secret codes with one set of parameters.
+     */
+    public static final class Trial {
+        private final GeneticParameters parameters;
+        private int games;
+        private int lost;
+        private long guesses;
+        private long guessNanos;
+        private boolean aborted;
+
+        /**
+         * Create an empty trial.
+         *
+         * @param parameters The parameters of the trial.
+         */
+        private Trial(GeneticParameters parameters) {
+            this.parameters = parameters;
+        }
+
+        /**
+         * Getter for the parameters.
+         *
+         * @return The parameters of the trial.
+         */
+        public GeneticParameters getParameters() {
+            return parameters;
+        }
+
+        /**
+         * Get the average number of guesses of the won games.
+         *
+         * @return The average. 0 if no game was won.
+         */
+        public double getAverage() {
+            return games == 0 ? 0 : (double) guesses / games;
+        }
+
+        /**
+         * Get the average time of a guess.
+         *
+         * @return The time in ms. 0 if there was no guess.
+         */
+        public double getMillisPerGuess() {
+            return guesses == 0 ? 0 : guessNanos / 1e6 / guesses;
+        }
+
+        /**
+         * Getter for the number of lost games.
+         *
+         * @return The games which needed more than the max. tries.
+         */
+        public int getLost() {
+            return lost;
+        }
+
+        /**
+         * Check if the trial was aborted because it took too long.
+         *
+         * @return True if not all games were played.
+         */
+        public boolean isAborted() {
+            return aborted;
+        }
+
+        /**
+         * Check if the parameters may be used.
+         *
+         * @param maxAverage The bound of the average number of guesses.
+         * @return True if all games were won within the bound.
+         */
+        private boolean isFeasible(double maxAverage) {
+            return aborted == false && lost == 0 && games > 0
+                    && getAverage() <= maxAverage;
+        }
+
+        /**
+         * Build a readable summary.
+         *
+         * @return The summary.
+         */
+        @Override
+        public String toString() {
+            if (aborted == true) {
+                return "aborted (" + parameters + ")";
+            }
+            return String.format("%.4f guesses, %.3f ms per guess, %d lost "
+                    + "(%s)", getAverage(), getMillisPerGuess(), lost,
+                    parameters);
+        }
+    }
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright 2011 Ikarus, René Kübler, Andreas J.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ai;
+
+import common.*;
+import game.History;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of guesses, shared by the games of a JVM.
+ * It maps a game history to the guess a solving algorithm chose for it,
+ * so the same decision is not searched again in the next game with the
+ * same history.<br />
+ * The cache is split into stripes, each an LRU map with its own lock, so
+ * threads using different histories rarely wait for each other.<br />
+ * With color symmetry the colors of a history are renamed in the order
+ * of their first use (unused colors keep their order) before it is used
+ * as key. Since the game does not depend on the names of the colors, all
+ * histories which only differ in the names of the colors share one entry.
+ * The guess of such an entry is the renamed guess for the first of these
+ * histories. It is as good as the algorithm's own guess, since the renamed
+ * game is equivalent, but if the algorithm prefers colors (e.g. the
+ * CandidateSolver breaks ties by rank) it may be another guess. So
+ * cached games only play exactly like the algorithm without symmetry.
+ *
+ * @see CachingSolver
+ */
+public final class GuessCache {
+    /**
+     * Std. max. number of entries of the shared cache.
+     */
+    public static final int STD_CAPACITY = 1 << 16;
+    /**
+     * Number of stripes (a power of two).
+     */
+    private final int STRIPES = 16;
+    /**
+     * The cache shared by all games of the JVM.
+     */
+    private static final GuessCache SHARED =
+            new GuessCache(STD_CAPACITY, true);
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final boolean colorSymmetry;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Create a cache.
+     *
+     * @param capacity The max. number of entries.
+     * @param colorSymmetry True if histories which only differ in the names
+     * of the colors share their entry.
+     */
+    public GuessCache(int capacity, boolean colorSymmetry) {
+        this.colorSymmetry = colorSymmetry;
+        int stripeCapacity = Math.max(1, capacity / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(stripeCapacity);
+        }
+    }
+
+    /**
+     * Getter for the cache shared by all games of the JVM.
+     * It uses color symmetry, so the guesses may differ from the guesses
+     * of the algorithm (but are as good).
+     *
+     * @return The shared cache.
+     */
+    public static GuessCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Get the cached guess of an algorithm for a history.
+     *
+     * @param strategy Identifies the algorithm (e.g. its class).
+     * @param history The history of the game.
+     * @return The guess. Null if it is not cached.
+     */
+    public Row get(Object strategy, History history) {
+        Key key = new Key(strategy, history, colorSymmetry);
+        Stripe stripe = stripe(key);
+        int[] guess;
+        synchronized (stripe) {
+            guess = stripe.get(key);
+        }
+        if (guess == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        int width = history.getWidth();
+        int[] pegs = new int[width];
+        for (int i = 0; i < width; i++) {
+            pegs[i] = key.fromCanonical[guess[i]];
+        }
+        return CodePool.row(pegs, history.getColQuant());
+    }
+
+    /**
+     * Cache the guess of an algorithm for a history.
+     *
+     * @param strategy Identifies the algorithm (e.g. its class).
+     * @param history The history of the game.
+     * @param guess The guess the algorithm chose.
+     */
+    public void put(Object strategy, History history, Row guess) {
+        Key key = new Key(strategy, history, colorSymmetry);
+        int[] canonical = new int[guess.width()];
+        for (int i = 0; i < canonical.length; i++) {
+            canonical[i] = key.toCanonical[guess.getPeg(i)];
+        }
+        Stripe stripe = stripe(key);
+        synchronized (stripe) {
+            stripe.put(key, canonical);
+        }
+    }
+
+    /**
+     * Getter for the number of entries.
+     *
+     * @return The number of cached guesses.
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Getter for the number of found guesses.
+     *
+     * @return The number of get() calls which found a guess.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Getter for the number of missed guesses.
+     *
+     * @return The number of get() calls which found no guess.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Remove all entries.
+     */
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+    }
+
+    /**
+     * Get the stripe of a key.
+     *
+     * @param key The key.
+     * @return The stripe.
+     */
+    private Stripe stripe(Key key) {
+        int h = key.hash;
+        return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    /**
+     * One part of the cache. An LRU map which must only be used while its
+     * lock is held. The values are the guesses in canonical colors.
+     */
+    private static class Stripe extends LinkedHashMap<Key, int[]> {
+        private static final long serialVersionUID = 1L;
+        private final int capacity;
+
+        /**
+         * Create a stripe.
+         *
+         * @param capacity The max. number of entries.
+         */
+        Stripe(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, int[]> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    /**
+     * The key of a history: the settings and the guesses (in canonical
+     * colors) and results. Also holds the renaming of the colors.
+     */
+    private static final class Key {
+        private final Object strategy;
+        private final int width;
+        private final int colQuant;
+        private final boolean doubleColors;
+        private final long[] guesses;
+        private final int[] feedback;
+        /**
+         * The canonical color of every color.
+         */
+        private final int[] toCanonical;
+        /**
+         * The color of every canonical color.
+         */
+        private final int[] fromCanonical;
+        private final int hash;
+
+        /**
+         * Build the key of a history.
+         *
+         * @param strategy Identifies the algorithm.
+         * @param history The history.
+         * @param colorSymmetry True if the colors are renamed in the order
+         * of their first use.
+         */
+        Key(Object strategy, History history, boolean colorSymmetry) {
+            this.strategy = strategy;
+            width = history.getWidth();
+            colQuant = history.getColQuant();
+            doubleColors = history.getDoubleCol();
+            int bits = history.getBitsPerPeg();
+            long mask = (1L << bits) - 1;
+            int depth = history.getDepth();
+            toCanonical = new int[colQuant];
+            fromCanonical = new int[colQuant];
+            if (colorSymmetry == true) {
+                Arrays.fill(toCanonical, -1);
+                int next = 0;
+                for (int t = 0; t < depth; t++) {
+                    long guess = history.getGuess(t);
+                    for (int i = 0; i < width; i++) {
+                        int color = (int) (guess >>> (i * bits) & mask);
+                        if (toCanonical[color] < 0) {
+                            toCanonical[color] = next++;
+                        }
+                    }
+                }
+                for (int color = 0; color < colQuant; color++) {
+                    if (toCanonical[color] < 0) {
+                        toCanonical[color] = next++;
+                    }
+                }
+            } else {
+                for (int color = 0; color < colQuant; color++) {
+                    toCanonical[color] = color;
+                }
+            }
+            for (int color = 0; color < colQuant; color++) {
+                fromCanonical[toCanonical[color]] = color;
+            }
+            guesses = new long[depth];
+            feedback = new int[depth];
+            for (int t = 0; t < depth; t++) {
+                long guess = history.getGuess(t);
+                long canonical = 0;
+                for (int i = 0; i < width; i++) {
+                    int color = (int) (guess >>> (i * bits) & mask);
+                    canonical |= (long) toCanonical[color] << (i * bits);
+                }
+                guesses[t] = canonical;
+                feedback[t] = history.getFeedback(t);
+            }
+            hash = 31 * (31 * (31 * (31 * strategy.hashCode() + width)
+                    + colQuant) + (doubleColors ? 1 : 0)
+                    + Arrays.hashCode(guesses)) + Arrays.hashCode(feedback);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) {
+                return true;
+            }
+            if (o instanceof Key == false) {
+                return false;
+            }
+            Key k = (Key) o;
+            return hash == k.hash && width == k.width
+                    && colQuant == k.colQuant
+                    && doubleColors == k.doubleColors
+                    && strategy.equals(k.strategy)
+                    && Arrays.equals(guesses, k.guesses)
+                    && Arrays.equals(feedback, k.feedback);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
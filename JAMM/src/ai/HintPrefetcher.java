@@ -0,0 +1,121 @@
+/*
+ * Copyright 2011 Ikarus, René Kübler, Andreas J.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ai;
+
+import common.*;
+import game.ControlInterface;
+import game.History;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Computes hints speculatively in the background.
+ * While a human player is thinking about the next guess, the hint for the
+ * current game history can already be searched. If the player asks for a
+ * hint, the (maybe already finished) search is reused.
+ * The hint is cached for one history only. A search for an outdated
+ * history is cancelled as soon as the history changes.
+ * The hints are searched by the solving algorithm SolverRegistry chooses
+ * for the configuration of the game.
+ *
+ * @see SolverRegistry#choose(int, int, boolean)
+ */
+public class HintPrefetcher {
+    /**
+     * The executor which runs the searches.
+     */
+    private final Executor executor;
+    /**
+     * The history the cached hint belongs to. Null if there is no hint.
+     */
+    private History historyKey;
+    /**
+     * The search for the hint of historyKey. Null if there is no hint.
+     */
+    private CompletableFuture<Row> hint;
+    /**
+     * The progress of the search for the hint. Null if there is no hint.
+     */
+    private ProgressChannel progress;
+
+    /**
+     * Create a prefetcher which searches the hints on the given executor.
+     *
+     * @param executor The executor which runs the searches.
+     */
+    public HintPrefetcher(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Start the search for the hint of the current game history in the
+     * background. Nothing happens if this hint is already searched or found.
+     * An older hint is discarded.
+     *
+     * @param ci The control interface of the game.
+     */
+    public synchronized void prefetch(ControlInterface ci) {
+        History key = ci.history();
+        if (hint != null && key.equals(historyKey)
+                && hint.isCompletedExceptionally() == false) {
+            return;
+        }
+        discard();
+        historyKey = key;
+        progress = new ProgressChannel();
+        SolverProvider provider = SolverRegistry.shared().choose(
+                ci.getSettingWidth(), ci.getSettingColQuant(),
+                ci.getSettingDoubleCol());
+        hint = provider.create(ci).generateGuessAsync(executor, progress);
+    }
+
+    /**
+     * Get the hint for the current game history.
+     * If it was prefetched the running or finished search is returned.
+     * Otherwise a new search is started.
+     *
+     * @param ci The control interface of the game.
+     * @return A future which completes with the hint.
+     */
+    public synchronized CompletableFuture<Row> getHint(ControlInterface ci) {
+        prefetch(ci);
+        return hint;
+    }
+
+    /**
+     * Getter for the progress of the search for the current hint.
+     *
+     * @return The progress channel. Null if there is no hint.
+     */
+    public synchronized ProgressChannel getProgress() {
+        return progress;
+    }
+
+    /**
+     * Discard the cached hint and cancel its search if it is still running.
+     * Has to be called if a new game was started or the settings changed.
+     */
+    public synchronized void discard() {
+        if (hint != null) {
+            hint.cancel(false);
+        }
+        hint = null;
+        progress = null;
+        historyKey = null;
+    }
+}
@@ -0,0 +1,405 @@
+/*
+ * Copyright 2011 Ikarus, René Kübler, Andreas J.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ai;
+
+import common.*;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A set of candidates stored as a bitmap in a memory-mapped temporary
+ * file, for configurations too large for the heap (e.g. 8 x 15 with
+ * double colors: 2.56 billion codes, a 320 MB bitmap). The operating
+ * system keeps the used parts of the file in memory.<br />
+ * The bitmap is filtered in parallel chunks on the common ForkJoinPool.
+ * The file is deleted when it is closed (right after mapping it); the
+ * mapping (and the space of the file) stays valid until the set is garbage
+ * collected.<br />
+ * The files are created in the directory of the system property
+ * jamm.tmpdir, by default in java.io.tmpdir. That is often a tmpfs, which
+ * keeps the whole file in memory.
+ *
+ * @see CandidateSet
+ */
+public final class MappedCandidateSet implements CandidateSet {
+    /**
+     * Max. number of codes of a configuration (an 8 GB bitmap).
+     */
+    public static final long MAX_CODES = 1L << 36;
+    /**
+     * The system property with the directory of the temporary files.
+     */
+    public static final String TMPDIR_PROPERTY = "jamm.tmpdir";
+    /**
+     * Number of longs per mapped chunk (1 GB).
+     */
+    private static final long CHUNK_WORDS = 1L << 27;
+    /**
+     * Min. number of longs filtered by one task.
+     */
+    private static final long TASK_WORDS = 1L << 14;
+    private final int width;
+    private final int colQuant;
+    private final long capacity;
+    private LongBuffer[] chunks;
+    private final long size;
+    private final long hash;
+
+    /**
+     * Create a set.
+     *
+     * @param width The game width.
+     * @param colQuant The quantity of colors.
+     * @param capacity The number of codes.
+     * @param chunks The mapped bitmap.
+     * @param size The number of set bits.
+     * @param hash The Zobrist hash.
+     */
+    private MappedCandidateSet(int width, int colQuant, long capacity,
+            LongBuffer[] chunks, long size, long hash) {
+        this.width = width;
+        this.colQuant = colQuant;
+        this.capacity = capacity;
+        this.chunks = chunks;
+        this.size = size;
+        this.hash = hash;
+    }
+
+    /**
+     * Build the set of all codes of a configuration.
+     *
+     * @param width The game width.
+     * @param colQuant The quantity of colors.
+     * @param doubleColors Allowance of same colors. If false, codes with
+     * double colors are no candidates.
+     * @return The set.
+     * @throws IllegalArgumentException If the configuration has more than
+     * MAX_CODES codes.
+     * @throws UncheckedIOException If the file can not be created.
+     */
+    public static MappedCandidateSet all(int width, int colQuant,
+            boolean doubleColors) {
+        long capacity = 1;
+        for (int i = 0; i < width; i++) {
+            capacity *= colQuant;
+            if (capacity > MAX_CODES) {
+                throw new IllegalArgumentException("More than " + MAX_CODES
+                        + " codes");
+            }
+        }
+        final long codes = capacity;
+        LongBuffer[] chunks = map(words(capacity));
+        long[] result = forEachRange(words(capacity), (from, to) -> {
+            long removed = 0;
+            long count = 0;
+            int[] pegs = new int[width];
+            for (long w = from; w < to; w++) {
+                long word = 0;
+                for (int bit = 0; bit < 64; bit++) {
+                    long rank = (w << 6) + bit;
+                    if (rank >= codes) {
+                        break;
+                    }
+                    if (doubleColors == false) {
+                        long digits = rank;
+                        for (int i = 0; i < width; i++) {
+                            pegs[i] = (int) (digits % colQuant);
+                            digits /= colQuant;
+                        }
+                        if (new Row(pegs).containsDoubleColor() == true) {
+                            removed ^= CandidateSet.zobrist(rank);
+                            continue;
+                        }
+                    }
+                    word |= 1L << bit;
+                    count++;
+                }
+                put(chunks, w, word);
+            }
+            return new long[] {count, removed};
+        });
+        return new MappedCandidateSet(width, colQuant, capacity, chunks,
+                result[0], CandidateSet.zobrist(width, colQuant, doubleColors)
+                ^ result[1]);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getColQuant() {
+        return colQuant;
+    }
+
+    public long capacity() {
+        return capacity;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public boolean contains(long rank) {
+        return rank >= 0 && rank < capacity
+                && (get(chunks, rank >>> 6) & (1L << rank)) != 0;
+    }
+
+    public long next(long rank) {
+        if (rank < 0) {
+            rank = 0;
+        }
+        if (rank >= capacity) {
+            return -1;
+        }
+        long words = words(capacity);
+        long w = rank >>> 6;
+        long word = get(chunks, w) & (-1L << rank);
+        while (word == 0) {
+            if (++w == words) {
+                return -1;
+            }
+            word = get(chunks, w);
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * Build the set of the candidates which would have got a feedback
+     * for a guess. The bitmap is filtered in parallel chunks into a new
+     * file. The hash is updated for every removed candidate.
+     *
+     * @param guess The packed guess.
+     * @param feedback The feedback.
+     * @return The new set.
+     * @throws UncheckedIOException If the file can not be created.
+     */
+    public MappedCandidateSet filter(long guess, int feedback) {
+        return filter(guess, feedback, chunks, map(words(capacity)));
+    }
+
+    /**
+     * Like filter(), but the bitmap of this set is reused for the new set,
+     * so no new file is mapped. This set can not be used any more.
+     *
+     * @param guess The packed guess.
+     * @param feedback The feedback.
+     * @return The new set.
+     * @throws IllegalStateException If this set has been replaced before.
+     */
+    MappedCandidateSet replace(long guess, int feedback) {
+        if (chunks == null) {
+            throw new IllegalStateException("The set has been replaced");
+        }
+        LongBuffer[] reused = chunks;
+        chunks = null;
+        return filter(guess, feedback, reused, reused);
+    }
+
+    /**
+     * Filter the candidates of a bitmap into a bitmap. Every long is read
+     * before it is written, so both can be the same bitmap.
+     *
+     * @param guess The packed guess.
+     * @param feedback The feedback.
+     * @param chunks The mapped bitmap of this set.
+     * @param filtered The mapped bitmap of the new set.
+     * @return The new set.
+     */
+    private MappedCandidateSet filter(long guess, int feedback,
+            LongBuffer[] chunks, LongBuffer[] filtered) {
+        int bits = Codes.bitsPerPeg(colQuant);
+        // A set does not know the depth of its history.
+        PhaseEvent event = PhaseEvent.start("MappedCandidateSet.filter",
+                width, colQuant, -1);
+        long[] result;
+        try {
+            result = forEachRange(words(capacity), (from, to) -> {
+                long removed = 0;
+                long count = 0;
+                for (long w = from; w < to; w++) {
+                    long word = get(chunks, w);
+                    long kept = 0;
+                    while (word != 0) {
+                        int bit = Long.numberOfTrailingZeros(word);
+                        long rank = (w << 6) + bit;
+                        word &= word - 1;
+                        if (Codes.feedback(guess, code(rank), width, bits)
+                                == feedback) {
+                            kept |= 1L << bit;
+                            count++;
+                        } else {
+                            removed ^= CandidateSet.zobrist(rank);
+                        }
+                    }
+                    put(filtered, w, kept);
+                }
+                return new long[] {count, removed};
+            });
+        } finally {
+            event.commit();
+        }
+        return new MappedCandidateSet(width, colQuant, capacity, filtered,
+                result[0], hash ^ result[1]);
+    }
+
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * The work on a range of longs of the bitmap.
+     */
+    private interface RangeTask {
+        /**
+         * Work on a range.
+         *
+         * @param from The first long.
+         * @param to The end of the range (exclusive).
+         * @return The number of candidates and the XOR of the Zobrist keys
+         * of the removed codes in the range.
+         */
+        long[] run(long from, long to);
+    }
+
+    /**
+     * Run a task on all longs of a bitmap, in parallel ranges. The ranges
+     * run on the common ForkJoinPool; they stop if the search of the
+     * calling thread is cancelled (see SearchTask).
+     *
+     * @param words The number of longs.
+     * @param task The task.
+     * @return The number of candidates and the XOR of the Zobrist keys
+     * of the removed codes.
+     * @throws CancellationException If the search was cancelled.
+     */
+    private static long[] forEachRange(long words, RangeTask task) {
+        Runnable checkpoint = SearchTask.checkpoints();
+        int threads = ForkJoinPool.getCommonPoolParallelism();
+        long step = Math.max(TASK_WORDS, (words + threads * 4 - 1)
+                / (threads * 4));
+        List<CompletableFuture<long[]>> parts =
+                new ArrayList<CompletableFuture<long[]>>();
+        for (long from = 0; from < words; from += step) {
+            final long start = from;
+            final long end = Math.min(words, from + step);
+            parts.add(CompletableFuture.supplyAsync(() -> {
+                long[] r = new long[2];
+                for (long w = start; w < end; w += TASK_WORDS) {
+                    checkpoint.run();
+                    long[] sub = task.run(w, Math.min(end, w + TASK_WORDS));
+                    r[0] += sub[0];
+                    r[1] ^= sub[1];
+                }
+                return r;
+            }, ForkJoinPool.commonPool()));
+        }
+        long[] result = new long[2];
+        try {
+            for (CompletableFuture<long[]> part : parts) {
+                long[] r = part.join();
+                result[0] += r[0];
+                result[1] ^= r[1];
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof CancellationException) {
+                throw (CancellationException) e.getCause();
+            }
+            throw e;
+        }
+        return result;
+    }
+
+    /**
+     * Get the number of longs of a bitmap.
+     *
+     * @param capacity The number of bits.
+     * @return The number of longs.
+     */
+    private static long words(long capacity) {
+        return (capacity + 63) >>> 6;
+    }
+
+    /**
+     * Map a new, empty temporary file.
+     *
+     * @param words The size of the file in longs.
+     * @return The chunks of the mapped file.
+     * @throws UncheckedIOException If the file can not be created.
+     */
+    private static LongBuffer[] map(long words) {
+        try {
+            String dir = System.getProperty(TMPDIR_PROPERTY);
+            Path path = dir != null
+                    ? Files.createTempFile(Paths.get(dir), "jamm-candidates",
+                            ".bin")
+                    : Files.createTempFile("jamm-candidates", ".bin");
+            try (FileChannel channel = FileChannel.open(path,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE)) {
+                LongBuffer[] chunks = new LongBuffer[(int) ((words
+                        + CHUNK_WORDS - 1) / CHUNK_WORDS)];
+                for (int i = 0; i < chunks.length; i++) {
+                    long from = i * CHUNK_WORDS;
+                    long length = Math.min(CHUNK_WORDS, words - from);
+                    chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE,
+                            from * 8, length * 8)
+                            .order(ByteOrder.nativeOrder()).asLongBuffer();
+                }
+                return chunks;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Read a long of a mapped bitmap.
+     *
+     * @param chunks The mapped bitmap.
+     * @param w The index of the long.
+     * @return The long.
+     */
+    private static long get(LongBuffer[] chunks, long w) {
+        return chunks[(int) (w / CHUNK_WORDS)].get((int) (w % CHUNK_WORDS));
+    }
+
+    /**
+     * Write a long of a mapped bitmap.
+     *
+     * @param chunks The mapped bitmap.
+     * @param w The index of the long.
+     * @param value The long.
+     */
+    private static void put(LongBuffer[] chunks, long w, long value) {
+        chunks[(int) (w / CHUNK_WORDS)].put((int) (w % CHUNK_WORDS), value);
+    }
+}
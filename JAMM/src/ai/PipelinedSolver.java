@@ -0,0 +1,356 @@
+/*
+ * Copyright 2011 Ikarus, René Kübler, Andreas J.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ai;
+
+import common.*;
+import game.ControlInterface;
+import game.History;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * A solving algorithm which thinks ahead.
+ * As soon as a guess is chosen (and before its result is known) the next
+ * guess is searched in parallel for every plausible result of this guess.
+ * The results are tried in order of their likelihood. When the real result
+ * arrives, the matching search is already running or even finished.
+ * The other searches are cancelled.<br />
+ * The actual guesses are made by another solving algorithm (e.g. the
+ * GeneticSolver) which is created for every (hypothetical) game.
+ *
+ * @see ControlInterface#fork(int[], int, int)
+ */
+public class PipelinedSolver implements SolvingAlgorithm {
+    /**
+     * Number of random codes used to estimate the likelihood of the
+     * results of a guess.
+     */
+    private final int SAMPLE_SIZE = 1000;
+    /**
+     * Max. number of results for which the next guess is searched ahead.
+     */
+    private final int MAX_BRANCHES = 16;
+    /**
+     * Interval (in ms) in which a waiting search checks for cancellation.
+     */
+    private final int CHECK_INTERVAL = 50;
+    private final ControlInterface ci;
+    private final Function<ControlInterface, SolvingAlgorithm> solverFactory;
+    private final Executor executor;
+    private final int width;
+    /**
+     * The guess the searches ahead were started for. Null if there are none.
+     */
+    private Row speculatedGuess;
+    /**
+     * The row number of speculatedGuess.
+     */
+    private int speculatedRow;
+    /**
+     * The searches ahead. The key is the result of speculatedGuess.
+     *
+     * @see #resultKey(int, int)
+     */
+    private final Map<Integer, CompletableFuture<Row>> branches =
+            new HashMap<Integer, CompletableFuture<Row>>();
+    /**
+     * The progress of the searches ahead, by the same key.
+     */
+    private final Map<Integer, ProgressChannel> branchProgress =
+            new HashMap<Integer, ProgressChannel>();
+    /**
+     * Estimates the plausible results of speculatedGuess and starts the
+     * searches ahead. Null if it is not running.
+     */
+    private CompletableFuture<Void> speculation;
+    /**
+     * Number of the current speculation. Incremented by cancel(), so an
+     * outdated speculation starts no searches.
+     */
+    private int speculationId;
+
+    /**
+     * Initialize the AI with settings from the Mastermind engine.
+     *
+     * @param ci A control interface the AI will use to
+     * interact with a game.
+     * @param solverFactory Creates the solving algorithm which makes the
+     * actual guesses for a (hypothetical) game.
+     * @param executor The executor running the searches ahead. It should
+     * have more than one thread.
+     */
+    public PipelinedSolver(ControlInterface ci,
+            Function<ControlInterface, SolvingAlgorithm> solverFactory,
+            Executor executor) {
+        this.ci = ci;
+        this.solverFactory = solverFactory;
+        this.executor = executor;
+        width = ci.getSettingWidth();
+    }
+
+    /**
+     * Do a full guess on the Mastermind engine.
+     * This includes to generate a guess, think ahead, pass it to the engine
+     * and do a full game turn.
+     *
+     * @return -1 = Game ended and code was not broken. <br />
+     * 1 = Game ended an code was broken. <br />
+     * 0 = Just a normal turn. <br />
+     * ControlInterface.STALE_TURN = The game changed while the guess was
+     * generated, the guess was not played.
+     * @see ControlInterface#submitTurn(int, int[])
+     */
+    public int makeGuess() {
+        int row = ci.getActiveRowNumber();
+        Row guess = generateGuess();
+        speculate(guess);
+        int state = ci.submitTurn(row, guess.getPegs());
+        if (state != 0) {
+            cancel();
+        }
+        return state;
+    }
+
+    /**
+     * Generate a guess. If the next guess for the result of the last guess
+     * was searched ahead, this search is used. Otherwise the guess is
+     * searched now.
+     *
+     * @return The generated guess.
+     */
+    public Row generateGuess() {
+        CompletableFuture<Void> pending;
+        synchronized (this) {
+            pending = speculation;
+        }
+        if (pending != null) {
+            // The searches ahead are about to start.
+            try {
+                pending.get();
+            } catch (ExecutionException | CancellationException e) {
+                // No searches ahead, the guess is searched now.
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Interrupted");
+            }
+        }
+        ProgressChannel[] progress = new ProgressChannel[1];
+        CompletableFuture<Row> branch = takeBranch(progress);
+        if (branch != null) {
+            Row guess = await(branch, progress[0]);
+            if (guess != null) {
+                return guess;
+            }
+        }
+        return solverFactory.apply(ci).generateGuess();
+    }
+
+    /**
+     * Start searching the next guess for all plausible results of a guess.
+     * Has to be called after the guess was chosen and before the turn is
+     * made. The searches are started in order of the likelihood of the
+     * results. Older searches ahead are cancelled.<br />
+     * The likelihood is estimated on the executor, so this returns at
+     * once (e.g. on the Event Dispatch Thread).
+     *
+     * @param guess The guess that will be played next.
+     */
+    public synchronized void speculate(Row guess) {
+        cancel();
+        int row = ci.getActiveRowNumber();
+        if (ci.getGameEnded() == true || row + 1 >= ci.getSettingMaxTries()) {
+            // There will be no next guess.
+            return;
+        }
+        speculatedGuess = guess;
+        speculatedRow = row;
+        // The game before the turn, the turn may be made in the meantime.
+        ControlInterface game = ci.copy();
+        int id = speculationId;
+        speculation = CompletableFuture.runAsync(
+                () -> startBranches(game, guess, id), executor);
+    }
+
+    /**
+     * Start the searches ahead for the plausible results of a guess.
+     *
+     * @param game The game the guess will be played in.
+     * @param guess The guess.
+     * @param id The number of the speculation. Nothing is started if it
+     * was cancelled.
+     */
+    private void startBranches(ControlInterface game, Row guess, int id) {
+        List<Integer> keys = plausibleResults(game, guess);
+        synchronized (this) {
+            if (id != speculationId) {
+                return;
+            }
+            for (int key : keys) {
+                int blacks = key / (width + 1);
+                int whites = key % (width + 1);
+                ControlInterface fork = game.fork(guess.getPegs(), blacks,
+                        whites);
+                ProgressChannel progress = new ProgressChannel();
+                branchProgress.put(key, progress);
+                branches.put(key, solverFactory.apply(fork)
+                        .generateGuessAsync(executor, progress));
+            }
+        }
+        Log.debug("AI: Searching ahead for {} result(s)", keys.size());
+    }
+
+    /**
+     * Cancel all searches ahead. Has to be called if the game is abandoned.
+     */
+    public synchronized void cancel() {
+        speculationId++;
+        speculation = null;
+        for (CompletableFuture<Row> branch : branches.values()) {
+            branch.cancel(false);
+        }
+        branches.clear();
+        branchProgress.clear();
+        speculatedGuess = null;
+    }
+
+    /**
+     * Take the search ahead matching the result of the last guess.
+     * All other searches ahead are cancelled.
+     *
+     * @param progress Gets the progress channel of the matching search.
+     * @return The matching search. Null if there is none.
+     */
+    private synchronized CompletableFuture<Row> takeBranch(
+            ProgressChannel[] progress) {
+        int row = ci.getActiveRowNumber() - 1;
+        CompletableFuture<Row> branch = null;
+        if (speculatedGuess != null && row == speculatedRow
+                && speculatedGuess.equals(ci.getGameFieldRow(row))) {
+            int feedback = ci.getFeedback(row);
+            int key = resultKey(Feedback.blacks(feedback),
+                    Feedback.whites(feedback));
+            branch = branches.remove(key);
+            progress[0] = branchProgress.remove(key);
+        }
+        cancel();
+        return branch;
+    }
+
+    /**
+     * Wait for a search ahead to finish.
+     * While waiting, the cancellation of the own search is checked and
+     * the progress of the search ahead is passed on as own progress.
+     *
+     * @param branch The search ahead.
+     * @param progress The progress of the search ahead.
+     * @return The found guess. Null if the search ahead failed.
+     */
+    private Row await(CompletableFuture<Row> branch,
+            ProgressChannel progress) {
+        while (true) {
+            try {
+                return branch.get(CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                SearchProgress event = progress.poll();
+                if (event != null) {
+                    SearchTask.progress(event);
+                }
+                try {
+                    SearchTask.checkpoint();
+                } catch (CancellationException ce) {
+                    branch.cancel(false);
+                    throw ce;
+                }
+            } catch (ExecutionException e) {
+                Log.debug("AI: Search ahead failed: {}", e.getCause());
+                return null;
+            } catch (CancellationException e) {
+                return null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                branch.cancel(false);
+                throw new CancellationException("Interrupted");
+            }
+        }
+    }
+
+    /**
+     * Estimate the plausible results of a guess, most likely first.
+     * Random codes which are consistent with the game history are compared
+     * to the guess. If no consistent code was sampled (e.g. on large
+     * games), all sampled codes are used.
+     * A win (all black) is no plausible result since there is no next guess.
+     *
+     * @param game The game the guess will be played in.
+     * @param guess The guess.
+     * @return The keys of the plausible results, most likely first.
+     * @see #resultKey(int, int)
+     */
+    private List<Integer> plausibleResults(ControlInterface game,
+            Row guess) {
+        int[] all = new int[(width + 1) * (width + 1)];
+        int[] feasible = new int[all.length];
+        boolean feasibleFound = false;
+        History history = game.history();
+        int bits = history.getBitsPerPeg();
+        long packedGuess = Codes.pack(guess, bits);
+        RandomGuesses random = new RandomGuesses(game);
+        for (int i = 0; i < SAMPLE_SIZE; i++) {
+            long code = Codes.pack(random.generateGuess(), bits);
+            int result = Codes.feedback(packedGuess, code, width, bits);
+            int key = resultKey(Feedback.blacks(result),
+                    Feedback.whites(result));
+            all[key]++;
+            if (history.isConsistent(code) == true) {
+                feasible[key]++;
+                feasibleFound = true;
+            }
+        }
+        final int[] weights = feasibleFound ? feasible : all;
+        weights[resultKey(width, 0)] = 0;
+        List<Integer> keys = new ArrayList<Integer>();
+        for (int key = 0; key < weights.length; key++) {
+            if (weights[key] > 0) {
+                keys.add(key);
+            }
+        }
+        keys.sort((a, b) -> weights[b] - weights[a]);
+        return keys.size() > MAX_BRANCHES
+                ? keys.subList(0, MAX_BRANCHES) : keys;
+    }
+
+    /**
+     * Key of a result.
+     *
+     * @param blacks The number of black pegs.
+     * @param whites The number of white pegs.
+     * @return The key of the result.
+     */
+    private int resultKey(int blacks, int whites) {
+        return blacks * (width + 1) + whites;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2011 Ikarus, René Kübler, Andreas J.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ai;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Passes the progress of a search to a consumer (e.g. the GUI) without
+ * slowing the search down. Only the newest event is kept: publishing
+ * replaces an event which was not polled yet, so a slow consumer skips
+ * events instead of queueing them and the search never waits.
+ *
+ * @see SearchTask#submit(SolvingAlgorithm, java.util.concurrent.Executor,
+ * ProgressChannel)
+ */
+public final class ProgressChannel {
+    private final AtomicReference<SearchProgress> latest =
+            new AtomicReference<SearchProgress>();
+
+    /**
+     * Publish an event. It replaces the last event if that was not polled.
+     *
+     * @param progress The event.
+     */
+    public void publish(SearchProgress progress) {
+        latest.set(progress);
+    }
+
+    /**
+     * Take the newest event.
+     *
+     * @return The newest event. Null if there is no new event since the
+     * last poll.
+     */
+    public SearchProgress poll() {
+        return latest.getAndSet(null);
+    }
+}
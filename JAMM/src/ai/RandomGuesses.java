@@ -40,14 +40,6 @@ public class RandomGuesses implements SolvingAlgorithm{
      * Allowance of same colors.
      */
     private boolean doubleColors;
-    /**
-     * The colors that are "allowed" in the game.
-     */
-    Color[] allowedCols;
-    /**
-     * All colors available in the game.
-     */
-    Color[] allCols;
 
     /**
      * Initialize the AI with settings from the Mastermind engine.
@@ -60,10 +52,6 @@ public class RandomGuesses implements SolvingAlgorithm{
         width = ci.getSettingWidth();
         colQuant = ci.getSettingColQuant();
         doubleColors = ci.getSettingDoubleCol();
-        //Prepare values to fit colorQuant-rule
-        allowedCols = new Color[colQuant];
-        allCols = Color.values();
-        System.arraycopy(allCols, 0, allowedCols, 0, colQuant);
     }
 
     /**
@@ -73,13 +61,15 @@ public class RandomGuesses implements SolvingAlgorithm{
      * 
      * @return -1 = Game ended and code was not broken. <br />
      * 1 = Game ended an code was broken. <br />
-     * 0 = Just a normal turn or the game already ended.
-     * @see ControlInterface#turn()
+     * 0 = Just a normal turn. <br />
+     * ControlInterface.STALE_TURN = The game changed while the guess was
+     * generated, the guess was not played.
+     * @see ControlInterface#submitTurn(int, int[])
      */
     public int makeGuess(){
+        int row = ci.getActiveRowNumber();
         Row tmp = generateGuess();
-        ci.writeToGameField(tmp.getColors());
-        return ci.turn();
+        return ci.submitTurn(row, tmp.getPegs());
     }
 
     /**
@@ -92,15 +82,16 @@ public class RandomGuesses implements SolvingAlgorithm{
 
         int i = 0;
         while (i < width) {
-            Color now = allowedCols[(int) (Math.random() * colQuant)];
-            if (guess.containsColor(now) > 0) {
+            int now = (int) (Math.random() * colQuant);
+            if (guess.containsPeg(now) > 0) {
                 if (doubleColors == true) {
-                    guess.setColorAtPos(i++, now);
+                    guess.setPeg(i++, now);
                 }
             } else {
-                guess.setColorAtPos(i++, now);
+                guess.setPeg(i++, now);
             }
         }
-        return guess;
+        CodePool pool = CodePool.get(width, colQuant);
+        return pool != null ? pool.intern(guess) : guess;
     }
 }
@@ -0,0 +1,975 @@
+/*
+ * Copyright 2011 Ikarus, René Kübler, Andreas J.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ai;
+
+import common.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compressed set of candidates (like a Roaring bitmap).
+ * The ranks are split into blocks of 65536 ranks. Every block which has
+ * candidates has a container which stores the low 16 bits of the ranks in
+ * the smallest of three forms: a sorted array (few candidates), a bitmap
+ * (many candidates) or runs of consecutive ranks. Sparse or clustered sets
+ * (e.g. after a few guesses) need little memory and are fast to iterate.
+ * <br />
+ * For a guess, the codes of the whole configuration can be split by their
+ * feedback once (a partition). Partitions are cached, so filtering a large
+ * set by a known guess is an intersection of two compressed sets. The cache
+ * is bounded by MAX_PARTITIONS and MAX_PARTITION_BYTES.
+ * Feedbacks are looked up in the installed ScoreMatrix of the
+ * configuration if there is one.
+ *
+ * @see CandidateSet
+ */
+public final class RoaringCandidateSet implements CandidateSet {
+    /**
+     * Max. number of codes of a configuration built by all() and of
+     * a configuration whose partitions are cached. Larger sets can be copied
+     * (see copyOf()) once they are small.
+     */
+    public static final int MAX_CODES = 1 << 24;
+    /**
+     * Max. number of cached partitions.
+     */
+    private static final int MAX_PARTITIONS = 256;
+    /**
+     * Max. number of bytes of all cached partitions (estimated). A partition
+     * of a configuration with MAX_CODES codes needs more than 2 MB.
+     */
+    private static final long MAX_PARTITION_BYTES = 64L << 20;
+    /**
+     * Sets with at least capacity / PARTITION_DENSITY candidates are
+     * filtered by intersecting them with a partition. Smaller sets are
+     * filtered candidate by candidate.
+     */
+    public static final int PARTITION_DENSITY = 16;
+    /**
+     * Max. number of values of an array container. Containers with more
+     * values are smaller as bitmap.
+     */
+    private static final int ARRAY_MAX = 4096;
+    /**
+     * Number of longs of a bitmap container.
+     */
+    private static final int BLOCK_WORDS = 1024;
+    /**
+     * The partitions of the whole configuration by guess, least recently
+     * used first.
+     */
+    private static final Map<PartitionKey, RoaringCandidateSet[]> PARTITIONS =
+            new LinkedHashMap<PartitionKey, RoaringCandidateSet[]>(16, 0.75f,
+                    true);
+    /**
+     * The estimated number of bytes of all cached partitions.
+     * Guarded by PARTITIONS.
+     */
+    private static long partitionBytes = 0;
+    private final int width;
+    private final int colQuant;
+    private final long capacity;
+    /**
+     * The blocks (rank >>> 16) which have candidates, ascending.
+     */
+    private final int[] keys;
+    /**
+     * The containers of the blocks.
+     */
+    private final Container[] containers;
+    private final long size;
+    private final long hash;
+
+    /**
+     * Create a set.
+     *
+     * @param width The game width.
+     * @param colQuant The quantity of colors.
+     * @param capacity The number of codes.
+     * @param keys The blocks which have candidates.
+     * @param containers The containers of the blocks.
+     * @param size The number of candidates.
+     * @param hash The Zobrist hash.
+     */
+    private RoaringCandidateSet(int width, int colQuant, long capacity,
+            int[] keys, Container[] containers, long size, long hash) {
+        this.width = width;
+        this.colQuant = colQuant;
+        this.capacity = capacity;
+        this.keys = keys;
+        this.containers = containers;
+        this.size = size;
+        this.hash = hash;
+    }
+
+    /**
+     * Build the set of all codes of a configuration.
+     *
+     * @param width The game width.
+     * @param colQuant The quantity of colors.
+     * @param doubleColors Allowance of same colors. If false, codes with
+     * double colors are no candidates.
+     * @return The set.
+     * @throws IllegalArgumentException If the configuration has more than
+     * MAX_CODES codes.
+     */
+    public static RoaringCandidateSet all(int width, int colQuant,
+            boolean doubleColors) {
+        long capacity = 1;
+        for (int i = 0; i < width; i++) {
+            capacity *= colQuant;
+            if (capacity > MAX_CODES) {
+                throw new IllegalArgumentException("More than " + MAX_CODES
+                        + " codes");
+            }
+        }
+        long hash = CandidateSet.zobrist(width, colQuant, doubleColors);
+        Builder builder = new Builder();
+        int[] pegs = new int[width];
+        for (long rank = 0; rank < capacity; rank++) {
+            if (doubleColors == false) {
+                long digits = rank;
+                for (int i = 0; i < width; i++) {
+                    pegs[i] = (int) (digits % colQuant);
+                    digits /= colQuant;
+                }
+                if (new Row(pegs).containsDoubleColor() == true) {
+                    hash ^= CandidateSet.zobrist(rank);
+                    continue;
+                }
+            }
+            builder.add(rank);
+        }
+        return builder.build(width, colQuant, capacity, hash);
+    }
+
+    /**
+     * Copy a candidate set into a compressed set.
+     *
+     * @param set The set.
+     * @return The compressed set with the same candidates and hash.
+     */
+    public static RoaringCandidateSet copyOf(CandidateSet set) {
+        if (set instanceof RoaringCandidateSet) {
+            return (RoaringCandidateSet) set;
+        }
+        Builder builder = new Builder();
+        for (long rank = set.next(0); rank >= 0; rank = set.next(rank + 1)) {
+            builder.add(rank);
+        }
+        return builder.build(set.getWidth(), set.getColQuant(),
+                set.capacity(), set.getHash());
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getColQuant() {
+        return colQuant;
+    }
+
+    public long capacity() {
+        return capacity;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public boolean contains(long rank) {
+        int i = Arrays.binarySearch(keys, (int) (rank >>> 16));
+        return rank >= 0 && i >= 0
+                && containers[i].contains((int) (rank & 0xFFFF));
+    }
+
+    public long next(long rank) {
+        if (rank < 0) {
+            rank = 0;
+        }
+        int i = Arrays.binarySearch(keys, (int) (rank >>> 16));
+        int low = (int) (rank & 0xFFFF);
+        if (i < 0) {
+            // No container for this block, start at the next one.
+            i = -i - 1;
+            low = 0;
+        }
+        for (; i < keys.length; i++) {
+            int next = containers[i].next(low);
+            if (next >= 0) {
+                return ((long) keys[i] << 16) | next;
+            }
+            low = 0;
+        }
+        return -1;
+    }
+
+    /**
+     * Build the set of the candidates which would have got a feedback
+     * for a guess. Large sets are intersected with the (cached) partition
+     * of the guess, small sets are filtered candidate by candidate.
+     * The hash is updated for every removed candidate.
+     *
+     * @param guess The packed guess.
+     * @param feedback The feedback.
+     * @return The new set.
+     */
+    public RoaringCandidateSet filter(long guess, int feedback) {
+        int key = key(feedback);
+        RoaringCandidateSet[] partition = capacity > MAX_CODES ? null
+                : partition(guess, size >= capacity / PARTITION_DENSITY);
+        if (partition != null) {
+            return and(partition[key]);
+        }
+        int bits = Codes.bitsPerPeg(colQuant);
+        ScoreMatrix matrix = ScoreMatrix.get(width, colQuant);
+        long guessRank = matrix != null ? rank(guess) : -1;
+        long newHash = hash;
+        Builder builder = new Builder();
+        for (int i = 0; i < keys.length; i++) {
+            long base = (long) keys[i] << 16;
+            Container c = containers[i];
+            for (int v = c.next(0); v >= 0; v = c.next(v + 1)) {
+                long rank = base | v;
+                if ((matrix != null ? matrix.key(guessRank, rank)
+                        : key(Codes.feedback(guess, code(rank), width, bits)))
+                        == key) {
+                    builder.add(rank);
+                } else {
+                    newHash ^= CandidateSet.zobrist(rank);
+                }
+            }
+        }
+        return builder.build(width, colQuant, capacity, newHash);
+    }
+
+    /**
+     * Intersect this set with another set of the same configuration.
+     * The hash is updated by container: the XOR of the keys of the removed
+     * candidates of a block is the XOR of the hashes of its container before
+     * and after. The hash of a container is computed once, on its first use,
+     * and the kept containers become the containers of the new set. So
+     * filtering a set again costs only the candidates which are kept.
+     *
+     * @param other The other set.
+     * @return The candidates which are in both sets.
+     */
+    public RoaringCandidateSet and(RoaringCandidateSet other) {
+        long newHash = hash;
+        long newSize = 0;
+        int[] newKeys = new int[Math.min(keys.length, other.keys.length)];
+        Container[] newContainers = new Container[newKeys.length];
+        int n = 0;
+        int j = 0;
+        for (int i = 0; i < keys.length; i++) {
+            while (j < other.keys.length && other.keys[j] < keys[i]) {
+                j++;
+            }
+            Container kept = null;
+            if (j < other.keys.length && other.keys[j] == keys[i]) {
+                kept = Container.and(containers[i], other.containers[j]);
+            }
+            long base = (long) keys[i] << 16;
+            if (kept == null) {
+                newHash ^= containers[i].hash(base);
+            } else if (kept.cardinality() == containers[i].cardinality()) {
+                // Nothing removed. Keep the container and its hash.
+                kept = containers[i];
+            } else {
+                newHash ^= containers[i].hash(base) ^ kept.hash(base);
+            }
+            if (kept != null) {
+                newKeys[n] = keys[i];
+                newContainers[n++] = kept;
+                newSize += kept.cardinality();
+            }
+        }
+        return new RoaringCandidateSet(width, colQuant, capacity,
+                Arrays.copyOf(newKeys, n), Arrays.copyOf(newContainers, n),
+                newSize, newHash);
+    }
+
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Get the number of containers by form.
+     *
+     * @return The number of array, bitmap and run containers.
+     */
+    public int[] getContainerCounts() {
+        int[] counts = new int[3];
+        for (Container c : containers) {
+            counts[c instanceof ArrayContainer ? 0
+                    : c instanceof BitmapContainer ? 1 : 2]++;
+        }
+        return counts;
+    }
+
+    /**
+     * Estimate the memory used by the set.
+     *
+     * @return The number of bytes.
+     */
+    private long bytes() {
+        long bytes = 64 + keys.length * 4L;
+        for (Container c : containers) {
+            bytes += c.bytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Get the partition of the whole configuration by a guess.
+     *
+     * @param guess The packed guess.
+     * @param create True if the partition should be built if it is not
+     * cached.
+     * @return The set of codes for every feedback key
+     * (blacks * (width + 1) + whites). Null if it is not cached and not
+     * created.
+     */
+    private RoaringCandidateSet[] partition(long guess, boolean create) {
+        PartitionKey key = new PartitionKey(width, colQuant, guess);
+        RoaringCandidateSet[] partition;
+        synchronized (PARTITIONS) {
+            partition = PARTITIONS.get(key);
+        }
+        if (partition != null || create == false) {
+            return partition;
+        }
+        // A set does not know the depth of its history.
+        PhaseEvent event = PhaseEvent.start("RoaringCandidateSet.partition",
+                width, colQuant, -1);
+        try {
+            int bits = Codes.bitsPerPeg(colQuant);
+            ScoreMatrix matrix = ScoreMatrix.get(width, colQuant);
+            long guessRank = matrix != null ? rank(guess) : -1;
+            Builder[] builders = new Builder[(width + 1) * (width + 1)];
+            for (int i = 0; i < builders.length; i++) {
+                builders[i] = new Builder();
+            }
+            for (long rank = 0; rank < capacity; rank++) {
+                builders[matrix != null ? matrix.key(guessRank, rank)
+                        : key(Codes.feedback(guess, code(rank), width, bits))]
+                        .add(rank);
+            }
+            partition = new RoaringCandidateSet[builders.length];
+            for (int i = 0; i < builders.length; i++) {
+                // The hash of a partition is never used.
+                partition[i] = builders[i].build(width, colQuant, capacity,
+                        0);
+            }
+        } finally {
+            event.commit();
+        }
+        long bytes = 0;
+        for (RoaringCandidateSet part : partition) {
+            bytes += part.bytes();
+        }
+        synchronized (PARTITIONS) {
+            if (PARTITIONS.containsKey(key) == false) {
+                PARTITIONS.put(key, partition);
+                partitionBytes += bytes;
+            }
+        }
+        trimPartitions(MAX_PARTITION_BYTES);
+        return partition;
+    }
+
+    /**
+     * Drop the least recently used partitions until at most MAX_PARTITIONS
+     * partitions with at most a number of bytes are cached.
+     *
+     * @param maxBytes The max. number of bytes of the cached partitions.
+     */
+    static void trimPartitions(long maxBytes) {
+        synchronized (PARTITIONS) {
+            Iterator<RoaringCandidateSet[]> it =
+                    PARTITIONS.values().iterator();
+            while (it.hasNext() && (PARTITIONS.size() > MAX_PARTITIONS
+                    || partitionBytes > maxBytes)) {
+                for (RoaringCandidateSet part : it.next()) {
+                    partitionBytes -= part.bytes();
+                }
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Get the estimated memory used by the cached partitions.
+     *
+     * @return The number of bytes.
+     */
+    static long getPartitionBytes() {
+        synchronized (PARTITIONS) {
+            return partitionBytes;
+        }
+    }
+
+    /**
+     * Index of a feedback in a partition.
+     *
+     * @param feedback The feedback.
+     * @return blacks * (width + 1) + whites.
+     */
+    private int key(int feedback) {
+        return Feedback.blacks(feedback) * (width + 1)
+                + Feedback.whites(feedback);
+    }
+
+    /**
+     * Builds a set from ascending ranks. The values of a block are collected
+     * in an array and only moved to a bitmap if there are many of them.
+     */
+    private static final class Builder {
+        private final List<Integer> keys = new ArrayList<Integer>();
+        private final List<Container> containers = new ArrayList<Container>();
+        private char[] values = new char[16];
+        private long[] block = null;
+        private int key = -1;
+        private int cardinality = 0;
+        private long size = 0;
+
+        /**
+         * Add a rank. It has to be greater than all added ranks.
+         *
+         * @param rank The rank.
+         */
+        void add(long rank) {
+            int k = (int) (rank >>> 16);
+            if (k != key) {
+                flush();
+                key = k;
+            }
+            int low = (int) (rank & 0xFFFF);
+            if (block != null) {
+                block[low >>> 6] |= 1L << low;
+            } else if (cardinality < ARRAY_MAX) {
+                if (cardinality == values.length) {
+                    values = Arrays.copyOf(values, cardinality * 2);
+                }
+                values[cardinality] = (char) low;
+            } else {
+                block = new long[BLOCK_WORDS];
+                new ArrayContainer(values).addTo(block);
+                block[low >>> 6] |= 1L << low;
+            }
+            cardinality++;
+        }
+
+        /**
+         * Build the set.
+         *
+         * @param width The game width.
+         * @param colQuant The quantity of colors.
+         * @param capacity The number of codes.
+         * @param hash The Zobrist hash.
+         * @return The set.
+         */
+        RoaringCandidateSet build(int width, int colQuant, long capacity,
+                long hash) {
+            flush();
+            int[] k = new int[keys.size()];
+            for (int i = 0; i < k.length; i++) {
+                k[i] = keys.get(i);
+            }
+            return new RoaringCandidateSet(width, colQuant, capacity, k,
+                    containers.toArray(new Container[containers.size()]),
+                    size, hash);
+        }
+
+        /**
+         * Store the current block as container.
+         */
+        private void flush() {
+            if (cardinality > 0) {
+                keys.add(key);
+                containers.add(block != null
+                        ? Container.of(block, cardinality)
+                        : Container.of(Arrays.copyOf(values, cardinality)));
+                size += cardinality;
+                block = null;
+                cardinality = 0;
+            }
+        }
+    }
+
+    /**
+     * The low 16 bits of the ranks of one block.
+     */
+    private abstract static class Container {
+        /**
+         * The XOR of the Zobrist keys of the values. Valid if hashed.
+         */
+        private volatile long hash;
+        private volatile boolean hashed = false;
+
+        /**
+         * Get the XOR of the Zobrist keys of the ranks of the values.
+         * It is computed on the first call. A container only belongs to one
+         * block, so the base is always the same.
+         *
+         * @param base The first rank of the block.
+         * @return The hash.
+         */
+        long hash(long base) {
+            if (hashed == false) {
+                long h = 0;
+                for (int v = next(0); v >= 0; v = next(v + 1)) {
+                    h ^= CandidateSet.zobrist(base | v);
+                }
+                hash = h;
+                hashed = true;
+            }
+            return hash;
+        }
+
+        /**
+         * Estimate the memory used by the container.
+         *
+         * @return The number of bytes.
+         */
+        abstract int bytes();
+
+        /**
+         * Getter for the number of values.
+         *
+         * @return The number of values.
+         */
+        abstract int cardinality();
+
+        /**
+         * Check if a value is in the container.
+         *
+         * @param low The value (0 to 65535).
+         * @return True if the value is in the container.
+         */
+        abstract boolean contains(int low);
+
+        /**
+         * Find the next value.
+         *
+         * @param low The value to start from.
+         * @return The first value >= low. -1 if there is none.
+         */
+        abstract int next(int low);
+
+        /**
+         * Set the bits of all values in a bitmap.
+         *
+         * @param bits The bitmap (BLOCK_WORDS longs).
+         */
+        abstract void addTo(long[] bits);
+
+        /**
+         * Create the smallest container for a bitmap.
+         *
+         * @param bits The bitmap (BLOCK_WORDS longs). It may be kept.
+         * @param cardinality The number of set bits.
+         * @return The container. Null if the bitmap is empty.
+         */
+        static Container of(long[] bits, int cardinality) {
+            if (cardinality == 0) {
+                return null;
+            }
+            int runs = 0;
+            long carry = 0;
+            for (long word : bits) {
+                // Count the first bit of every run.
+                runs += Long.bitCount(word & ~((word << 1) | carry));
+                carry = word >>> 63;
+            }
+            // Sizes in bytes: array 2 per value, run 4 per run, bitmap 8K.
+            if (runs * 4 <= Math.min(cardinality * 2, BLOCK_WORDS * 8)) {
+                return RunContainer.of(bits, runs);
+            }
+            if (cardinality <= ARRAY_MAX) {
+                return ArrayContainer.of(bits, cardinality);
+            }
+            return new BitmapContainer(bits, cardinality);
+        }
+
+        /**
+         * Create the smallest container for sorted values.
+         *
+         * @param values The sorted values (at most ARRAY_MAX). The array
+         * may be kept.
+         * @return The container.
+         */
+        static Container of(char[] values) {
+            int runs = 0;
+            for (int i = 0; i < values.length; i++) {
+                if (i == 0 || values[i] != values[i - 1] + 1) {
+                    runs++;
+                }
+            }
+            if (runs * 4 > values.length * 2) {
+                return new ArrayContainer(values);
+            }
+            char[] starts = new char[runs];
+            char[] ends = new char[runs];
+            int n = -1;
+            for (int i = 0; i < values.length; i++) {
+                if (i == 0 || values[i] != values[i - 1] + 1) {
+                    starts[++n] = values[i];
+                }
+                ends[n] = values[i];
+            }
+            return new RunContainer(starts, ends, values.length);
+        }
+
+        /**
+         * Intersect two containers.
+         *
+         * @param a The first container.
+         * @param b The second container.
+         * @return The values which are in both containers. Null if there
+         * are none.
+         */
+        static Container and(Container a, Container b) {
+            if (b instanceof ArrayContainer) {
+                Container t = a;
+                a = b;
+                b = t;
+            }
+            if (a instanceof ArrayContainer) {
+                char[] values = ((ArrayContainer) a).values;
+                char[] kept = new char[values.length];
+                int n = 0;
+                for (char v : values) {
+                    if (b.contains(v) == true) {
+                        kept[n++] = v;
+                    }
+                }
+                return n == 0 ? null : of(Arrays.copyOf(kept, n));
+            }
+            if (a instanceof RunContainer && b instanceof RunContainer) {
+                return RunContainer.and((RunContainer) a, (RunContainer) b);
+            }
+            long[] bits = new long[BLOCK_WORDS];
+            long[] other = new long[BLOCK_WORDS];
+            a.addTo(bits);
+            b.addTo(other);
+            int cardinality = 0;
+            for (int i = 0; i < BLOCK_WORDS; i++) {
+                bits[i] &= other[i];
+                cardinality += Long.bitCount(bits[i]);
+            }
+            return of(bits, cardinality);
+        }
+    }
+
+    /**
+     * A container storing its values in a sorted array.
+     */
+    private static final class ArrayContainer extends Container {
+        private final char[] values;
+
+        /**
+         * Create a container.
+         *
+         * @param values The sorted values. The array is kept.
+         */
+        ArrayContainer(char[] values) {
+            this.values = values;
+        }
+
+        /**
+         * Create a container from a bitmap.
+         *
+         * @param bits The bitmap.
+         * @param cardinality The number of set bits.
+         * @return The container.
+         */
+        static ArrayContainer of(long[] bits, int cardinality) {
+            char[] values = new char[cardinality];
+            int n = 0;
+            for (int w = 0; w < bits.length; w++) {
+                long word = bits[w];
+                while (word != 0) {
+                    values[n++] = (char) ((w << 6)
+                            + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values);
+        }
+
+        int bytes() {
+            return 48 + values.length * 2;
+        }
+
+        int cardinality() {
+            return values.length;
+        }
+
+        boolean contains(int low) {
+            return Arrays.binarySearch(values, (char) low) >= 0;
+        }
+
+        int next(int low) {
+            if (low > 0xFFFF) {
+                return -1;
+            }
+            int i = Arrays.binarySearch(values, (char) low);
+            if (i < 0) {
+                i = -i - 1;
+            }
+            return i < values.length ? values[i] : -1;
+        }
+
+        void addTo(long[] bits) {
+            for (char v : values) {
+                bits[v >>> 6] |= 1L << v;
+            }
+        }
+    }
+
+    /**
+     * A container storing its values in a bitmap.
+     */
+    private static final class BitmapContainer extends Container {
+        private final long[] bits;
+        private final int cardinality;
+
+        /**
+         * Create a container.
+         *
+         * @param bits The bitmap (BLOCK_WORDS longs). It is kept.
+         * @param cardinality The number of set bits.
+         */
+        BitmapContainer(long[] bits, int cardinality) {
+            this.bits = bits;
+            this.cardinality = cardinality;
+        }
+
+        int bytes() {
+            return 48 + BLOCK_WORDS * 8;
+        }
+
+        int cardinality() {
+            return cardinality;
+        }
+
+        boolean contains(int low) {
+            return (bits[low >>> 6] & (1L << low)) != 0;
+        }
+
+        int next(int low) {
+            int w = low >>> 6;
+            if (w >= BLOCK_WORDS) {
+                return -1;
+            }
+            long word = bits[w] & (-1L << low);
+            while (word == 0) {
+                if (++w == BLOCK_WORDS) {
+                    return -1;
+                }
+                word = bits[w];
+            }
+            return (w << 6) + Long.numberOfTrailingZeros(word);
+        }
+
+        void addTo(long[] target) {
+            for (int i = 0; i < BLOCK_WORDS; i++) {
+                target[i] |= bits[i];
+            }
+        }
+    }
+
+    /**
+     * A container storing its values as runs of consecutive values.
+     */
+    private static final class RunContainer extends Container {
+        /**
+         * The first value of every run, ascending.
+         */
+        private final char[] starts;
+        /**
+         * The last value of every run.
+         */
+        private final char[] ends;
+        private final int cardinality;
+
+        /**
+         * Create a container.
+         *
+         * @param starts The first value of every run. The array is kept.
+         * @param ends The last value of every run. The array is kept.
+         * @param cardinality The number of values.
+         */
+        RunContainer(char[] starts, char[] ends, int cardinality) {
+            this.starts = starts;
+            this.ends = ends;
+            this.cardinality = cardinality;
+        }
+
+        /**
+         * Create a container from a bitmap.
+         *
+         * @param bits The bitmap.
+         * @param runs The number of runs in the bitmap.
+         * @return The container.
+         */
+        static RunContainer of(long[] bits, int runs) {
+            char[] starts = new char[runs];
+            char[] ends = new char[runs];
+            int n = -1;
+            int cardinality = 0;
+            int last = -2;
+            for (int w = 0; w < bits.length; w++) {
+                long word = bits[w];
+                while (word != 0) {
+                    int v = (w << 6) + Long.numberOfTrailingZeros(word);
+                    if (v != last + 1) {
+                        starts[++n] = (char) v;
+                    }
+                    ends[n] = (char) v;
+                    last = v;
+                    cardinality++;
+                    word &= word - 1;
+                }
+            }
+            return new RunContainer(starts, ends, cardinality);
+        }
+
+        /**
+         * Intersect two run containers.
+         *
+         * @param a The first container.
+         * @param b The second container.
+         * @return The values which are in both containers. Null if there
+         * are none.
+         */
+        static RunContainer and(RunContainer a, RunContainer b) {
+            int max = a.starts.length + b.starts.length;
+            char[] starts = new char[max];
+            char[] ends = new char[max];
+            int n = 0;
+            int cardinality = 0;
+            int i = 0;
+            int j = 0;
+            while (i < a.starts.length && j < b.starts.length) {
+                int start = Math.max(a.starts[i], b.starts[j]);
+                int end = Math.min(a.ends[i], b.ends[j]);
+                if (start <= end) {
+                    starts[n] = (char) start;
+                    ends[n++] = (char) end;
+                    cardinality += end - start + 1;
+                }
+                // Continue with the run which ends first.
+                if (a.ends[i] < b.ends[j]) {
+                    i++;
+                } else {
+                    j++;
+                }
+            }
+            return n == 0 ? null : new RunContainer(Arrays.copyOf(starts, n),
+                    Arrays.copyOf(ends, n), cardinality);
+        }
+
+        int bytes() {
+            return 64 + starts.length * 4;
+        }
+
+        int cardinality() {
+            return cardinality;
+        }
+
+        boolean contains(int low) {
+            int i = run(low);
+            return i >= 0 && low <= ends[i];
+        }
+
+        int next(int low) {
+            if (low > 0xFFFF) {
+                return -1;
+            }
+            int i = run(low);
+            if (i >= 0 && low <= ends[i]) {
+                return low;
+            }
+            return i + 1 < starts.length ? starts[i + 1] : -1;
+        }
+
+        void addTo(long[] bits) {
+            for (int i = 0; i < starts.length; i++) {
+                for (int v = starts[i]; v <= ends[i]; v++) {
+                    bits[v >>> 6] |= 1L << v;
+                }
+            }
+        }
+
+        /**
+         * Find the last run starting at or before a value.
+         *
+         * @param low The value.
+         * @return The index of the run. -1 if all runs start after it.
+         */
+        private int run(int low) {
+            int i = Arrays.binarySearch(starts, (char) low);
+            return i >= 0 ? i : -i - 2;
+        }
+    }
+
+    /**
+     * The key of a cached partition.
+     */
+    private static final class PartitionKey {
+        private final int width;
+        private final int colQuant;
+        private final long guess;
+
+        /**
+         * Create a key.
+         *
+         * @param width The game width.
+         * @param colQuant The quantity of colors.
+         * @param guess The packed guess.
+         */
+        PartitionKey(int width, int colQuant, long guess) {
+            this.width = width;
+            this.colQuant = colQuant;
+            this.guess = guess;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o instanceof PartitionKey == false) {
+                return false;
+            }
+            PartitionKey k = (PartitionKey) o;
+            return width == k.width && colQuant == k.colQuant
+                    && guess == k.guess;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (guess ^ (guess >>> 32)) * 31
+                    + width * 256 + colQuant;
+        }
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ * Copyright 2011 Ikarus, René Kübler, Andreas J.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ai;
+
+import common.*;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The precomputed feedback of every guess for every secret code of a
+ * configuration, stored in a file and read through a read-only memory map.
+ * The file is written once (see write()); every JVM which loads it shares
+ * the pages of the operating system's file cache instead of computing and
+ * holding its own copy. The file has an 8 byte header:
+ * <pre>
+ * magic     4 bytes  "JAMS"
+ * version   1 byte   FORMAT_VERSION
+ * width     1 byte
+ * colQuant  1 byte
+ * reserved  1 byte
+ * </pre>
+ * followed by one byte (blacks * (width + 1) + whites) for every guess
+ * (row) and secret code (column), both by rank. All numbers are little
+ * endian.<br />
+ * Loaded matrices can be installed, so the candidate sets of their
+ * configuration look up feedbacks instead of computing them.
+ *
+ * @see CandidateSet#rank(long)
+ */
+public final class ScoreMatrix {
+    /**
+     * Max. number of codes of a configuration (a 4 GB file).
+     */
+    public static final int MAX_CODES = 1 << 16;
+    private static final int MAGIC = 0x4A414D53; // "JAMS"
+    private static final byte FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    /**
+     * Max. number of bytes per mapped chunk (1 GB).
+     */
+    private static final int CHUNK_BYTES = 1 << 30;
+    /**
+     * The installed matrices by configuration (width * 256 + colQuant).
+     */
+    private static final Map<Integer, ScoreMatrix> INSTALLED =
+            new ConcurrentHashMap<Integer, ScoreMatrix>();
+    private final int width;
+    private final int colQuant;
+    private final int capacity;
+    /**
+     * Number of rows per chunk.
+     */
+    private final int chunkRows;
+    private final ByteBuffer[] chunks;
+
+    /**
+     * Create a matrix.
+     *
+     * @param width The game width.
+     * @param colQuant The quantity of colors.
+     * @param chunks The mapped rows.
+     */
+    private ScoreMatrix(int width, int colQuant, ByteBuffer[] chunks) {
+        this.width = width;
+        this.colQuant = colQuant;
+        this.capacity = capacity(width, colQuant);
+        this.chunkRows = chunkRows(capacity);
+        this.chunks = chunks;
+    }
+
+    /**
+     * Compute the matrix of a configuration and write it to a file.
+     * The rows are computed in parallel on the common ForkJoinPool.
+     * The file is replaced atomically (see AtomicFile).
+     *
+     * @param file The file.
+     * @param width The game width.
+     * @param colQuant The quantity of colors.
+     * @throws IllegalArgumentException If the configuration has more than
+     * MAX_CODES codes.
+     * @throws IOException If writing failed.
+     */
+    public static void write(Path file, int width, int colQuant)
+            throws IOException {
+        int capacity = capacity(width, colQuant);
+        int bits = Codes.bitsPerPeg(colQuant);
+        long[] codes = new long[capacity];
+        for (int rank = 0; rank < capacity; rank++) {
+            int digits = rank;
+            for (int i = 0; i < width; i++) {
+                codes[rank] |= (long) (digits % colQuant) << (i * bits);
+                digits /= colQuant;
+            }
+        }
+        AtomicFile.write(file, tmp -> {
+            try (FileChannel channel = FileChannel.open(tmp,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE_NEW)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC);
+                header.put(FORMAT_VERSION);
+                header.put((byte) width);
+                header.put((byte) colQuant);
+                header.put((byte) 0);
+                header.flip();
+                channel.write(header, 0);
+                ByteBuffer[] chunks = map(channel, capacity,
+                        FileChannel.MapMode.READ_WRITE);
+                int chunkRows = chunkRows(capacity);
+                List<CompletableFuture<Void>> parts =
+                        new ArrayList<CompletableFuture<Void>>();
+                for (int c = 0; c < chunks.length; c++) {
+                    ByteBuffer chunk = chunks[c];
+                    int first = c * chunkRows;
+                    int rows = Math.min(chunkRows, capacity - first);
+                    // Split every chunk into tasks of some rows.
+                    int step = Math.max(1, rows / (4
+                            * ForkJoinPool.getCommonPoolParallelism()));
+                    for (int from = 0; from < rows; from += step) {
+                        final int start = from;
+                        final int end = Math.min(rows, from + step);
+                        parts.add(CompletableFuture.runAsync(() -> {
+                            for (int row = start; row < end; row++) {
+                                long guess = codes[first + row];
+                                int offset = row * capacity;
+                                for (int s = 0; s < capacity; s++) {
+                                    int feedback = Codes.feedback(guess,
+                                            codes[s], width, bits);
+                                    chunk.put(offset + s, (byte) (
+                                            Feedback.blacks(feedback)
+                                            * (width + 1)
+                                            + Feedback.whites(feedback)));
+                                }
+                            }
+                        }, ForkJoinPool.commonPool()));
+                    }
+                }
+                for (CompletableFuture<Void> part : parts) {
+                    part.join();
+                }
+                channel.force(false);
+            }
+        });
+    }
+
+    /**
+     * Load a matrix file by mapping it read-only.
+     *
+     * @param file The file.
+     * @return The matrix.
+     * @throws IOException If the file can not be read or is no valid
+     * matrix.
+     */
+    public static ScoreMatrix load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (channel.read(header, 0) != HEADER_SIZE
+                    || header.getInt(0) != MAGIC) {
+                throw new IOException("Not a JAMM score matrix: " + file);
+            }
+            if (header.get(4) != FORMAT_VERSION) {
+                throw new IOException("Unsupported score matrix version: "
+                        + header.get(4));
+            }
+            int width = header.get(5);
+            int colQuant = header.get(6);
+            if (width < 1 || width > Codes.MAX_WIDTH || colQuant < 1
+                    || colQuant > Codes.MAX_COLORS
+                    || Math.pow(colQuant, width) > MAX_CODES) {
+                throw new IOException("Corrupt score matrix header: " + file);
+            }
+            int capacity = capacity(width, colQuant);
+            if (channel.size() != HEADER_SIZE + (long) capacity * capacity) {
+                throw new IOException("Incomplete score matrix: " + file);
+            }
+            return new ScoreMatrix(width, colQuant, map(channel, capacity,
+                    FileChannel.MapMode.READ_ONLY));
+        }
+    }
+
+    /**
+     * Install a matrix. Candidate sets of its configuration will use it.
+     *
+     * @param matrix The matrix. It replaces an installed matrix of the
+     * same configuration.
+     */
+    public static void install(ScoreMatrix matrix) {
+        INSTALLED.put(matrix.width * 256 + matrix.colQuant, matrix);
+    }
+
+    /**
+     * Get the installed matrix of a configuration.
+     *
+     * @param width The game width.
+     * @param colQuant The quantity of colors.
+     * @return The matrix. Null if none is installed.
+     */
+    public static ScoreMatrix get(int width, int colQuant) {
+        return INSTALLED.get(width * 256 + colQuant);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getColQuant() {
+        return colQuant;
+    }
+
+    /**
+     * Getter for the number of codes (rows and columns).
+     *
+     * @return The number of codes.
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Look up the feedback key of a guess for a secret code.
+     *
+     * @param guess The rank of the guess.
+     * @param secret The rank of the secret code.
+     * @return blacks * (width + 1) + whites.
+     */
+    public int key(long guess, long secret) {
+        return chunks[(int) (guess / chunkRows)].get((int) (guess % chunkRows)
+                * capacity + (int) secret) & 0xFF;
+    }
+
+    /**
+     * Look up the feedback of a guess for a secret code.
+     *
+     * @param guess The rank of the guess.
+     * @param secret The rank of the secret code.
+     * @return The feedback.
+     * @see common.Feedback
+     */
+    public int feedback(long guess, long secret) {
+        int key = key(guess, secret);
+        return Feedback.of(key / (width + 1), key % (width + 1));
+    }
+
+    /**
+     * Get the number of codes of a configuration.
+     *
+     * @param width The game width.
+     * @param colQuant The quantity of colors.
+     * @return The number of codes.
+     * @throws IllegalArgumentException If there are more than MAX_CODES.
+     */
+    private static int capacity(int width, int colQuant) {
+        long capacity = 1;
+        for (int i = 0; i < width; i++) {
+            capacity *= colQuant;
+            if (capacity > MAX_CODES) {
+                throw new IllegalArgumentException("More than " + MAX_CODES
+                        + " codes");
+            }
+        }
+        return (int) capacity;
+    }
+
+    /**
+     * Get the number of rows which fit into one chunk.
+     *
+     * @param capacity The number of codes.
+     * @return The number of rows.
+     */
+    private static int chunkRows(int capacity) {
+        return Math.max(1, CHUNK_BYTES / capacity);
+    }
+
+    /**
+     * Map the rows of a matrix file in chunks.
+     *
+     * @param channel The file.
+     * @param capacity The number of codes.
+     * @param mode The map mode.
+     * @return The chunks.
+     * @throws IOException If mapping failed.
+     */
+    private static ByteBuffer[] map(FileChannel channel, int capacity,
+            FileChannel.MapMode mode) throws IOException {
+        int chunkRows = chunkRows(capacity);
+        ByteBuffer[] chunks = new ByteBuffer[(capacity + chunkRows - 1)
+                / chunkRows];
+        for (int i = 0; i < chunks.length; i++) {
+            long first = (long) i * chunkRows;
+            long rows = Math.min(chunkRows, capacity - first);
+            chunks[i] = channel.map(mode, HEADER_SIZE + first * capacity,
+                    rows * capacity);
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2011 Ikarus, René Kübler, Andreas J.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ai;
+
+/**
+ * The progress of a guess search (e.g. to show it in the GUI).
+ * Values a solving algorithm does not know are -1.
+ *
+ * @see SearchTask#progress(int, int, long)
+ * @see ProgressChannel
+ */
+public final class SearchProgress {
+    private final int generation;
+    private final int bestFitness;
+    private final long candidates;
+    private final long elapsed;
+
+    /**
+     * Create a progress event.
+     *
+     * @param generation The number of the generation (or step) of the
+     * search. -1 if unknown.
+     * @param bestFitness The fitness of the best code so far (0 is
+     * feasible). -1 if unknown.
+     * @param candidates The number of codes which are still possible.
+     * -1 if unknown.
+     * @param elapsed The time since the search was started in ms.
+     */
+    public SearchProgress(int generation, int bestFitness, long candidates,
+            long elapsed) {
+        this.generation = generation;
+        this.bestFitness = bestFitness;
+        this.candidates = candidates;
+        this.elapsed = elapsed;
+    }
+
+    public int getGeneration() {
+        return generation;
+    }
+
+    public int getBestFitness() {
+        return bestFitness;
+    }
+
+    public long getCandidates() {
+        return candidates;
+    }
+
+    /**
+     * Getter for the time since the search was started.
+     *
+     * @return The time in ms.
+     */
+    public long getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * Build a readable representation of the known values.
+     *
+     * @return The progress as String,
+     * e.g. "generation 12, best fitness 3, 1.2 s".
+     */
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder();
+        if (generation >= 0) {
+            s.append("generation ").append(generation).append(", ");
+        }
+        if (bestFitness >= 0) {
+            s.append("best fitness ").append(bestFitness).append(", ");
+        }
+        if (candidates >= 0) {
+            s.append(candidates).append(" candidates, ");
+        }
+        return s.append(elapsed / 1000).append('.')
+                .append(elapsed % 1000 / 100).append(" s").toString();
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2011 Ikarus, René Kübler, Andreas J.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ai;
+
+import common.Row;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Runs the guess generation of a solving algorithm in the background.
+ * The cancellation is cooperative: Cancelling the future returned by
+ * submit() marks the search as cancelled and the solving algorithm stops at
+ * its next call of checkpoint().<br />
+ * Solving algorithms report their progress by progress(). It is passed to
+ * the ProgressChannel of the search, if it has one.
+ *
+ * @see SolvingAlgorithm#generateGuessAsync(java.util.concurrent.Executor)
+ */
+public final class SearchTask {
+
+    /**
+     * The search running on the current thread.
+     * Null if the current thread runs no background search.
+     */
+    private static final ThreadLocal<Context> CURRENT =
+            new ThreadLocal<Context>();
+
+    /**
+     * No instances. This class only has static functions.
+     */
+    private SearchTask() {
+    }
+
+    /**
+     * Generate a guess with the given solving algorithm on the executor.
+     *
+     * @param solver The solving algorithm to use.
+     * @param executor The executor which runs the search.
+     * @return A future which completes with the guess. Cancelling it stops
+     * the search at the next checkpoint.
+     */
+    public static CompletableFuture<Row> submit(SolvingAlgorithm solver,
+            Executor executor) {
+        return submit(solver, executor, null);
+    }
+
+    /**
+     * Generate a guess with the given solving algorithm on the executor
+     * and publish its progress.
+     *
+     * @param solver The solving algorithm to use.
+     * @param executor The executor which runs the search.
+     * @param progress Gets the progress of the search. May be null.
+     * @return A future which completes with the guess. Cancelling it stops
+     * the search at the next checkpoint.
+     */
+    public static CompletableFuture<Row> submit(final SolvingAlgorithm solver,
+            Executor executor, ProgressChannel progress) {
+        return run(new Supplier<Row>() {
+            public Row get() {
+                return solver.generateGuess();
+            }
+        }, executor, progress);
+    }
+
+    /**
+     * Run any search on the executor, e.g. a whole game of a solving
+     * algorithm. The solving algorithms stop at their next checkpoint if
+     * the future is cancelled, as with submit().
+     *
+     * @param search The search.
+     * @param executor The executor which runs the search.
+     * @param progress Gets the progress of the search. May be null.
+     * @return A future which completes with the result of the search.
+     */
+    static <T> CompletableFuture<T> run(final Supplier<T> search,
+            Executor executor, final ProgressChannel progress) {
+        final CompletableFuture<T> future = new CompletableFuture<T>();
+        try {
+            executor.execute(new Runnable() {
+                public void run() {
+                    if (future.isDone()) {
+                        // Cancelled before the search has started.
+                        return;
+                    }
+                    CURRENT.set(new Context(future, progress));
+                    try {
+                        future.complete(search.get());
+                    } catch (CancellationException e) {
+                        future.cancel(false);
+                    } catch (Throwable t) {
+                        future.completeExceptionally(t);
+                    } finally {
+                        CURRENT.remove();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            // E.g. the executor was shut down.
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Check if the search running on the current thread was cancelled.
+     * Solving algorithms should call this function regularly in their
+     * long running loops. If the current thread runs no background search
+     * (e.g. generateGuess() was called directly) nothing happens.
+     *
+     * @throws CancellationException If the search was cancelled.
+     */
+    public static void checkpoint() {
+        Context task = CURRENT.get();
+        if (task != null && task.future.isCancelled()) {
+            throw new CancellationException("Search was cancelled");
+        }
+    }
+
+    /**
+     * Get the cancellation check of the search running on the current
+     * thread. Unlike checkpoint(), the check can be passed to other threads,
+     * e.g. to the parallel parts of the search.
+     *
+     * @return Throws a CancellationException if the search was cancelled.
+     * Does nothing if the current thread runs no background search.
+     */
+    static Runnable checkpoints() {
+        final Context task = CURRENT.get();
+        return new Runnable() {
+            public void run() {
+                if (task != null && task.future.isCancelled()) {
+                    throw new CancellationException("Search was cancelled");
+                }
+            }
+        };
+    }
+
+    /**
+     * Report the progress of the search running on the current thread.
+     * This is cheap: nothing happens if the search has no ProgressChannel
+     * (or the current thread runs no background search), otherwise the
+     * newest event of the channel is replaced.
+     *
+     * @param generation The number of the generation (or step) of the
+     * search. -1 if unknown.
+     * @param bestFitness The fitness of the best code so far (0 is
+     * feasible). -1 if unknown.
+     * @param candidates The number of codes which are still possible.
+     * -1 if unknown.
+     */
+    public static void progress(int generation, int bestFitness,
+            long candidates) {
+        Context task = CURRENT.get();
+        if (task != null && task.progress != null) {
+            task.progress.publish(new SearchProgress(generation, bestFitness,
+                    candidates, (System.nanoTime() - task.start) / 1000000));
+        }
+    }
+
+    /**
+     * Pass a progress event (e.g. of a search this search waits for) to
+     * the ProgressChannel of the search running on the current thread.
+     *
+     * @param event The event.
+     */
+    static void progress(SearchProgress event) {
+        Context task = CURRENT.get();
+        if (task != null && task.progress != null) {
+            task.progress.publish(event);
+        }
+    }
+
+    /**
+     * A background search.
+     */
+    private static final class Context {
+        private final Future<?> future;
+        /**
+         * Gets the progress. May be null.
+         */
+        private final ProgressChannel progress;
+        /**
+         * The start of the search (System.nanoTime()).
+         */
+        private final long start = System.nanoTime();
+
+        /**
+         * Create the context of a search.
+         *
+         * @param future The future of the search.
+         * @param progress Gets the progress. May be null.
+         */
+        Context(Future<?> future, ProgressChannel progress) {
+            this.future = future;
+            this.progress = progress;
+        }
+    }
+}
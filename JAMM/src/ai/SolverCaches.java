@@ -0,0 +1,75 @@
+/*
+ * Copyright 2011 Ikarus, René Kübler, Andreas J.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ai;
+
+/**
+ * The caches of the solving algorithms: the guesses of whole histories
+ * (GuessCache) and the search results of candidate sets
+ * (TranspositionTable). Normally all games of the JVM share one instance,
+ * separate instances keep e.g. measurements from filling the shared caches
+ * and from profiting from them.
+ *
+ * @see SolverProvider#create(game.ControlInterface, SolverCaches)
+ */
+public final class SolverCaches {
+    /**
+     * The caches shared by all games of the JVM.
+     */
+    private static final SolverCaches SHARED = new SolverCaches(
+            GuessCache.shared(), TranspositionTable.shared());
+    private final GuessCache guesses;
+    private final TranspositionTable table;
+
+    /**
+     * Create a set of caches.
+     *
+     * @param guesses The cache of the guesses.
+     * @param table The table of the search results.
+     */
+    public SolverCaches(GuessCache guesses, TranspositionTable table) {
+        this.guesses = guesses;
+        this.table = table;
+    }
+
+    /**
+     * Getter for the caches shared by all games of the JVM.
+     *
+     * @return GuessCache.shared() and TranspositionTable.shared().
+     */
+    public static SolverCaches shared() {
+        return SHARED;
+    }
+
+    /**
+     * Getter for the cache of the guesses.
+     *
+     * @return The cache.
+     */
+    public GuessCache getGuesses() {
+        return guesses;
+    }
+
+    /**
+     * Getter for the table of the search results.
+     *
+     * @return The table.
+     */
+    public TranspositionTable getTable() {
+        return table;
+    }
+}
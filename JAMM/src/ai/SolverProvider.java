@@ -0,0 +1,117 @@
+/*
+ * Copyright 2011 Ikarus, René Kübler, Andreas J.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ai;
+
+import game.ControlInterface;
+
+/**
+ * Describes a solving algorithm for the SolverRegistry: what it can solve,
+ * how good its guesses are and how long it needs for a guess.
+ * Providers are found by java.util.ServiceLoader, so solving algorithms
+ * can be added by listing their provider in
+ * META-INF/services/ai.SolverProvider.
+ *
+ * @see SolverRegistry
+ * @see SolvingAlgorithm
+ */
+public interface SolverProvider {
+
+    /**
+     * How good the guesses of a solving algorithm are, weakest first.
+     */
+    public enum Strength {
+        /**
+         * The guesses do not depend on the results.
+         */
+        BLIND,
+        /**
+         * Every guess could be the secret code (it is consistent with all
+         * results).
+         */
+        CONSISTENT,
+        /**
+         * Like CONSISTENT, but the possible codes are computed exactly.
+         * The guesses are chosen by a heuristic, only small end games are
+         * searched for the fewest guesses.
+         */
+        ENDGAME_SEARCH
+    }
+
+    /**
+     * Getter for the name (e.g. for the command line).
+     *
+     * @return The unique name.
+     */
+    public String getName();
+
+    /**
+     * Create the solving algorithm for a game.
+     *
+     * @param ci The control interface of the game.
+     * @return The solving algorithm.
+     */
+    public SolvingAlgorithm create(ControlInterface ci);
+
+    /**
+     * Create the solving algorithm for a game which uses the given caches
+     * instead of the shared ones. Providers of algorithms without caches
+     * need not implement this.
+     *
+     * @param ci The control interface of the game.
+     * @param caches The caches.
+     * @return The solving algorithm.
+     */
+    public default SolvingAlgorithm create(ControlInterface ci,
+            SolverCaches caches) {
+        return create(ci);
+    }
+
+    /**
+     * Check if a configuration can be solved.
+     *
+     * @param width The game width.
+     * @param colQuant The quantity of colors.
+     * @param doubleColors Allowance of same colors.
+     * @return True if the configuration is supported.
+     */
+    public boolean supports(int width, int colQuant, boolean doubleColors);
+
+    /**
+     * Getter for the strength of the guesses.
+     *
+     * @return The strength.
+     */
+    public Strength getStrength();
+
+    /**
+     * Check if the same history always leads to the same guess.
+     *
+     * @return True if the guesses are deterministic.
+     */
+    public boolean isDeterministic();
+
+    /**
+     * Estimate the time for a guess. Only the growth matters: the
+     * SolverRegistry scales the estimate by calibration.
+     *
+     * @param codes The number of codes of the configuration.
+     * @return The estimated time in ms.
+     */
+    public double estimateCost(long codes);
+}
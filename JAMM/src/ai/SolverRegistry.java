@@ -0,0 +1,293 @@
+/*
+ * Copyright 2011 Ikarus, René Kübler, Andreas J.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ai;
+
+import common.*;
+import game.ControlInterface;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The available solving algorithms and a policy which chooses one for a
+ * configuration.
+ * The providers are found by java.util.ServiceLoader (see SolverProvider).
+ * choose() takes the fastest of the strongest solving algorithms whose
+ * estimated time per guess is within MAX_GUESS_MILLIS, e.g. the exact
+ * solver for 4 x 6 and the genetic algorithm for 8 x 15. The estimates
+ * of the providers are scaled by calibration: calibrate() measures the
+ * real time per guess on a small configuration.
+ *
+ * @see SolverProvider
+ */
+public final class SolverRegistry {
+    /**
+     * Max. estimated time for a guess (in ms) of a chosen solving
+     * algorithm.
+     */
+    public static final double MAX_GUESS_MILLIS = 1000;
+    /**
+     * Configuration used by calibrate(): width, color quantity and
+     * number of games.
+     */
+    private static final int[] STD_CALIBRATION = {4, 6, 3};
+    /**
+     * Max. tries of a calibration game.
+     */
+    private static final int CALIBRATION_TRIES = 12;
+    /**
+     * Number of entries of the caches of a calibrated provider.
+     */
+    private static final int CALIBRATION_CACHE_SIZE = 1 << 12;
+    /**
+     * Calibration factors are limited to 1 / MAX_SCALE to MAX_SCALE, so a
+     * disturbed measurement can not rule out a solving algorithm.
+     */
+    private static final double MAX_SCALE = 100;
+    /**
+     * The registry of the providers on the class path.
+     */
+    private static SolverRegistry shared;
+    private final List<SolverProvider> providers;
+    /**
+     * Calibration factor of the estimates by provider name.
+     */
+    private final Map<String, Double> scales =
+            new ConcurrentHashMap<String, Double>();
+
+    /**
+     * Create a registry.
+     *
+     * @param providers The providers.
+     */
+    public SolverRegistry(List<SolverProvider> providers) {
+        this.providers = Collections.unmodifiableList(
+                new ArrayList<SolverProvider>(providers));
+    }
+
+    /**
+     * Get the registry of all providers on the class path.
+     * The providers are loaded once.
+     *
+     * @return The registry.
+     */
+    public static synchronized SolverRegistry shared() {
+        if (shared == null) {
+            List<SolverProvider> providers = new ArrayList<SolverProvider>();
+            for (SolverProvider provider : ServiceLoader.load(
+                    SolverProvider.class,
+                    SolverRegistry.class.getClassLoader())) {
+                providers.add(provider);
+            }
+            shared = new SolverRegistry(providers);
+        }
+        return shared;
+    }
+
+    /**
+     * Getter for all providers.
+     *
+     * @return The providers.
+     */
+    public List<SolverProvider> getProviders() {
+        return providers;
+    }
+
+    /**
+     * Get a provider by name.
+     *
+     * @param name The name.
+     * @return The provider. Null if there is none.
+     */
+    public SolverProvider get(String name) {
+        for (SolverProvider provider : providers) {
+            if (provider.getName().equals(name) == true) {
+                return provider;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the names of all providers.
+     *
+     * @return The names, e.g. "exact, genetic, random".
+     */
+    public String getNames() {
+        StringBuilder names = new StringBuilder();
+        for (SolverProvider provider : providers) {
+            if (names.length() > 0) {
+                names.append(", ");
+            }
+            names.append(provider.getName());
+        }
+        return names.toString();
+    }
+
+    /**
+     * Choose the solving algorithm for a configuration: the fastest of the
+     * strongest algorithms which need at most MAX_GUESS_MILLIS per guess.
+     * If none is fast enough, the fastest supporting algorithm is chosen.
+     *
+     * @param width The game width.
+     * @param colQuant The quantity of colors.
+     * @param doubleColors Allowance of same colors.
+     * @return The provider.
+     * @throws IllegalStateException If no provider supports the
+     * configuration.
+     */
+    public SolverProvider choose(int width, int colQuant,
+            boolean doubleColors) {
+        long codes = codes(width, colQuant);
+        SolverProvider.Strength[] strengths =
+                SolverProvider.Strength.values();
+        for (int s = strengths.length - 1; s >= 0; s--) {
+            SolverProvider best = fastest(width, colQuant, doubleColors,
+                    codes, strengths[s]);
+            if (best != null && estimateCost(best, codes)
+                    <= MAX_GUESS_MILLIS) {
+                return best;
+            }
+        }
+        SolverProvider fastest = fastest(width, colQuant, doubleColors,
+                codes, null);
+        if (fastest == null) {
+            throw new IllegalStateException("No solving algorithm for "
+                    + width + " x " + colQuant);
+        }
+        return fastest;
+    }
+
+    /**
+     * Estimate the time for a guess of a provider.
+     *
+     * @param provider The provider.
+     * @param codes The number of codes of the configuration.
+     * @return The calibrated estimate in ms.
+     */
+    public double estimateCost(SolverProvider provider, long codes) {
+        Double scale = scales.get(provider.getName());
+        return provider.estimateCost(codes) * (scale != null ? scale : 1);
+    }
+
+    /**
+     * Calibrate the estimates on the standard configuration (4 x 6 with
+     * double colors). Takes less than a second.
+     *
+     * @see #calibrate(int, int, boolean, int)
+     */
+    public void calibrate() {
+        calibrate(STD_CALIBRATION[0], STD_CALIBRATION[1], true,
+                STD_CALIBRATION[2]);
+    }
+
+    /**
+     * Measure the time per guess of every provider supporting a
+     * configuration and scale its estimates accordingly.
+     * Every provider gets its own caches (see SolverCaches), so the
+     * calibration does not fill the shared caches and a provider is not
+     * timed on guesses cached by another one.
+     *
+     * @param width The game width.
+     * @param colQuant The quantity of colors.
+     * @param doubleColors Allowance of same colors.
+     * @param games The number of games played by every provider.
+     */
+    public void calibrate(int width, int colQuant, boolean doubleColors,
+            int games) {
+        long codes = codes(width, colQuant);
+        for (SolverProvider provider : providers) {
+            if (provider.supports(width, colQuant, doubleColors) == false) {
+                continue;
+            }
+            SolverCaches caches = new SolverCaches(
+                    new GuessCache(CALIBRATION_CACHE_SIZE, true),
+                    new TranspositionTable(CALIBRATION_CACHE_SIZE));
+            long time = 0;
+            int guesses = 0;
+            for (int g = 0; g < games; g++) {
+                ControlInterface ci = ControlInterface.create(width,
+                        colQuant, doubleColors, CALIBRATION_TRIES, null);
+                SolvingAlgorithm solver = provider.create(ci, caches);
+                while (ci.getGameEnded() == false) {
+                    long start = System.nanoTime();
+                    Row guess = solver.generateGuess();
+                    time += System.nanoTime() - start;
+                    guesses++;
+                    ci.submitTurn(ci.getActiveRowNumber(), guess.getPegs());
+                }
+            }
+            double measured = time / 1e6 / guesses;
+            double scale = measured / provider.estimateCost(codes);
+            scales.put(provider.getName(), Math.max(1 / MAX_SCALE,
+                    Math.min(MAX_SCALE, scale)));
+            Log.debug("Calibration: {} needs {} ms per guess",
+                    provider.getName(), measured);
+        }
+    }
+
+    /**
+     * Find the fastest provider of a strength supporting a configuration.
+     *
+     * @param width The game width.
+     * @param colQuant The quantity of colors.
+     * @param doubleColors Allowance of same colors.
+     * @param codes The number of codes.
+     * @param strength The strength. Null for any strength.
+     * @return The provider. Null if there is none.
+     */
+    private SolverProvider fastest(int width, int colQuant,
+            boolean doubleColors, long codes,
+            SolverProvider.Strength strength) {
+        SolverProvider best = null;
+        double bestCost = Double.MAX_VALUE;
+        for (SolverProvider provider : providers) {
+            if ((strength == null || provider.getStrength() == strength)
+                    && provider.supports(width, colQuant, doubleColors)) {
+                double cost = estimateCost(provider, codes);
+                if (cost < bestCost) {
+                    best = provider;
+                    bestCost = cost;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Get the number of codes of a configuration.
+     *
+     * @param width The game width.
+     * @param colQuant The quantity of colors.
+     * @return The number of codes (Long.MAX_VALUE if it is larger).
+     */
+    private static long codes(int width, int colQuant) {
+        long codes = 1;
+        for (int i = 0; i < width; i++) {
+            if (codes > Long.MAX_VALUE / colQuant) {
+                return Long.MAX_VALUE;
+            }
+            codes *= colQuant;
+        }
+        return codes;
+    }
+}
@@ -19,6 +19,8 @@ package ai;
 
 import common.*;
 import game.ControlInterface;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * This interface describes how a solving algorithm has to be implemented.
@@ -32,8 +34,11 @@ import game.ControlInterface;
 public interface SolvingAlgorithm {
     /**
      * This function creates a guess and does a full turn in the game.
+     * The turn is only made if nobody else played while the guess was
+     * generated.
      * 
-     * @return The state of the turn() function.
+     * @return The state of the submitTurn() function.
+     * @see ControlInterface#submitTurn(int, int[])
      */
     public int makeGuess();
     
@@ -43,4 +48,44 @@ public interface SolvingAlgorithm {
      * @return The row that was guessed.
      */
     public Row generateGuess();
+
+    /**
+     * Generate a guess in the background.
+     * The guess is generated by generateGuess() on the given executor.
+     * Cancelling the returned future stops the search as soon as the
+     * algorithm reaches its next checkpoint.
+     *
+     * @param executor The executor which runs the search.
+     * @return A future which completes with the guessed row.
+     * @see SearchTask#checkpoint()
+     */
+    public default CompletableFuture<Row> generateGuessAsync(
+            Executor executor) {
+        return SearchTask.submit(this, executor);
+    }
+
+    /**
+     * Generate a guess in the background and publish its progress.
+     *
+     * @param executor The executor which runs the search.
+     * @param progress Gets the progress of the search.
+     * @return A future which completes with the guessed row.
+     * @see SearchTask#progress(int, int, long)
+     */
+    public default CompletableFuture<Row> generateGuessAsync(
+            Executor executor, ProgressChannel progress) {
+        return SearchTask.submit(this, executor, progress);
+    }
+
+    /**
+     * Identifies the strategy of the algorithm in a GuessCache.
+     * Algorithms with equal strategies make equally good guesses for the
+     * same history, so they may share their cached guesses.
+     *
+     * @return The strategy. Std. the class of the algorithm.
+     * @see CachingSolver
+     */
+    public default Object getStrategy() {
+        return getClass();
+    }
 }
@@ -0,0 +1,392 @@
+/*
+ * Copyright 2011 Ikarus, René Kübler, Andreas J.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ai;
+
+import common.*;
+import game.ControlInterface;
+import game.History;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Plays a solving algorithm against every possible secret code of a game
+ * configuration (not a random sample like the benchmark) and reports the
+ * exact worst case, the average and the distribution of the number of
+ * guesses as well as the time needed per guess.
+ * The secret codes are split between several threads.<br />
+ * If the algorithm is deterministic (its guess only depends on the game
+ * history), every decision is made only once: the guesses are memoized by
+ * history, so games sharing the same beginning share the decisions made
+ * for it. A new algorithm is created for every decision in this case.
+ *
+ * @see GeneticSolver#geneticSolverTest(int)
+ */
+public class StrategyEvaluator {
+    /**
+     * Max. number of secret codes of an evaluated configuration.
+     */
+    public static final int MAX_SECRETS = 1 << 24;
+    /**
+     * Number of parts the secret codes are split into per thread.
+     */
+    private final int PARTS_PER_THREAD = 16;
+    private final Function<ControlInterface, SolvingAlgorithm> solverFactory;
+    private final int width;
+    private final int colQuant;
+    private final boolean doubleColors;
+    private final int maxTries;
+    private final boolean deterministic;
+    /**
+     * Number of secret codes (with and without double colors).
+     */
+    private final int secrets;
+    /**
+     * The memoized decisions of a deterministic algorithm.
+     */
+    private final ConcurrentHashMap<History, Row> decisions =
+            new ConcurrentHashMap<History, Row>();
+
+    /**
+     * Create an evaluator for a configuration.
+     *
+     * @param solverFactory Creates the solving algorithm for a game.
+     * @param width The width of the game.
+     * @param colQuant The quantity of colors.
+     * @param doubleColors Allowance of same colors.
+     * @param maxTries The max. number of guesses.
+     * @param deterministic True if the guesses of the algorithm only depend
+     * on the game history. Its decisions are shared between games then.
+     * @throws IllegalArgumentException If the settings are invalid or there
+     * are more than MAX_SECRETS secret codes.
+     */
+    public StrategyEvaluator(
+            Function<ControlInterface, SolvingAlgorithm> solverFactory,
+            int width, int colQuant, boolean doubleColors, int maxTries,
+            boolean deterministic) {
+        if (width < 1 || width > Codes.MAX_WIDTH || colQuant < 1
+                || colQuant > Codes.MAX_COLORS || maxTries < 1
+                || (width > colQuant && doubleColors == false)) {
+            throw new IllegalArgumentException("Invalid settings");
+        }
+        long count = 1;
+        for (int i = 0; i < width; i++) {
+            count *= colQuant;
+            if (count > MAX_SECRETS) {
+                throw new IllegalArgumentException("More than " + MAX_SECRETS
+                        + " secret codes");
+            }
+        }
+        this.solverFactory = solverFactory;
+        this.width = width;
+        this.colQuant = colQuant;
+        this.doubleColors = doubleColors;
+        this.maxTries = maxTries;
+        this.deterministic = deterministic;
+        secrets = (int) count;
+    }
+
+    /**
+     * Play the algorithm against every secret code.
+     *
+     * @param threads The number of threads to use.
+     * @return The report.
+     * @throws InterruptedException If the evaluation was interrupted.
+     * @throws IllegalStateException If the algorithm failed.
+     */
+    public Report evaluate(int threads) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                new DaemonThreadFactory("JAMM-Evaluator"));
+        try {
+            int parts = threads * PARTS_PER_THREAD;
+            List<Future<Report>> results = new ArrayList<Future<Report>>();
+            for (int part = 0; part < parts; part++) {
+                final int first = part;
+                results.add(executor.submit(() -> play(first, parts)));
+            }
+            Report report = new Report(maxTries);
+            for (Future<Report> result : results) {
+                report.add(result.get());
+            }
+            report.decisions = decisions.size();
+            return report;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Evaluation failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Play every n-th secret code.
+     *
+     * @param first The rank of the first secret code.
+     * @param step The distance between the ranks of the secret codes.
+     * @return The report of these games.
+     */
+    private Report play(int first, int step) {
+        Report report = new Report(maxTries);
+        int[] pegs = new int[width];
+        for (int rank = first; rank < secrets; rank += step) {
+            int digits = rank;
+            for (int i = 0; i < width; i++) {
+                pegs[i] = digits % colQuant;
+                digits /= colQuant;
+            }
+            if (doubleColors == false
+                    && new Row(pegs).containsDoubleColor() == true) {
+                continue;
+            }
+            play(pegs, report);
+        }
+        return report;
+    }
+
+    /**
+     * Play one game.
+     *
+     * @param secret The pegs of the secret code.
+     * @param report The report to add the game to.
+     */
+    private void play(int[] secret, Report report) {
+        ControlInterface ci = ControlInterface.create(width, colQuant,
+                doubleColors, maxTries, secret);
+        SolvingAlgorithm solver = deterministic ? null
+                : solverFactory.apply(ci);
+        int state = 0;
+        while (state == 0) {
+            int row = ci.getActiveRowNumber();
+            Row guess;
+            if (deterministic == true) {
+                History history = ci.history();
+                guess = decisions.get(history);
+                if (guess == null) {
+                    long start = System.nanoTime();
+                    guess = solverFactory.apply(ci).generateGuess();
+                    report.addLatency(row, System.nanoTime() - start);
+                    Row known = decisions.putIfAbsent(history, guess);
+                    if (known != null) {
+                        guess = known;
+                    }
+                }
+            } else {
+                long start = System.nanoTime();
+                guess = solver.generateGuess();
+                report.addLatency(row, System.nanoTime() - start);
+            }
+            state = ci.submitTurn(row, guess.getPegs());
+        }
+        report.addGame(state == 1, ci.getActiveRowNumber());
+    }
+
+    /**
+     * The result of an evaluation.
+     */
+    public static final class Report {
+        private final int maxTries;
+        private long games = 0;
+        private long lost = 0;
+        private long guesses = 0;
+        private int worstCase = 0;
+        /**
+         * Number of won games by number of guesses - 1.
+         */
+        private final long[] distribution;
+        /**
+         * Sum of the time needed for guesses (in ns) by row.
+         */
+        private final long[] latency;
+        /**
+         * Number of generated guesses by row.
+         */
+        private final long[] latencyCount;
+        private int decisions = 0;
+
+        /**
+         * Create an empty report.
+         *
+         * @param maxTries The max. number of guesses.
+         */
+        private Report(int maxTries) {
+            this.maxTries = maxTries;
+            distribution = new long[maxTries];
+            latency = new long[maxTries];
+            latencyCount = new long[maxTries];
+        }
+
+        /**
+         * Add a played game.
+         *
+         * @param won True if the code was broken.
+         * @param rows The number of guesses.
+         */
+        private void addGame(boolean won, int rows) {
+            games++;
+            if (won == true) {
+                guesses += rows;
+                worstCase = Math.max(worstCase, rows);
+                distribution[rows - 1]++;
+            } else {
+                lost++;
+            }
+        }
+
+        /**
+         * Add the time needed to generate a guess.
+         *
+         * @param row The row number of the guess.
+         * @param nanos The time in ns.
+         */
+        private void addLatency(int row, long nanos) {
+            latency[row] += nanos;
+            latencyCount[row]++;
+        }
+
+        /**
+         * Add all games of another report.
+         *
+         * @param other The other report.
+         */
+        private void add(Report other) {
+            games += other.games;
+            lost += other.lost;
+            guesses += other.guesses;
+            worstCase = Math.max(worstCase, other.worstCase);
+            for (int i = 0; i < maxTries; i++) {
+                distribution[i] += other.distribution[i];
+                latency[i] += other.latency[i];
+                latencyCount[i] += other.latencyCount[i];
+            }
+        }
+
+        /**
+         * Getter for the number of played games (secret codes).
+         *
+         * @return The number of games.
+         */
+        public long getGames() {
+            return games;
+        }
+
+        /**
+         * Getter for the number of lost games.
+         *
+         * @return The number of games in which the code was not broken.
+         */
+        public long getLost() {
+            return lost;
+        }
+
+        /**
+         * Getter for the worst case.
+         *
+         * @return The max. number of guesses of a game. maxTries + 1 if a
+         * game was lost (the code was not broken within maxTries guesses).
+         */
+        public int getWorstCase() {
+            return lost > 0 ? maxTries + 1 : worstCase;
+        }
+
+        /**
+         * Getter for the average number of guesses.
+         *
+         * @return The average number of guesses of the won games.
+         */
+        public double getAverage() {
+            return games == lost ? 0 : (double) guesses / (games - lost);
+        }
+
+        /**
+         * Get the number of games won with a number of guesses.
+         *
+         * @param guessCount The number of guesses (1 to maxTries).
+         * @return The number of games.
+         */
+        public long getDistribution(int guessCount) {
+            return distribution[guessCount - 1];
+        }
+
+        /**
+         * Get the average time needed to generate a guess of a row.
+         *
+         * @param row The row number.
+         * @return The average time in ns. 0 if no guess was generated.
+         */
+        public long getLatency(int row) {
+            return latencyCount[row] == 0 ? 0
+                    : latency[row] / latencyCount[row];
+        }
+
+        /**
+         * Getter for the number of memoized decisions.
+         *
+         * @return The number of different game histories a deterministic
+         * algorithm decided on. 0 for other algorithms.
+         */
+        public int getDecisions() {
+            return decisions;
+        }
+
+        /**
+         * Build a readable report.
+         *
+         * @return The report.
+         */
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("Games: ").append(games).append('\n');
+            sb.append("Won: ").append(games - lost).append('\n');
+            sb.append("Lost: ").append(lost).append('\n');
+            if (lost > 0) {
+                sb.append("Worst case: unsolved (").append(lost)
+                        .append(" games not solved within ").append(maxTries)
+                        .append(" guesses)\n");
+            } else {
+                sb.append("Worst case: ").append(worstCase).append('\n');
+            }
+            sb.append(lost > 0 ? "Average guesses of won games: "
+                    : "Average guesses: ")
+                    .append(String.format("%.4f", getAverage())).append('\n');
+            if (decisions > 0) {
+                sb.append("Decisions: ").append(decisions).append('\n');
+            }
+            sb.append("Guesses  Games\n");
+            for (int i = 0; i < maxTries; i++) {
+                sb.append(String.format("%7d %6d%n", i + 1, distribution[i]));
+            }
+            if (lost > 0) {
+                sb.append(String.format("%7s %6d%n", ">" + maxTries, lost));
+            }
+            sb.append("Row  Guesses  Avg. time of guess in ms\n");
+            for (int i = 0; i < maxTries; i++) {
+                if (latencyCount[i] > 0) {
+                    sb.append(String.format("%3d %8d %10.3f%n", i + 1,
+                            latencyCount[i], getLatency(i) / 1e6));
+                }
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2011 Ikarus, René Kübler, Andreas J.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ai;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded table of search results keyed by the Zobrist hash of a
+ * candidate set. Different histories often leave the same candidates, so
+ * the best guess for them only has to be searched once.<br />
+ * The table has a fixed number of slots. Every hash maps to a bucket of
+ * two slots. If a bucket is full, the entry with fewer candidates is
+ * replaced, since it is cheaper to search again.<br />
+ * Reads do not lock. The table can be used by many threads.
+ *
+ * @see CandidateSet#getHash()
+ */
+public final class TranspositionTable {
+    /**
+     * Std. number of slots of the shared table.
+     */
+    public static final int STD_SLOTS = 1 << 18;
+    /**
+     * The table shared by all searches of the JVM.
+     */
+    private static final TranspositionTable SHARED =
+            new TranspositionTable(STD_SLOTS);
+    private final AtomicReferenceArray<Entry> slots;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * A search result.
+     */
+    public static final class Entry {
+        /**
+         * The Zobrist hash of the candidate set.
+         */
+        public final long hash;
+        /**
+         * The best guess (packed).
+         */
+        public final long guess;
+        /**
+         * The score of the guess (e.g. the total number of guesses needed
+         * to solve all candidates).
+         */
+        public final int score;
+        /**
+         * The number of candidates.
+         */
+        public final int size;
+
+        /**
+         * Create an entry.
+         *
+         * @param hash The Zobrist hash of the candidate set.
+         * @param guess The best guess (packed).
+         * @param score The score of the guess.
+         * @param size The number of candidates.
+         */
+        public Entry(long hash, long guess, int score, int size) {
+            this.hash = hash;
+            this.guess = guess;
+            this.score = score;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Create a table.
+     *
+     * @param slots The number of slots. Rounded up to a power of two
+     * (at least 2).
+     */
+    public TranspositionTable(int slots) {
+        int n = Math.max(2, Integer.highestOneBit(Math.max(1, slots - 1)) << 1);
+        this.slots = new AtomicReferenceArray<Entry>(n);
+        mask = n - 1;
+    }
+
+    /**
+     * Getter for the table shared by all searches of the JVM.
+     *
+     * @return The shared table.
+     */
+    public static TranspositionTable shared() {
+        return SHARED;
+    }
+
+    /**
+     * Look up a candidate set.
+     *
+     * @param hash The Zobrist hash of the set.
+     * @return The entry. Null if the set is not in the table.
+     */
+    public Entry get(long hash) {
+        int slot = bucket(hash);
+        Entry e = slots.get(slot);
+        if (e == null || e.hash != hash) {
+            e = slots.get(slot + 1);
+        }
+        if (e != null && e.hash == hash) {
+            hits.increment();
+            return e;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Store a search result. Races between threads can lose a result,
+     * which only costs a new search.
+     *
+     * @param entry The result.
+     */
+    public void put(Entry entry) {
+        int slot = bucket(entry.hash);
+        Entry first = slots.get(slot);
+        Entry second = slots.get(slot + 1);
+        if (first == null || first.hash == entry.hash) {
+            slots.set(slot, entry);
+        } else if (second == null || second.hash == entry.hash) {
+            slots.set(slot + 1, entry);
+        } else {
+            // Replace the cheaper entry, if the new one is not cheaper.
+            int victim = first.size <= second.size ? slot : slot + 1;
+            if (entry.size >= slots.get(victim).size) {
+                slots.set(victim, entry);
+            }
+        }
+    }
+
+    /**
+     * Getter for the number of found sets.
+     *
+     * @return The number of get() calls which found an entry.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Getter for the number of missed sets.
+     *
+     * @return The number of get() calls which found no entry.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Get the first slot of the bucket of a hash.
+     *
+     * @param hash The hash.
+     * @return The index of the first slot.
+     */
+    private int bucket(long hash) {
+        return (int) (hash ^ (hash >>> 32)) & mask & ~1;
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2011 Ikarus, René Kübler, Andreas J.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package common;
+
+import java.io.PrintStream;
+
+/**
+ * Writes log messages in the background.
+ * Messages are put into a ring buffer and written to the output by a
+ * daemon thread, so the logging thread never waits for the output.
+ * If the buffer is full, new messages are dropped and the number of
+ * dropped messages is written later.
+ *
+ * @see Log
+ */
+class AsyncAppender {
+    /**
+     * Number of messages the ring buffer can hold.
+     */
+    private final int CAPACITY = 8192;
+    private final PrintStream out;
+    private final String[] ring = new String[CAPACITY];
+    /**
+     * Number of messages put into the ring buffer (ever).
+     */
+    private long head = 0;
+    /**
+     * Number of messages taken from the ring buffer (ever).
+     */
+    private long tail = 0;
+    /**
+     * Number of messages which were taken but not yet written.
+     */
+    private int writing = 0;
+    private long dropped = 0;
+    private Thread writer;
+
+    /**
+     * Create an appender. The writer thread is started with the first
+     * message.
+     *
+     * @param out The output.
+     */
+    AsyncAppender(PrintStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Append a message.
+     *
+     * @param message The message.
+     */
+    synchronized void append(String message) {
+        if (writer == null) {
+            start();
+        }
+        if (head - tail == CAPACITY) {
+            dropped++;
+            return;
+        }
+        ring[(int) (head++ % CAPACITY)] = message;
+        notifyAll();
+    }
+
+    /**
+     * Wait until all appended messages are written.
+     */
+    synchronized void flush() {
+        while ((head != tail || writing > 0) && writer != null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Start the writer thread. Remaining messages are written when the
+     * JVM shuts down.
+     */
+    private void start() {
+        writer = new Thread(new Runnable() {
+            public void run() {
+                writeLoop();
+            }
+        }, "JAMM-Log");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            public void run() {
+                flush();
+            }
+        }, "JAMM-Log-Flush"));
+    }
+
+    /**
+     * Write the messages of the ring buffer to the output.
+     */
+    private void writeLoop() {
+        StringBuilder batch = new StringBuilder();
+        while (true) {
+            synchronized (this) {
+                while (head == tail) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (dropped > 0) {
+                    batch.append("Log: ").append(dropped)
+                            .append(" message(s) dropped\n");
+                    dropped = 0;
+                }
+                while (tail != head) {
+                    int i = (int) (tail++ % CAPACITY);
+                    batch.append(ring[i]).append('\n');
+                    ring[i] = null;
+                    writing++;
+                }
+            }
+            out.print(batch);
+            out.flush();
+            batch.setLength(0);
+            synchronized (this) {
+                writing = 0;
+                notifyAll();
+            }
+        }
+    }
+}
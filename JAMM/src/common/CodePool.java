@@ -0,0 +1,212 @@
+/*
+ * Copyright 2011 Ikarus, René Kübler, Andreas J.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package common;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * All possible codes of a game configuration as shared, immutable Rows.
+ * For small code spaces (up to MAX_CODES codes) every code is created once
+ * and handed out by its rank. Equal codes of the pool are the same
+ * object, so comparing them is a reference comparison and their hash code
+ * is cached.<br />
+ * The rank of a code is the number with the pegs (color indices) as digits
+ * (base colQuant, position 0 is the lowest digit).
+ */
+public final class CodePool {
+    /**
+     * Max. number of codes of a pooled configuration.
+     */
+    public static final int MAX_CODES = 1 << 16;
+    /**
+     * The pools by configuration (width * 256 + colQuant).
+     */
+    private static final ConcurrentHashMap<Integer, CodePool> POOLS =
+            new ConcurrentHashMap<Integer, CodePool>();
+    private final int width;
+    private final int colQuant;
+    /**
+     * All codes by rank.
+     */
+    private final Row[] codes;
+
+    /**
+     * Create all codes of a configuration.
+     *
+     * @param width The width of the codes.
+     * @param colQuant The quantity of colors.
+     * @param size The number of codes (colQuant ^ width).
+     */
+    private CodePool(int width, int colQuant, int size) {
+        this.width = width;
+        this.colQuant = colQuant;
+        codes = new Row[size];
+        for (int rank = 0; rank < size; rank++) {
+            int[] pegs = new int[width];
+            int digits = rank;
+            for (int i = 0; i < width; i++) {
+                pegs[i] = digits % colQuant;
+                digits /= colQuant;
+            }
+            codes[rank] = new Row(pegs).freeze();
+        }
+    }
+
+    /**
+     * Get the pool of a configuration. It is created on first use.
+     *
+     * @param width The width of the codes.
+     * @param colQuant The quantity of colors.
+     * @return The pool. Null if the configuration has more than MAX_CODES
+     * codes.
+     */
+    public static CodePool get(int width, int colQuant) {
+        long size = 1;
+        for (int i = 0; i < width; i++) {
+            size *= colQuant;
+            if (size > MAX_CODES) {
+                return null;
+            }
+        }
+        Integer key = width * 256 + colQuant;
+        CodePool pool = POOLS.get(key);
+        if (pool == null) {
+            POOLS.putIfAbsent(key, new CodePool(width, colQuant, (int) size));
+            pool = POOLS.get(key);
+        }
+        return pool;
+    }
+
+    /**
+     * Get the shared Row of a code if the configuration is pooled.
+     *
+     * @param colors The colors of the code. The array is not kept.
+     * @param colQuant The quantity of colors of the game.
+     * @return The pooled Row. A new Row (with a copy of the colors) if
+     * there is no pool for the configuration.
+     */
+    public static Row row(Color[] colors, int colQuant) {
+        return row(new Row(colors), colQuant);
+    }
+
+    /**
+     * Get the shared Row of a code if the configuration is pooled.
+     *
+     * @param pegs The pegs (color indices) of the code. The array is not
+     * kept.
+     * @param colQuant The quantity of colors of the game.
+     * @return The pooled Row. A new Row if there is no pool for the
+     * configuration.
+     */
+    public static Row row(int[] pegs, int colQuant) {
+        CodePool pool = get(pegs.length, colQuant);
+        if (pool != null) {
+            int rank = pool.rank(pegs);
+            if (rank >= 0) {
+                return pool.codes[rank];
+            }
+        }
+        return new Row(pegs);
+    }
+
+    /**
+     * Get the shared Row of a code if the configuration is pooled.
+     *
+     * @param code The code. It is returned if there is no pool for the
+     * configuration.
+     * @param colQuant The quantity of colors of the game.
+     * @return The pooled Row or the code.
+     */
+    private static Row row(Row code, int colQuant) {
+        CodePool pool = get(code.width(), colQuant);
+        return pool != null ? pool.intern(code) : code;
+    }
+
+    /**
+     * Getter for the number of codes.
+     *
+     * @return The number of codes in the pool.
+     */
+    public int size() {
+        return codes.length;
+    }
+
+    /**
+     * Get a code by its rank.
+     *
+     * @param rank The rank of the code.
+     * @return The shared Row of the code.
+     */
+    public Row get(int rank) {
+        return codes[rank];
+    }
+
+    /**
+     * Get the rank of a code.
+     *
+     * @param code The code.
+     * @return The rank. -1 if the code does not belong to this pool.
+     */
+    public int rank(Row code) {
+        if (code.width() != width) {
+            return -1;
+        }
+        int rank = 0;
+        for (int i = width - 1; i >= 0; i--) {
+            int peg = code.getPeg(i);
+            if (peg < 0 || peg >= colQuant) {
+                return -1;
+            }
+            rank = rank * colQuant + peg;
+        }
+        return rank;
+    }
+
+    /**
+     * Get the rank of a code.
+     *
+     * @param pegs The pegs of the code.
+     * @return The rank. -1 if the code does not belong to this pool.
+     */
+    private int rank(int[] pegs) {
+        if (pegs.length != width) {
+            return -1;
+        }
+        int rank = 0;
+        for (int i = width - 1; i >= 0; i--) {
+            if (pegs[i] < 0 || pegs[i] >= colQuant) {
+                return -1;
+            }
+            rank = rank * colQuant + pegs[i];
+        }
+        return rank;
+    }
+
+    /**
+     * Get the shared Row which equals a code.
+     *
+     * @param code The code.
+     * @return The shared Row. The code itself if it does not belong to
+     * this pool.
+     */
+    public Row intern(Row code) {
+        int rank = rank(code);
+        return rank >= 0 ? codes[rank] : code;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2011 Ikarus, René Kübler, Andreas J.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package common;
+
+/**
+ * Functions to store codes (Rows of colors) in a compact form.
+ * A packed code is a long in which every peg uses a fixed number of bits.
+ * Peg i is stored in the bits [i * bits, (i + 1) * bits). The value of a
+ * peg is its color index (see Row).<br />
+ * A game may use up to MAX_COLORS colors and MAX_WIDTH pegs, so that every
+ * code fits into a long.
+ */
+public final class Codes {
+    /**
+     * Max. quantity of colors of a game.
+     */
+    public static final int MAX_COLORS = 32;
+    /**
+     * Max. width of a game (MAX_WIDTH pegs of MAX_COLORS colors fit into a
+     * long).
+     */
+    public static final int MAX_WIDTH = 12;
+
+    /**
+     * No instances. This class only has static functions.
+     */
+    private Codes() {
+    }
+
+    /**
+     * Get the number of bits needed to store one peg.
+     *
+     * @param colQuant The quantity of colors in the game.
+     * @return The number of bits per peg.
+     */
+    public static int bitsPerPeg(int colQuant) {
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(colQuant - 1));
+    }
+
+    /**
+     * Get the number of bytes needed to store a packed code.
+     *
+     * @param width The width of the code.
+     * @param bits The number of bits per peg.
+     * @return The number of bytes.
+     */
+    public static int packedBytes(int width, int bits) {
+        return (width * bits + 7) / 8;
+    }
+
+    /**
+     * Pack a code.
+     *
+     * @param row The code to pack.
+     * @param bits The number of bits per peg.
+     * @return The packed code.
+     */
+    public static long pack(Row row, int bits) {
+        long mask = (1L << bits) - 1;
+        long code = 0;
+        for (int i = 0; i < row.width(); i++) {
+            code |= (row.getPeg(i) & mask) << (i * bits);
+        }
+        return code;
+    }
+
+    /**
+     * Unpack a code.
+     *
+     * @param code The packed code.
+     * @param width The width of the code.
+     * @param bits The number of bits per peg.
+     * @return The code as a new Row.
+     */
+    public static Row unpack(long code, int width, int bits) {
+        long mask = (1L << bits) - 1;
+        int[] pegs = new int[width];
+        for (int i = 0; i < width; i++) {
+            pegs[i] = (int) ((code >>> (i * bits)) & mask);
+        }
+        return new Row(pegs);
+    }
+
+    /**
+     * Compare two packed codes like a guess and a secret code.
+     * Works without unpacking and without allocations. The width may be
+     * at most 32.
+     *
+     * @param guess The packed guess.
+     * @param secret The packed secret code.
+     * @param width The width of the codes.
+     * @param bits The number of bits per peg.
+     * @return The feedback (black and white pegs).
+     * @see Feedback
+     */
+    public static int feedback(long guess, long secret, int width, int bits) {
+        long mask = (1L << bits) - 1;
+        int blacks = 0;
+        int whites = 0;
+        // Bit i is set if peg i is already matched.
+        int usedGuess = 0;
+        int usedSecret = 0;
+        for (int i = 0; i < width; i++) {
+            if (((guess ^ secret) >>> (i * bits) & mask) == 0) {
+                blacks++;
+                usedGuess |= 1 << i;
+                usedSecret |= 1 << i;
+            }
+        }
+        outer:
+        for (int i = 0; i < width; i++) {
+            if ((usedGuess & (1 << i)) == 0) {
+                long peg = guess >>> (i * bits) & mask;
+                for (int j = 0; j < width; j++) {
+                    if ((usedSecret & (1 << j)) == 0
+                            && (secret >>> (j * bits) & mask) == peg) {
+                        whites++;
+                        usedSecret |= 1 << j;
+                        continue outer;
+                    }
+                }
+            }
+        }
+        return Feedback.of(blacks, whites);
+    }
+}
@@ -22,7 +22,10 @@ package common;
  * Representing the colors used in the game engine.
  * The color value is the RGB value representing the color in the default sRGB
  * ColorModel. (Bits 24-31 are alpha, 16-23 are red, 8-15 are green,
- * 0-7 are blue). This values are equal to the java.awt.Color.getRGB().
+ * 0-7 are blue). This values are equal to the java.awt.Color.getRGB().<br />
+ * The engine stores colors as pegs (color indices, see Row). The peg of a
+ * color is its ordinal, Null is the empty peg (Row.EMPTY). Only the first
+ * PEG_COLORS pegs have a Color, so the Color is only used to show a game.
  */
 public enum Color {
 
@@ -43,6 +46,15 @@ public enum Color {
     Black(-16777216),
     Null(-2696737);
 
+    /**
+     * Number of pegs which have a Color (all colors except Null).
+     */
+    public static final int PEG_COLORS = 15;
+    /**
+     * All colors by ordinal. (Color.values() creates a new array each call.)
+     */
+    private static final Color[] VALUES = values();
+
     private final int rgb;
 
     /**
@@ -63,4 +75,33 @@ public enum Color {
     public int getRGB() {
         return rgb;
     }
-}
\ No newline at end of file
+
+    /**
+     * Get the color of a peg.
+     *
+     * @param peg The peg (color index).
+     * @return The color. Null for Row.EMPTY, null if the peg has no color.
+     */
+    public static Color fromPeg(int peg) {
+        if (peg == Row.EMPTY) {
+            return Null;
+        }
+        if (peg >= 0 && peg < PEG_COLORS) {
+            return VALUES[peg];
+        }
+        return null;
+    }
+
+    /**
+     * Get the peg of a color.
+     *
+     * @param color The color.
+     * @return The peg (color index). Row.EMPTY for Null and null.
+     */
+    public static int toPeg(Color color) {
+        if (color == null || color == Null) {
+            return Row.EMPTY;
+        }
+        return color.ordinal();
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2011 Ikarus, René Kübler, Andreas J.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package common;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates daemon threads with a name, e.g. for the executors of
+ * background work, which must not keep the JVM running.
+ */
+public final class DaemonThreadFactory implements ThreadFactory {
+    private final String name;
+
+    /**
+     * Create a factory.
+     *
+     * @param name The name of the created threads.
+     */
+    public DaemonThreadFactory(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Create a daemon thread.
+     *
+     * @param r The task of the thread.
+     * @return The (not started) thread.
+     */
+    public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2011 Ikarus, René Kübler, Andreas J.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package common;
+
+/**
+ * Functions for the result (feedback) of a guess as a primitive value.
+ * A feedback is an int with the number of black pegs (correct color at
+ * the correct position) in the upper and the number of white pegs
+ * (correct color at a wrong position) in the lower 16 bits.
+ * This avoids building and scanning a Row of Black, White and Null pegs
+ * for every result.
+ */
+public final class Feedback {
+    /**
+     * The feedback of a Row which was not played yet.
+     */
+    public static final int NONE = -1;
+
+    /**
+     * No instances. This class only has static functions.
+     */
+    private Feedback() {
+    }
+
+    /**
+     * Build a feedback.
+     *
+     * @param blacks The number of black pegs.
+     * @param whites The number of white pegs.
+     * @return The feedback.
+     */
+    public static int of(int blacks, int whites) {
+        return (blacks << 16) | whites;
+    }
+
+    /**
+     * Get the number of black pegs of a feedback.
+     *
+     * @param feedback The feedback.
+     * @return The number of black pegs.
+     */
+    public static int blacks(int feedback) {
+        return feedback >>> 16;
+    }
+
+    /**
+     * Get the number of white pegs of a feedback.
+     *
+     * @param feedback The feedback.
+     * @return The number of white pegs.
+     */
+    public static int whites(int feedback) {
+        return feedback & 0xFFFF;
+    }
+
+    /**
+     * Convert a result Row (like "black, black, white, null") to a feedback.
+     *
+     * @param result The result Row. May be null.
+     * @return The feedback. NONE if the result is null.
+     */
+    public static int fromRow(Row result) {
+        if (result == null) {
+            return NONE;
+        }
+        return of(result.containsColor(Color.Black),
+                result.containsColor(Color.White));
+    }
+
+    /**
+     * Convert a feedback to a result Row like "black, black, white, null".
+     *
+     * @param feedback The feedback.
+     * @param width The width of the Row.
+     * @return The result Row. Null if the feedback is NONE.
+     */
+    public static Row toRow(int feedback, int width) {
+        if (feedback == NONE) {
+            return null;
+        }
+        int blacks = blacks(feedback);
+        int pegs = blacks + whites(feedback);
+        Row result = new Row(width);
+        for (int i = 0; i < pegs; i++) {
+            result.setColorAtPos(i, i < blacks ? Color.Black : Color.White);
+        }
+        return result;
+    }
+
+    /**
+     * Build a readable representation of a feedback.
+     *
+     * @param feedback The feedback.
+     * @return The feedback as String, e.g. "2 black, 1 white".
+     */
+    public static String toString(int feedback) {
+        if (feedback == NONE) {
+            return "none";
+        }
+        return blacks(feedback) + " black, " + whites(feedback) + " white";
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2011 Ikarus, René Kübler, Andreas J.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package common;
+
+import java.util.function.Supplier;
+
+/**
+ * Leveled logging.
+ * Messages are given as templates with "{}" placeholders or as suppliers,
+ * so nothing is formatted if the level of a message is disabled. Enabled
+ * messages are formatted by the caller and written to System.out by a
+ * background thread (see AsyncAppender), so logging does not block the
+ * game or the AI.<br />
+ * Std. level is ERROR: errors are shown, debug messages are not.
+ */
+public final class Log {
+
+    /**
+     * The log levels. A level includes all levels before it.
+     */
+    public enum Level {
+        OFF, ERROR, INFO, DEBUG
+    }
+
+    /**
+     * The current level.
+     */
+    private static volatile Level level = Level.ERROR;
+    /**
+     * The appender all enabled messages are written to.
+     */
+    private static final AsyncAppender APPENDER =
+            new AsyncAppender(System.out);
+
+    /**
+     * No instances. This class only has static functions.
+     */
+    private Log() {
+    }
+
+    /**
+     * Setter for the log level.
+     *
+     * @param newLevel The new level.
+     */
+    public static void setLevel(Level newLevel) {
+        level = newLevel;
+    }
+
+    /**
+     * Getter for the log level.
+     *
+     * @return The current level.
+     */
+    public static Level getLevel() {
+        return level;
+    }
+
+    /**
+     * Check if messages of a level are logged.
+     *
+     * @param l The level.
+     * @return True if messages of this level are logged.
+     */
+    public static boolean isEnabled(Level l) {
+        return l != Level.OFF && l.compareTo(level) <= 0;
+    }
+
+    /**
+     * Check if debug messages are logged.
+     *
+     * @return True if debug messages are logged.
+     */
+    public static boolean isDebugEnabled() {
+        return level == Level.DEBUG;
+    }
+
+    /**
+     * Log a debug message.
+     *
+     * @param message The message.
+     */
+    public static void debug(String message) {
+        if (level == Level.DEBUG) {
+            APPENDER.append("Debug: " + message);
+        }
+    }
+
+    /**
+     * Log a debug message.
+     *
+     * @param template The message with one "{}" placeholder.
+     * @param arg The value for the placeholder.
+     */
+    public static void debug(String template, Object arg) {
+        if (level == Level.DEBUG) {
+            APPENDER.append(format("Debug: ", template, arg, null, null));
+        }
+    }
+
+    /**
+     * Log a debug message.
+     *
+     * @param template The message with two "{}" placeholders.
+     * @param arg1 The value for the first placeholder.
+     * @param arg2 The value for the second placeholder.
+     */
+    public static void debug(String template, Object arg1, Object arg2) {
+        if (level == Level.DEBUG) {
+            APPENDER.append(format("Debug: ", template, arg1, arg2, null));
+        }
+    }
+
+    /**
+     * Log a debug message.
+     *
+     * @param template The message with three "{}" placeholders.
+     * @param arg1 The value for the first placeholder.
+     * @param arg2 The value for the second placeholder.
+     * @param arg3 The value for the third placeholder.
+     */
+    public static void debug(String template, Object arg1, Object arg2,
+            Object arg3) {
+        if (level == Level.DEBUG) {
+            APPENDER.append(format("Debug: ", template, arg1, arg2, arg3));
+        }
+    }
+
+    /**
+     * Log a debug message which is built by a supplier.
+     *
+     * @param message Builds the message. Only called if debug messages are
+     * logged.
+     */
+    public static void debug(Supplier<String> message) {
+        if (level == Level.DEBUG) {
+            APPENDER.append("Debug: " + message.get());
+        }
+    }
+
+    /**
+     * Log an info message.
+     *
+     * @param template The message with up to one "{}" placeholder.
+     * @param arg The value for the placeholder. May be null.
+     */
+    public static void info(String template, Object arg) {
+        if (isEnabled(Level.INFO) == true) {
+            APPENDER.append(format("Info: ", template, arg, null, null));
+        }
+    }
+
+    /**
+     * Log an info message.
+     *
+     * @param template The message with two "{}" placeholders.
+     * @param arg1 The value for the first placeholder.
+     * @param arg2 The value for the second placeholder.
+     */
+    public static void info(String template, Object arg1, Object arg2) {
+        if (isEnabled(Level.INFO) == true) {
+            APPENDER.append(format("Info: ", template, arg1, arg2, null));
+        }
+    }
+
+    /**
+     * Log an error message.
+     *
+     * @param message The message.
+     */
+    public static void error(String message) {
+        if (isEnabled(Level.ERROR) == true) {
+            APPENDER.append("Error: " + message);
+        }
+    }
+
+    /**
+     * Log an error message.
+     *
+     * @param template The message with one "{}" placeholder.
+     * @param arg The value for the placeholder.
+     */
+    public static void error(String template, Object arg) {
+        if (isEnabled(Level.ERROR) == true) {
+            APPENDER.append(format("Error: ", template, arg, null, null));
+        }
+    }
+
+    /**
+     * Log an error message.
+     *
+     * @param template The message with two "{}" placeholders.
+     * @param arg1 The value for the first placeholder.
+     * @param arg2 The value for the second placeholder.
+     */
+    public static void error(String template, Object arg1, Object arg2) {
+        if (isEnabled(Level.ERROR) == true) {
+            APPENDER.append(format("Error: ", template, arg1, arg2, null));
+        }
+    }
+
+    /**
+     * Wait until all logged messages are written.
+     */
+    public static void flush() {
+        APPENDER.flush();
+    }
+
+    /**
+     * Replace the "{}" placeholders of a template.
+     *
+     * @param prefix The prefix of the message (e.g. the level).
+     * @param template The template.
+     * @param arg1 The value for the first placeholder.
+     * @param arg2 The value for the second placeholder.
+     * @param arg3 The value for the third placeholder.
+     * @return The message.
+     */
+    private static String format(String prefix, String template, Object arg1,
+            Object arg2, Object arg3) {
+        StringBuilder message = new StringBuilder(prefix.length()
+                + template.length() + 32).append(prefix);
+        int start = 0;
+        int arg = 0;
+        int pos;
+        while (arg < 3 && (pos = template.indexOf("{}", start)) >= 0) {
+            message.append(template, start, pos);
+            message.append(arg == 0 ? arg1 : arg == 1 ? arg2 : arg3);
+            start = pos + 2;
+            arg++;
+        }
+        return message.append(template, start, template.length()).toString();
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2011 Ikarus, René Kübler, Andreas J.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package common;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder event for one expensive phase of the game engine
+ * or a solving algorithm (e.g. a fitness calculation or a game turn).
+ * Every event carries the board size and the history depth, so a
+ * recording shows which phase is slow on which configuration.<br />
+ * Usage:
+ * <pre>
+ * PhaseEvent event = PhaseEvent.start("Game.turn", width, colors, depth);
+ * // Do the work.
+ * event.commit();
+ * </pre>
+ * If no recording is running, committing the event does nothing.
+ * Enable it with e.g. <code>-XX:StartFlightRecording</code>.
+ */
+@Name("jamm.Phase")
+@Label("JAMM Phase")
+@Category("JAMM")
+@Description("An expensive phase of the Mastermind engine or a solver.")
+@StackTrace(false)
+public class PhaseEvent extends Event {
+
+    @Label("Phase")
+    private String phase;
+
+    @Label("Width")
+    private int width;
+
+    @Label("Colors")
+    private int colors;
+
+    @Label("History Depth")
+    @Description("Number of guesses already played.")
+    private int depth;
+
+    /**
+     * Create an event for a phase and start its timing.
+     *
+     * @param phase The name of the phase, e.g. "GeneticSolver.calcFitness".
+     * @param width The width of the game.
+     * @param colors The color quantity of the game.
+     * @param depth The number of guesses already played. -1 if it is not
+     * known (e.g. for the phases of a candidate set).
+     * @return The started event. Call commit() when the phase is done.
+     */
+    public static PhaseEvent start(String phase, int width, int colors,
+            int depth) {
+        PhaseEvent event = new PhaseEvent();
+        event.phase = phase;
+        event.width = width;
+        event.colors = colors;
+        event.depth = depth;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Set the board size and the history depth after the phase started,
+     * e.g. if the phase loads a game with another configuration.
+     *
+     * @param width The width of the game.
+     * @param colors The color quantity of the game.
+     * @param depth The number of guesses already played.
+     */
+    public void setGame(int width, int colors, int depth) {
+        this.width = width;
+        this.colors = colors;
+        this.depth = depth;
+    }
+}
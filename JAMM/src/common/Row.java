@@ -17,22 +17,72 @@
 
 package common;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.util.Arrays;
 
 /**
  * This class represents a single Row with colors.
+ * The colors are stored as pegs: the index of the color in the game
+ * (0 to Codes.MAX_COLORS - 1) or EMPTY. The Color enumeration is only
+ * used to show a Row (see Color.fromPeg()).<br />
+ * A Row can be frozen (see CodePool). A frozen Row can not be changed
+ * anymore and can be shared.
  */
 public class Row implements Serializable{
+    /**
+     * Fixed to the value of JAMM 0.4, so that games saved with Java
+     * serialization can still be loaded.
+     */
+    private static final long serialVersionUID = -8650321797398990159L;
+    /**
+     * The serialized form of JAMM 0.4: an array of colors.
+     */
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("colors", Color[].class)
+    };
+    /**
+     * The peg of a position without a color.
+     */
+    public static final int EMPTY = -1;
     // Object vars.
-    private Color[] colors;
+    private byte[] pegs;
+    /**
+     * True if the Row can not be changed anymore.
+     */
+    private transient boolean frozen = false;
+    /**
+     * Cached hash code of a frozen Row.
+     */
+    private transient int hash;
 
     /**
      * Constructor for a Row with colors.
      *
      * @param colors An array of colors to initialize the Row.
+     * The array is not kept.
      */
     public Row(Color[] colors) {
-        this.colors = colors;
+        pegs = new byte[colors.length];
+        for (int i=0; i<colors.length; i++) {
+            pegs[i] = (byte) Color.toPeg(colors[i]);
+        }
+    }
+
+    /**
+     * Constructor for a Row with pegs.
+     *
+     * @param pegs An array of pegs (color indices) to initialize the Row.
+     * The array is not kept.
+     */
+    public Row(int[] pegs) {
+        this.pegs = new byte[pegs.length];
+        for (int i=0; i<pegs.length; i++) {
+            this.pegs[i] = (byte) pegs[i];
+        }
     }
 
     /**
@@ -41,28 +91,66 @@ public class Row implements Serializable{
      * @param width The width of the Row.
      */
     public Row(int width) {
-        colors = new Color[width];
-        for (int i=0; i<width; i++) {
-            colors[i] = Color.Null;
-        }
+        pegs = new byte[width];
+        Arrays.fill(pegs, (byte) EMPTY);
+    }
+
+    /**
+     * Make this Row immutable.
+     *
+     * @return This Row.
+     */
+    Row freeze() {
+        hash = Arrays.hashCode(pegs);
+        frozen = true;
+        return this;
+    }
+
+    /**
+     * Getter for the frozen state.
+     *
+     * @return True if the Row can not be changed. Otherwise false.
+     */
+    public boolean isFrozen() {
+        return frozen;
     }
 
     /**
      * Getter for a Row.
      *
-     * @return An array of colors.
+     * @return A new array of colors.
+     * @see Color#fromPeg(int)
      */
     public Color[] getColors() {
+        Color[] colors = new Color[pegs.length];
+        for (int i=0; i<pegs.length; i++) {
+            colors[i] = Color.fromPeg(pegs[i]);
+        }
         return colors;
     }
 
     /**
      * Setter for a Row.
      *
-     * @param colors An array of colors.
+     * @param colors An array of colors. The array is not kept.
+     * @throws UnsupportedOperationException If the Row is frozen.
      */
     public void setColors(Color[] colors) {
-        this.colors = colors;
+        checkNotFrozen();
+        pegs = new Row(colors).pegs;
+    }
+
+    /**
+     * Getter for the pegs of a Row.
+     *
+     * @return A new array of pegs (color indices).
+     */
+    public int[] getPegs() {
+        int[] ret = new int[pegs.length];
+        for (int i=0; i<pegs.length; i++) {
+            ret[i] = pegs[i];
+        }
+        return ret;
     }
 
     /**
@@ -71,14 +159,29 @@ public class Row implements Serializable{
      * @param pos The position from where to get the color.
      * @return The color from the position. If the position was
      * out of the Row bounds "null" will be retruned.
+     * @see Color#fromPeg(int)
      */
     public Color getColorAtPos(int pos) {        
-        if (pos < colors.length && pos >= 0) {
-            return colors[pos];
+        if (pos < pegs.length && pos >= 0) {
+            return Color.fromPeg(pegs[pos]);
         }
         return null;
     }
 
+    /**
+     * Get the peg at a specific position in the Row.
+     *
+     * @param pos The position from where to get the peg.
+     * @return The peg (color index) from the position. EMPTY if the
+     * position has no color or is out of the Row bounds.
+     */
+    public int getPeg(int pos) {
+        if (pos < pegs.length && pos >= 0) {
+            return pegs[pos];
+        }
+        return EMPTY;
+    }
+
     /**
      * Set a color at a specific position in the Row.
      *
@@ -86,22 +189,48 @@ public class Row implements Serializable{
      * @param color The color to set on the position.
      * @return True if the position was in the Row bounds and everything went
      * well. False otherwise.
+     * @throws UnsupportedOperationException If the Row is frozen.
      */
     public boolean setColorAtPos(int pos, Color color) {
-        if (pos < this.colors.length && pos >= 0) {
-            this.colors[pos] = color;
+        return setPeg(pos, Color.toPeg(color));
+    }
+
+    /**
+     * Set the peg at a specific position in the Row.
+     *
+     * @param pos The position where to set the peg.
+     * @param peg The peg (color index) to set on the position.
+     * @return True if the position was in the Row bounds and everything went
+     * well. False otherwise.
+     * @throws UnsupportedOperationException If the Row is frozen.
+     */
+    public boolean setPeg(int pos, int peg) {
+        checkNotFrozen();
+        if (pos < pegs.length && pos >= 0) {
+            pegs[pos] = (byte) peg;
             return true;
         }
         return false;
     }
 
+    /**
+     * Make sure this Row can be changed.
+     *
+     * @throws UnsupportedOperationException If the Row is frozen.
+     */
+    private void checkNotFrozen() {
+        if (frozen == true) {
+            throw new UnsupportedOperationException("The Row is frozen");
+        }
+    }
+
     /**
      * Getter for the Row width.
      *
      * @return The width of a Row.
      */
     public int width() {
-        return colors.length;
+        return pegs.length;
     }
 
     /**
@@ -111,9 +240,19 @@ public class Row implements Serializable{
      * @return The quantity of matches.
      */
     public int containsColor(Color color) {
+        return containsPeg(Color.toPeg(color));
+    }
+
+    /**
+     * Checks how often a Row contains a specific peg.
+     *
+     * @param peg The peg (color index) to look for.
+     * @return The quantity of matches.
+     */
+    public int containsPeg(int peg) {
         int ret = 0;
-        for (int i=0; i < this.colors.length; i++) {
-            if (this.colors[i] == color) {
+        for (int i=0; i < pegs.length; i++) {
+            if (pegs[i] == peg) {
                 ret++;
             }
         }
@@ -126,11 +265,13 @@ public class Row implements Serializable{
      * @return True if a Color is found more than once, false if not.
      */
     public boolean containsDoubleColor(){
-        for(int i=0; i<colors.length; i++){
-            for(int j=i+1; j<colors.length; j++){
-                if(colors[i] == colors[j]){
+        int seen = 0;
+        for(int i=0; i<pegs.length; i++){
+            if (pegs[i] != EMPTY) {
+                if ((seen & (1 << pegs[i])) != 0) {
                     return true;
                 }
+                seen |= 1 << pegs[i];
             }
         }
         return false;
@@ -138,19 +279,28 @@ public class Row implements Serializable{
 
     /**
      * Line-up all colors seperated with ",".
+     * Pegs without a Color are shown as their number.
      *
      * @return A String with all colors lined-up, seperated by ",".
      */
     @Override
     public String toString() {
-        if (colors != null) {
-            String ret = "";
-            for (int i=0; i<colors.length-1; i++) {
-                ret += colors[i] + ", ";
+        if (pegs.length == 0) {
+            return "no colors";
+        }
+        StringBuilder ret = new StringBuilder(pegs.length * 8);
+        for (int i=0; i<pegs.length; i++) {
+            if (i > 0) {
+                ret.append(", ");
+            }
+            Color color = Color.fromPeg(pegs[i]);
+            if (color != null) {
+                ret.append(color);
+            } else {
+                ret.append(pegs[i]);
             }
-            return ret + colors[colors.length-1];
         }
-        return "no colors";
+        return ret.toString();
     }
     
     /**
@@ -161,17 +311,55 @@ public class Row implements Serializable{
      */
     @Override
     public boolean equals(Object o) {
+        if (o == this) {
+            // Always the case for codes of the same CodePool.
+            return true;
+        }
         Row row;
         if (o instanceof Row) {
             row = (Row)o;
         } else {
             return false;
         }
-        for (int i = 0; i < row.width(); i++) {
-            if (row.getColorAtPos(i) != this.getColorAtPos(i)) {
-                return false;
-            }
+        if (frozen == true && row.frozen == true && hash != row.hash) {
+            return false;
         }
-        return true;
+        return Arrays.equals(pegs, row.pegs);
+    }
+
+    /**
+     * Get the hash code of this Row. Equal Rows have the same hash code.
+     *
+     * @return The hash code.
+     */
+    @Override
+    public int hashCode() {
+        return frozen ? hash : Arrays.hashCode(pegs);
+    }
+
+    /**
+     * Write the Row in the serialized form of JAMM 0.4 (colors).
+     *
+     * @param out The stream to write to.
+     * @throws IOException If writing fails.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("colors", getColors());
+        out.writeFields();
+    }
+
+    /**
+     * Read a Row in the serialized form of JAMM 0.4 (colors).
+     *
+     * @param in The stream to read from.
+     * @throws IOException If reading fails.
+     * @throws ClassNotFoundException If a class of the stream is unknown.
+     */
+    private void readObject(ObjectInputStream in)
+            throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        Color[] colors = (Color[]) fields.get("colors", null);
+        pegs = new Row(colors == null ? new Color[0] : colors).pegs;
     }
 }
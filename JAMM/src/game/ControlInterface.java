@@ -18,31 +18,164 @@
 package game;
 
 import common.Row;
+import common.CodePool;
+import common.Codes;
 import common.Color;
-import common.Debug;
+import common.Log;
+import common.Feedback;
+import common.PhaseEvent;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 /**
  * The main interface to control the gameflow.
  * This class provides all functions for a game.
- * This is the only public class in the game package.
+ * This is the only public class in the game package to change a game
+ * (besides the GameJournal which stores many games in one file).
  * This design is used to provide a single interface for a frontend
  * (or an AI) which guarantees a correct and save execution.
+ * <br />
+ * A control interface can be used by several threads at once (e.g. the
+ * GUI and a background AI). The game is never changed in place: every
+ * change is made on a copy which replaces the current game atomically
+ * (copy on write). A game which was replaced is never changed again, so
+ * readers which need a consistent view of the game use snapshot().
+ * Concurrent players should use submitTurn(), which plays a guess only if
+ * nobody else played in between.
  */
 public class ControlInterface {
     // Class vars.    
-    // Allways create a game first.
-    private Game game = new Game(new Settings());
+    private final AtomicReference<Game> game;
     
     /**
      * The file extension for saving.
      */
     public final String FILE_EXTENSION = "mm";
+
+    /**
+     * Return value of submitTurn() if the turn was rejected because the
+     * game changed in the meantime.
+     */
+    public static final int STALE_TURN = -2;
     
     /**
      * Identifier for loaded games.
      */
-    private boolean loaded = false;
+    private volatile boolean loaded = false;
+
+    /**
+     * Std. Constructor.
+     * Creates a new game with the standard settings.
+     */
+    public ControlInterface() {
+        // Allways create a game first.
+        this(new Game(new Settings()));
+    }
+
+    /**
+     * Start a game with the given settings, e.g. for AIs playing against
+     * themselves.
+     *
+     * @param width The game width.
+     * @param colQuant The quantity of colors.
+     * @param doubleColors Allowance of same colors.
+     * @param maxTries The max. number of guesses.
+     * @param secret The pegs of the secret code. Null for a random code.
+     * @return The control interface of the new game.
+     */
+    public static ControlInterface create(int width, int colQuant,
+            boolean doubleColors, int maxTries, int[] secret) {
+        ControlInterface ci = new ControlInterface();
+        // Allow double colors first, so the order of the settings does not
+        // matter.
+        ci.setSettingDoubleCol(true);
+        ci.setSettingColQuant(colQuant);
+        ci.setSettingWidth(width);
+        ci.setSettingDoubleCol(doubleColors);
+        ci.setSettingMaxTries(maxTries);
+        ci.newGame();
+        if (secret != null) {
+            ci.setSecretCode(secret);
+        }
+        return ci;
+    }
+
+    /**
+     * Constructor for a control interface of an existing game.
+     *
+     * @param game The game to control.
+     */
+    private ControlInterface(Game game) {
+        this.game = new AtomicReference<Game>(game);
+    }
+
+    /**
+     * Getter for the controlled game.
+     * The returned game must not be changed.
+     *
+     * @return The current game.
+     */
+    Game getGame() {
+        return game.get();
+    }
+
+    /**
+     * Change the game (copy on write).
+     * The change is applied to a copy of the current game, which then
+     * replaces the current game. If another thread changed the game in
+     * the meantime, the change is applied again to the new game.
+     *
+     * @param change The change. It may be applied more than once.
+     * @return The changed game.
+     */
+    private Game update(Consumer<Game> change) {
+        while (true) {
+            Game current = game.get();
+            Game next = new Game(current);
+            change.accept(next);
+            if (game.compareAndSet(current, next) == true) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Get an immutable view of the current game.
+     * All values of a snapshot belong to the same state of the game, no
+     * matter how the game is changed afterwards.
+     *
+     * @return The snapshot.
+     */
+    public GameSnapshot snapshot() {
+        return new GameSnapshot(game.get());
+    }
+    
+    /**
+     * Create a control interface for the current state of the game.
+     * Since the game is copied on write, later changes of this game and
+     * of the copy are independent of each other.
+     *
+     * @return A control interface for the copy.
+     */
+    public ControlInterface copy() {
+        return new ControlInterface(game.get());
+    }
+
+    /**
+     * Get the history (guesses and results) of the current game as
+     * immutable, columnar arrays. The history is cached until the next
+     * change of the game, so this call is cheap.
+     *
+     * @return The history.
+     */
+    public History history() {
+        return game.get().history();
+    }
     
     /**
      * Getter for the active Row number.
@@ -50,7 +183,7 @@ public class ControlInterface {
      * @return The active Row number.
      */
     public int getActiveRowNumber() {
-        return game.gameField.getActiveRowNumber();
+        return game.get().gameField.getActiveRowNumber();
     }
     
     /**
@@ -63,44 +196,186 @@ public class ControlInterface {
      * 0 = Just a normal turn or game already ended.
      */
     public int turn() {
-        if (getGameEnded() == false) {
-            return game.turn();
+        final int[] state = new int[1];
+        update(next -> {
+            state[0] = next.gameEnded ? 0 : next.turn();
+        });
+        return state[0];
+    }
+
+    /**
+     * Play a guess, but only if the game is still at the expected turn.
+     * Setting the guess and doing the turn is one atomic step. If another
+     * thread played a turn (or started a new game) in the meantime, nothing
+     * is changed. This way concurrent players can not overwrite each
+     * other's guesses.
+     *
+     * @param expectedRow The active Row number the guess was made for.
+     * @param colors The colors of the guess.
+     * @return -1 = Game ended and code was not broken. <br />
+     * 1 = Game ended an code was broken. <br />
+     * 0 = Just a normal turn. <br />
+     * STALE_TURN = The game is not at the expected turn (or has ended),
+     * the guess was not played.
+     * @throws IllegalArgumentException If not every peg has a color.
+     * @see #turn()
+     */
+    public int submitTurn(int expectedRow, Color[] colors) {
+        return submitTurn(expectedRow, new Row(colors).getPegs());
+    }
+
+    /**
+     * Play a guess, but only if the game is still at the expected turn.
+     *
+     * @param expectedRow The active Row number the guess was made for.
+     * @param pegs The pegs (color indices) of the guess.
+     * @return -1 = Game ended and code was not broken. <br />
+     * 1 = Game ended an code was broken. <br />
+     * 0 = Just a normal turn. <br />
+     * STALE_TURN = The game is not at the expected turn (or has ended),
+     * the guess was not played.
+     * @throws IllegalArgumentException If the guess does not have one
+     * valid color per peg (e.g. it is not complete).
+     * @see #submitTurn(int, common.Color[])
+     */
+    public int submitTurn(int expectedRow, int[] pegs) {
+        Row guess = null;
+        while (true) {
+            Game current = game.get();
+            if (current.gameEnded == true
+                    || current.gameField.getActiveRowNumber() != expectedRow) {
+                return STALE_TURN;
+            }
+            if (guess == null) {
+                int colQuant = current.settings.getColQuant();
+                // Unset pegs must not be packed: they would be read as
+                // the last color.
+                if (pegs.length != current.settings.getWidth()) {
+                    throw new IllegalArgumentException("Guess has "
+                            + pegs.length + " pegs");
+                }
+                for (int peg : pegs) {
+                    if (peg < 0 || peg >= colQuant) {
+                        throw new IllegalArgumentException("Invalid color: "
+                                + peg);
+                    }
+                }
+                guess = CodePool.row(pegs, colQuant);
+            }
+            Game next = new Game(current);
+            next.gameField.setRow(guess);
+            int state = next.turn();
+            if (game.compareAndSet(current, next) == true) {
+                return state;
+            }
         }
-        return 0;
     }
     
+    /**
+     * Create a copy of the game in which the given guess was played with
+     * the given result, no matter what the secret code is.
+     * This is used by AIs to look ahead. The copy is independent of this
+     * game.
+     *
+     * @param colors The colors of the guess.
+     * @param blacks The number of black result pegs.
+     * @param whites The number of white result pegs.
+     * @return A control interface for the copy.
+     */
+    public ControlInterface fork(Color[] colors, int blacks, int whites) {
+        return fork(new Row(colors).getPegs(), blacks, whites);
+    }
+
+    /**
+     * Create a copy of the game in which the given guess was played with
+     * the given result, no matter what the secret code is.
+     *
+     * @param pegs The pegs (color indices) of the guess.
+     * @param blacks The number of black result pegs.
+     * @param whites The number of white result pegs.
+     * @return A control interface for the copy.
+     * @see #fork(common.Color[], int, int)
+     */
+    public ControlInterface fork(int[] pegs, int blacks, int whites) {
+        Game g = game.get();
+        return new ControlInterface(g.fork(CodePool.row(pegs,
+                g.settings.getColQuant()), blacks, whites));
+    }
+
     /**
      * Set a Row of colors to the active game Row.
+     * Codes of small games are taken from the CodePool.
      * 
      * @param colors The colors to set as active game Row.
      */
     public void writeToGameField(Color[] colors) {
-        game.gameField.setRow(new Row(colors));
+        writeToGameField(new Row(colors).getPegs());
+    }
+
+    /**
+     * Set a Row of pegs to the active game Row.
+     * Codes of small games are taken from the CodePool.
+     * 
+     * @param pegs The pegs (color indices) to set as active game Row.
+     */
+    public void writeToGameField(int[] pegs) {
+        update(next -> next.gameField.setRow(
+                CodePool.row(pegs, next.settings.getColQuant())));
     }
     
     /**
-     * Get the newest results.
+     * Get the newest feedback.
+     *
+     * @return The last feedback.
+     * If there is no feedback Feedback.NONE will be returned.
+     * @see common.Feedback
+     */
+    public int getLastFeedback() {
+        return game.get().gameField.getFeedback();
+    }
+
+    /**
+     * Get the feedback of a specific Row.
+     *
+     * @param row The Row number.
+     * @return The feedback. If the row does not exist or was not played yet,
+     * Feedback.NONE will be returned.
+     * @see common.Feedback
+     */
+    public int getFeedback(int row) {
+        Game g = game.get();
+        if (row >= 0 && row < g.settings.getMaxTries()) {
+            return g.gameField.getFeedback(row);
+        }
+        return Feedback.NONE;
+    }
+
+    /**
+     * Get the newest results as a Row like "black, black, white, null".
      * 
      * @return The last game result.
      * If there is no result null will be returned.
+     * @see #getLastFeedback()
      */
     public Row getLastResultRow() {
-        if (game.gameField.getActiveRowNumber() > 0) {
-            return game.gameField.getResult();
-        }
-        return null;
+        Game g = game.get();
+        return Feedback.toRow(g.gameField.getFeedback(),
+                g.settings.getWidth());
     }
     
     /**
-     * Get a specific result Row.
+     * Get a specific result Row like "black, black, white, null".
      * 
      * @param row The Row number.
      * @return The specified result Row. If the row does not exist, null will be
      * returned.
+     * @see #getFeedback(int)
      */
     public Row getResultRow(int row) {
-        if (row >= 0 && row < game.settings.getMaxTries()) {
-            return game.gameField.getResult(row);
+        Game g = game.get();
+        if (row >= 0 && row < g.settings.getMaxTries()) {
+            return Feedback.toRow(g.gameField.getFeedback(row),
+                    g.settings.getWidth());
         }
         return null;
     }
@@ -113,8 +388,9 @@ public class ControlInterface {
      * returned.
      */
     public Row getGameFieldRow(int row) {
-        if (row >= 0 && row < game.settings.getMaxTries()) {
-            return game.gameField.getRow(row);
+        Game g = game.get();
+        if (row >= 0 && row < g.settings.getMaxTries()) {
+            return g.gameField.getRow(row);
         }
         return null;
     }
@@ -125,7 +401,7 @@ public class ControlInterface {
      * @return The secret code.
      */
     public Row getSecretCode() {
-        return game.secretCode.getCode();
+        return game.get().secretCode.getCode();
     }
     
      /**
@@ -134,9 +410,22 @@ public class ControlInterface {
      * @param colors The secret code to set.
      */
     public void setSecretCode(Color[] colors) {
-        game.secretCode.setCode(new Row(colors));
-        common.Debug.dbgPrint("Secret code is set to: " + 
-                game.secretCode.getCode());
+        setSecretCode(new Row(colors).getPegs());
+    }
+    
+    /**
+     * Set the secret code.
+     * 
+     * @param pegs The pegs (color indices) of the secret code to set.
+     */
+    public void setSecretCode(int[] pegs) {
+        Game g = update(next -> {
+            // The secret code is shared with older games, replace it.
+            next.secretCode = new SecretCode(next.secretCode);
+            next.secretCode.setCode(CodePool.row(pegs,
+                    next.settings.getColQuant()));
+        });
+        Log.debug("Secret code is set to: {}", g.secretCode.getCode());
     }
     
     /**
@@ -146,7 +435,7 @@ public class ControlInterface {
      * @return The quantity of colors in the game.
      */
     public int getSettingColQuant() {
-        return game.settings.getColQuant();
+        return game.get().settings.getColQuant();
     }
     
     /**
@@ -155,13 +444,17 @@ public class ControlInterface {
      * with different colors (if double colors are not allowed)
      * nothing will be set.
      * 
-     * @param quant Quantity of colors in the game. (Between 1 and 15).
+     * @param quant Quantity of colors in the game.
+     * (Between 1 and Codes.MAX_COLORS).
      */
     public void setSettingColQuant(int quant) {
-        if(quant > 0 && quant <=15 && (game.settings.getWidth() <= quant ||
-                game.settings.getDoubleCol())) {
-            game.settings.setColQuant(quant);    
-        }
+        update(next -> {
+            if(quant > 0 && quant <= Codes.MAX_COLORS
+                    && (next.settings.getWidth() <= quant
+                    || next.settings.getDoubleCol())) {
+                next.settings.setColQuant(quant);
+            }
+        });
     }
     
     /**
@@ -171,7 +464,7 @@ public class ControlInterface {
      * @return The width/length of an guess/result Row.
      */
     public int getSettingWidth() {
-        return game.settings.getWidth();
+        return game.get().settings.getWidth();
     }
     
     /**
@@ -181,13 +474,17 @@ public class ControlInterface {
      * with different colors (if double colors are not allowed)
      * nothing will be set.
      * 
-     * @param width The width of a guess Row. (Between 1 and 8).
+     * @param width The width of a guess Row.
+     * (Between 1 and Codes.MAX_WIDTH).
      */
     public void setSettingWidth(int width) {
-        if(width > 0 && width <=8 && (game.settings.getColQuant() >= width ||
-                game.settings.getDoubleCol())) {
-           game.settings.setWidth(width); 
-        }
+        update(next -> {
+            if(width > 0 && width <= Codes.MAX_WIDTH
+                    && (next.settings.getColQuant() >= width
+                    || next.settings.getDoubleCol())) {
+                next.settings.setWidth(width);
+            }
+        });
     }
     
     /**
@@ -198,7 +495,7 @@ public class ControlInterface {
      */
     public void setSettingMaxTries(int max) {
         if (max > 0 && max <= Integer.MAX_VALUE) {
-            game.settings.setMaxTries(max);
+            update(next -> next.settings.setMaxTries(max));
         }
     }
     
@@ -208,7 +505,7 @@ public class ControlInterface {
      * @return The max. number of tries.
      */
     public int getSettingMaxTries() {
-        return game.settings.getMaxTries();
+        return game.get().settings.getMaxTries();
     }
     
    /**
@@ -218,7 +515,7 @@ public class ControlInterface {
      * @param allow Allow double colors.
      */
     public void setSettingDoubleCol(boolean allow) {
-        game.settings.setDoubleCol(allow);
+        update(next -> next.settings.setDoubleCol(allow));
     }
 
    /**
@@ -227,7 +524,7 @@ public class ControlInterface {
      * @return allow True if double colors are allowed. Otherwise false.
      */
     public boolean getSettingDoubleCol() {
-        return game.settings.getDoubleCol();
+        return game.get().settings.getDoubleCol();
     }
     
     /**
@@ -237,7 +534,7 @@ public class ControlInterface {
      * False for AI = Codemaker, human = Codebreaker.
      */
     public boolean getSettingAiMode() {
-        return game.settings.getAiMode();
+        return game.get().settings.getAiMode();
     }
     
     /**
@@ -247,15 +544,15 @@ public class ControlInterface {
      * False for AI = Codemaker, human = Codebreaker.
      */
     public void setSettingAiMode(boolean status) {
-        game.settings.setAiMode(status);
+        update(next -> next.settings.setAiMode(status));
     }
     
     /**
      * Start a new game.
      */
     public void newGame() {
-        Debug.dbgPrint("New game started");
-        game = new Game(game.settings);    
+        Log.debug("New game started");
+        game.set(new Game(new Settings(game.get().settings)));
     }
     
     
@@ -274,7 +571,7 @@ public class ControlInterface {
      * @return True if the game has ended. Otherwise false.
      */
     public boolean getGameEnded(){
-        return game.gameEnded;
+        return game.get().gameEnded;
     }
     
     
@@ -292,21 +589,65 @@ public class ControlInterface {
     
     /**
      * Save the game with settings to a specific path/filename.
+     * The game is saved in the compact binary format.
      * 
      * @param fileName Path and filename.
      * @throws FileNotFoundException
      * @throws SecurityException
      * @throws IOException 
+     * @see SaveFormat
      */
     public void save(String fileName)
             throws FileNotFoundException, SecurityException, IOException{
-        // Create output streams.
-        FileOutputStream fos = new FileOutputStream(fileName);
-        ObjectOutputStream oos = new ObjectOutputStream(fos);
+        PhaseEvent event = startPhase("ControlInterface.save");
+        try {
+            Game g = game.get();
+            ByteBuffer buffer = ByteBuffer.allocate(SaveFormat.size(g));
+            SaveFormat.write(g, buffer);
+            buffer.flip();
+            try (FileChannel channel = FileChannel.open(Paths.get(fileName),
+                    StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        } finally {
+            event.commit();
+        }
+    }
 
-        // Write object.
-        oos.writeObject(game);
-        oos.close();
+    /**
+     * Getter for the size of the game in the binary format.
+     *
+     * @return The size in bytes.
+     * @see #save(java.nio.ByteBuffer)
+     */
+    public int getSaveSize() {
+        return SaveFormat.size(game.get());
+    }
+
+    /**
+     * Save the game with settings to a buffer (in the binary format).
+     *
+     * @param buffer The buffer. It needs getSaveSize() bytes remaining
+     * (the game must not change in between).
+     * @see SaveFormat
+     */
+    public void save(ByteBuffer buffer) {
+        SaveFormat.write(game.get(), buffer);
+    }
+
+    /**
+     * Load a game from a buffer (in the binary format).
+     *
+     * @param buffer The buffer, positioned at the saved game.
+     * @throws IOException If the buffer contains no valid game.
+     * @see SaveFormat
+     */
+    public void load(ByteBuffer buffer) throws IOException {
+        game.set(SaveFormat.read(buffer));
+        loaded = true;
     }
 
     /**
@@ -324,23 +665,92 @@ public class ControlInterface {
     
     /**
      * Load a game from a specific path/filename.
+     * Games in the binary format and games saved with Java serialization
+     * (JAMM 0.4 and before) can be loaded.
      * 
      * @param fileName Path and filename.
      * @throws FileNotFoundException
      * @throws SecurityException
      * @throws IOException
      * @throws ClassNotFoundException 
+     * @see SaveFormat
      */
         public void load(String fileName)throws FileNotFoundException,
                 SecurityException, IOException, ClassNotFoundException{
-         // Create input streams.
-        FileInputStream fis = new FileInputStream(fileName);
-        ObjectInputStream ois = new ObjectInputStream(fis);
+        PhaseEvent event = startPhase("ControlInterface.load");
+        try {
+            ByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(Paths.get(fileName),
+                    StandardOpenOption.READ)) {
+                buffer = ByteBuffer.allocate((int) channel.size());
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    // Read until the buffer is full.
+                }
+            }
+            buffer.flip();
 
-        // Read object.
-        Game mygame = (Game) ois.readObject();
-        ois.close();
-        game = mygame;
-        loaded = true;
+            Game mygame;
+            if (buffer.remaining() >= 2
+                    && buffer.getShort(0) == (short) 0xACED) {
+                // Java serialization stream (old format).
+                ObjectInputStream ois = new ObjectInputStream(
+                        new ByteArrayInputStream(buffer.array(), 0,
+                        buffer.limit()));
+                mygame = (Game) ois.readObject();
+                ois.close();
+            } else {
+                mygame = SaveFormat.read(buffer);
+            }
+            game.set(mygame);
+            loaded = true;
+        } finally {
+            endLoadPhase(event);
+        }
+    }
+
+    /**
+     * Load a game from a journal.
+     *
+     * @param journal The journal.
+     * @param number The number of the game in the journal.
+     * @throws IOException
+     * @see GameJournal
+     */
+    public void load(GameJournal journal, int number) throws IOException {
+        PhaseEvent event = startPhase("ControlInterface.load");
+        try {
+            game.set(journal.read(number));
+            loaded = true;
+        } finally {
+            endLoadPhase(event);
+        }
+    }
+
+    /**
+     * Start a flight recorder event for a phase of the current game.
+     *
+     * @param phase The name of the phase.
+     * @return The started event.
+     * @see PhaseEvent
+     */
+    private PhaseEvent startPhase(String phase) {
+        Game g = game.get();
+        return PhaseEvent.start(phase, g.settings.getWidth(),
+                g.settings.getColQuant(),
+                g.gameField.getActiveRowNumber());
+    }
+
+    /**
+     * Commit the flight recorder event of a load phase. The event gets the
+     * configuration of the current game, which is the loaded one if the
+     * load succeeded.
+     *
+     * @param event The event started before loading.
+     */
+    private void endLoadPhase(PhaseEvent event) {
+        Game g = game.get();
+        event.setGame(g.settings.getWidth(), g.settings.getColQuant(),
+                g.gameField.getActiveRowNumber());
+        event.commit();
     }
 }
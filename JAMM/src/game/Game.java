@@ -25,6 +25,11 @@ import java.io.Serializable;
  * Controls the gameflow.
  */
 class Game implements Serializable{
+    /**
+     * Fixed to the value of JAMM 0.4, so that games saved with Java
+     * serialization can still be loaded.
+     */
+    private static final long serialVersionUID = 15858812466967705L;
     // Object vars.
     // All protectet so that the control interface can use the
     // getters and setters.
@@ -32,6 +37,10 @@ class Game implements Serializable{
     protected GameField gameField;
     protected SecretCode secretCode;
     protected Settings settings;
+    /**
+     * The history of this game. Built on first use.
+     */
+    private transient volatile History history;
 
     /**
      * Constructor with init instructions for new game.
@@ -46,6 +55,54 @@ class Game implements Serializable{
         secretCode = new SecretCode(settings.getColQuant(), settings.getWidth(),
                 settings.getDoubleCol());
     }
+
+    /**
+     * Copy constructor. Settings and game field are copied, the secret code
+     * is shared.
+     *
+     * @param g The game to copy.
+     */
+    public Game(Game g) {
+        gameEnded = g.gameEnded;
+        settings = new Settings(g.settings);
+        gameField = new GameField(g.gameField);
+        secretCode = g.secretCode;
+    }
+
+    /**
+     * Get the history of this game. It is built once and cached, so this
+     * must only be called on games which are not changed anymore.
+     *
+     * @return The history.
+     */
+    History history() {
+        History h = history;
+        if (h == null) {
+            h = new History(this);
+            history = h;
+        }
+        return h;
+    }
+
+    /**
+     * Create a copy of this game in which one more turn was made.
+     * The result of the turn is given instead of being checked against
+     * the secret code.
+     *
+     * @param guess The guess.
+     * @param blacks The number of black result pegs.
+     * @param whites The number of white result pegs.
+     * @return The copy with the additional turn.
+     */
+    public Game fork(Row guess, int blacks, int whites) {
+        Game fork = new Game(this);
+        fork.gameField.setRow(guess);
+        fork.gameField.setFeedback(Feedback.of(blacks, whites));
+        fork.gameField.incActiveRowNumber();
+        fork.gameEnded = blacks == settings.getWidth() ||
+                fork.gameField.getActiveRowNumber() >= settings.getMaxTries();
+        return fork;
+    }
     
     /**
      * Aggregates the logic for a game turn.
@@ -53,65 +110,41 @@ class Game implements Serializable{
      * @return 1 for win; -1 for lose; 0 for normal turn
      */
     public int turn() {
-        Row result = checkActiveRow();
-        gameField.incActiveRowNumber();
-        if (result.containsColor(Color.Black) == result.width()) {
-            Debug.dbgPrint("Code was broken");
-            gameEnded = true;
-            return 1;
-        }
-        if (gameField.getActiveRowNumber() >= settings.getMaxTries()) {
-            Debug.dbgPrint("Code was not broken!");
-            gameEnded = true;
-            return -1;
+        PhaseEvent event = PhaseEvent.start("Game.turn", settings.getWidth(),
+                settings.getColQuant(), gameField.getActiveRowNumber());
+        try {
+            int result = checkActiveRow();
+            gameField.incActiveRowNumber();
+            if (Feedback.blacks(result) == settings.getWidth()) {
+                Log.debug("Code was broken");
+                gameEnded = true;
+                return 1;
+            }
+            if (gameField.getActiveRowNumber() >= settings.getMaxTries()) {
+                Log.debug("Code was not broken!");
+                gameEnded = true;
+                return -1;
+            }
+            return 0;
+        } finally {
+            event.commit();
         }
-        return 0;
     }
     
     /**
      * Checks the active game Row.
      * 
-     * @return The result Row.
+     * @return The feedback.
      * (Black = correct, White = exists).
      */
-    private Row checkActiveRow() {
-        // Create real copies.
-        Color [] row = new Color[settings.getWidth()];
-        System.arraycopy(gameField.getRow().getColors(), 0, row, 0,
-                settings.getWidth());
-        Color [] secretRow = new Color[settings.getWidth()];
-        System.arraycopy(secretCode.getCode().getColors(), 0, secretRow, 0,
-                settings.getWidth());
-        
-        Row result = new Row(row.length);
-        int index = 0;
-        // Check "correct"-colors first
-        // for a result like "black, black, white, null".
-        for (int i=0; i < row.length; i++) {
-            if (row[i] == secretRow[i]) {
-                // Right color at right position (correct).
-                result.setColorAtPos(index++, Color.Black);
-                // Mark color as checked.
-                secretRow[i] = null;
-                row[i] = null;
-            }
-        }
-        // Now check "exists"-colors
-        outer: for (int i=0; i < row.length; i++) {
-            if (row[i] != null) {
-                for (int j=0; j < row.length; j++) {
-                    if (secretRow[j] != null && row[i] == secretRow[j]) {
-                        // Right color but wrong position (exists).
-                        result.setColorAtPos(index++, Color.White);
-                        // Mark color as checked.
-                        secretRow[j] = null;
-                        continue outer;
-                    }
-                }
-            }
-        }
-        Debug.dbgPrint("checkActiveRow: " + result);
-        gameField.setResult(result);
+    private int checkActiveRow() {
+        int width = settings.getWidth();
+        int bits = Codes.bitsPerPeg(settings.getColQuant());
+        int result = Codes.feedback(Codes.pack(gameField.getRow(), bits),
+                Codes.pack(secretCode.getCode(), bits), width, bits);
+        Log.debug("checkActiveRow: {} black, {} white",
+                Feedback.blacks(result), Feedback.whites(result));
+        gameField.setFeedback(result);
         return result;
     }
 }
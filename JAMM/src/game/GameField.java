@@ -17,19 +17,33 @@
 
 package game;
 
+import common.Feedback;
 import common.Row;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.util.Arrays;
 
 /**
  * The actual game field.
- * This includes the guess rows and the result rows.
+ * This includes the guess rows and the results (as primitive feedback).
  * The active row number is stored here also.
+ *
+ * @see common.Feedback
  */
 class GameField implements Serializable {
+    /**
+     * Fixed to the value of JAMM 0.4, so that games saved with Java
+     * serialization can still be loaded.
+     */
+    private static final long serialVersionUID = 8592620998504554561L;
     // Object vars.
     private int activeRowNumber = 0;
     private Row[] gameField;
-    private Row[] resultField;
+    /**
+     * The feedback of every Row. Feedback.NONE for Rows not played yet.
+     */
+    private int[] feedback;
 
     /**
      * Constructor which inits the game field with width and max. tries.
@@ -42,16 +56,53 @@ class GameField implements Serializable {
         for (int i = 0; i < gameField.length; i++) {
             gameField[i] = new Row(width);
         }
-        resultField = new Row[maxTries];
+        feedback = new int[maxTries];
+        Arrays.fill(feedback, Feedback.NONE);
+    }
+
+    /**
+     * Copy constructor. The Rows are shared, the fields are copied.
+     * (Rows in the game field get replaced, not changed.)
+     *
+     * @param field The game field to copy.
+     */
+    public GameField(GameField field) {
+        activeRowNumber = field.activeRowNumber;
+        gameField = field.gameField.clone();
+        feedback = field.feedback.clone();
+    }
+
+    /**
+     * Read a game field saved with Java serialization.
+     * Game fields of JAMM 0.4 stored the results as Rows of black and
+     * white pegs ("resultField"). They are converted to feedback.
+     *
+     * @param in The stream to read from.
+     * @throws IOException If reading failed.
+     * @throws ClassNotFoundException If a class of the stream is missing.
+     */
+    private void readObject(ObjectInputStream in)
+            throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        activeRowNumber = fields.get("activeRowNumber", 0);
+        gameField = (Row[]) fields.get("gameField", null);
+        feedback = (int[]) fields.get("feedback", null);
+        if (feedback == null) {
+            Row[] resultField = (Row[]) fields.get("resultField", null);
+            feedback = new int[resultField.length];
+            for (int i = 0; i < resultField.length; i++) {
+                feedback[i] = Feedback.fromRow(resultField[i]);
+            }
+        }
     }
 
     /**
-     * Setter - saves the result in the active Row of the result field.
+     * Setter - saves the feedback of the active Row.
      *
-     * @param result Result to set.
+     * @param result Feedback to set.
      */
-    public void setResult(Row result) {
-        resultField[activeRowNumber] = result;
+    public void setFeedback(int result) {
+        feedback[activeRowNumber] = result;
     }
     
     /**
@@ -64,26 +115,26 @@ class GameField implements Serializable {
     }
 
     /**
-     * Getter for active (last) result Row.
+     * Getter for the last feedback.
      * 
-     * @return The last result.
-     * If there is no last result, null will be returned.
+     * @return The last feedback.
+     * If there is no last feedback, Feedback.NONE will be returned.
      */
-    public Row getResult() {
+    public int getFeedback() {
         if (activeRowNumber > 0) {
-            return resultField[activeRowNumber - 1];
+            return feedback[activeRowNumber - 1];
         }
-        return null;
+        return Feedback.NONE;
     }
 
     /**
-     * Getter for a result Row.
+     * Getter for the feedback of a Row.
      *
      * @param rowNumber The number of the Row.
-     * @return The specified Row.
+     * @return The feedback. Feedback.NONE if the Row was not played yet.
      */
-    public Row getResult(int rowNumber) {
-        return resultField[rowNumber];
+    public int getFeedback(int rowNumber) {
+        return feedback[rowNumber];
     }
 
     /**
@@ -0,0 +1,610 @@
+/*
+ * Copyright 2011 Ikarus, René Kübler, Andreas J.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package game;
+
+import common.*;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An append-only archive for many games in one file.
+ * Games are appended turn by turn. Every turn is a fixed-size record
+ * (packed guess and packed result), so a game can be read without touching
+ * any other game. The journal consists of two files:
+ * <pre>
+ * &lt;name&gt;      "JAMJ", version (1 byte), 3 reserved bytes, then the games.
+ *             A game is a header (flags, width, colQuant, reserved byte,
+ *             maxTries as int, packed secret code) followed by its turns
+ *             (packed guess, result byte: blacks * (width + 1) + whites).
+ * &lt;name&gt;.idx  The offset (long) of every game in &lt;name&gt;.
+ * </pre>
+ * The number of turns of a game follows from the offset of the next game.
+ * Both files are read through memory maps, so readers can stream over all
+ * games or jump to any game. All numbers are little endian.
+ *
+ * @see SaveFormat
+ * @see common.Codes
+ */
+public class GameJournal implements Closeable {
+    /**
+     * The file extension of the index file.
+     */
+    public static final String INDEX_EXTENSION = "idx";
+    private static final int MAGIC = 0x4A414D4A; // "JAMJ"
+    private static final byte FORMAT_VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 8;
+    private static final int GAME_HEADER_SIZE = 8;
+    private static final int FLAG_DOUBLE_COLORS = 1;
+    private static final int FLAG_AI_MODE = 2;
+    /**
+     * Size of the write buffers. Appends are written in blocks of this size.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final MappedFile data;
+    private final MappedFile index;
+    /**
+     * The game turns are appended to. -1 if there is none.
+     */
+    private int openGame = -1;
+    /**
+     * The number of turns written for openGame.
+     */
+    private int openGameTurns;
+
+    /**
+     * Open (or create) a journal.
+     *
+     * @param fileName Path and filename of the journal. The index is stored
+     * next to it with the extension INDEX_EXTENSION.
+     * @throws IOException If the files can not be opened or are no journal.
+     */
+    public GameJournal(String fileName) throws IOException {
+        data = new MappedFile(Paths.get(fileName));
+        index = new MappedFile(Paths.get(fileName + "." + INDEX_EXTENSION));
+        if (data.size() == 0) {
+            ByteBuffer header = data.append(FILE_HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.put(FORMAT_VERSION);
+            header.put(new byte[3]);
+        } else if (data.getInt(0) != MAGIC
+                || data.get(4) != FORMAT_VERSION) {
+            data.close();
+            index.close();
+            throw new IOException("Not a JAMM journal: " + fileName);
+        }
+        recover();
+    }
+
+    /**
+     * Cut data which was not completely written (e.g. after a crash).
+     * Games whose header is not complete are dropped, a partly written turn
+     * of the last game is cut, so appending continues after complete data.
+     *
+     * @throws IOException If the files can not be read or truncated.
+     */
+    private void recover() throws IOException {
+        long games = index.size() / 8;
+        long end = data.size();
+        while (games > 0) {
+            long start = index.getLong((games - 1) * 8);
+            if (start >= FILE_HEADER_SIZE && start + GAME_HEADER_SIZE <= end) {
+                int codeBytes = codeBytes(start);
+                long turns = start + GAME_HEADER_SIZE + codeBytes;
+                if (turns <= end) {
+                    end = turns + (end - turns) / (codeBytes + 1)
+                            * (codeBytes + 1);
+                    break;
+                }
+            }
+            end = Math.max(FILE_HEADER_SIZE, Math.min(end, start));
+            games--;
+        }
+        if (games == 0) {
+            end = FILE_HEADER_SIZE;
+        }
+        index.truncate(games * 8);
+        data.truncate(end);
+    }
+
+    /**
+     * Append a game with all its played turns.
+     * Further turns of this game can be appended with appendTurn().
+     *
+     * @param ci The control interface of the game.
+     * @return The number of the game in the journal.
+     * @throws IOException If writing failed.
+     */
+    public synchronized int append(ControlInterface ci) throws IOException {
+        Game game = ci.getGame();
+        Settings s = game.settings;
+        int width = s.getWidth();
+        int bits = Codes.bitsPerPeg(s.getColQuant());
+        int codeBytes = Codes.packedBytes(width, bits);
+
+        openGame = getGameCount();
+        openGameTurns = 0;
+        index.append(8).putLong(data.size());
+        ByteBuffer header = data.append(GAME_HEADER_SIZE + codeBytes);
+        header.put((byte) ((s.getDoubleCol() ? FLAG_DOUBLE_COLORS : 0)
+                | (s.getAiMode() ? FLAG_AI_MODE : 0)));
+        header.put((byte) width);
+        header.put((byte) s.getColQuant());
+        header.put((byte) 0);
+        header.putInt(s.getMaxTries());
+        putCode(header, game.secretCode.getCode(), codeBytes, bits);
+        while (openGameTurns < game.gameField.getActiveRowNumber()) {
+            appendTurn(ci);
+        }
+        return openGame;
+    }
+
+    /**
+     * Append the next played turn of the game last appended.
+     * Does nothing if all played turns are already in the journal.
+     *
+     * @param ci The control interface of the game last appended.
+     * @throws IOException If writing failed.
+     * @throws IllegalStateException If no game was appended before.
+     */
+    public synchronized void appendTurn(ControlInterface ci)
+            throws IOException {
+        if (openGame < 0) {
+            throw new IllegalStateException("No game appended");
+        }
+        Game game = ci.getGame();
+        if (openGameTurns >= game.gameField.getActiveRowNumber()) {
+            return;
+        }
+        int width = game.settings.getWidth();
+        int bits = Codes.bitsPerPeg(game.settings.getColQuant());
+        int codeBytes = Codes.packedBytes(width, bits);
+        int result = game.gameField.getFeedback(openGameTurns);
+        ByteBuffer record = data.append(codeBytes + 1);
+        putCode(record, game.gameField.getRow(openGameTurns), codeBytes, bits);
+        record.put((byte) (Feedback.blacks(result) * (width + 1)
+                + Feedback.whites(result)));
+        openGameTurns++;
+    }
+
+    /**
+     * Write all appended data to the files.
+     *
+     * @throws IOException If writing failed.
+     */
+    public synchronized void flush() throws IOException {
+        data.flush();
+        index.flush();
+    }
+
+    /**
+     * Flush and close the journal.
+     *
+     * @throws IOException If writing failed.
+     */
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            data.close();
+            index.close();
+        }
+    }
+
+    /**
+     * Getter for the number of games in the journal.
+     *
+     * @return The number of games.
+     */
+    public synchronized int getGameCount() {
+        return (int) (index.size() / 8);
+    }
+
+    /**
+     * Getter for the number of turns of a game.
+     *
+     * @param game The number of the game.
+     * @return The number of turns.
+     * @throws IOException If reading failed.
+     */
+    public synchronized int getTurnCount(int game) throws IOException {
+        long start = offset(game);
+        long end = game + 1 < getGameCount() ? offset(game + 1) : data.size();
+        int codeBytes = codeBytes(start);
+        return (int) ((end - start - GAME_HEADER_SIZE - codeBytes)
+                / (codeBytes + 1));
+    }
+
+    /**
+     * Getter for the width of a game.
+     *
+     * @param game The number of the game.
+     * @return The width of the game.
+     * @throws IOException If reading failed.
+     */
+    public synchronized int getWidth(int game) throws IOException {
+        return data.get(offset(game) + 1);
+    }
+
+    /**
+     * Getter for the color quantity of a game.
+     *
+     * @param game The number of the game.
+     * @return The color quantity of the game.
+     * @throws IOException If reading failed.
+     */
+    public synchronized int getColQuant(int game) throws IOException {
+        return data.get(offset(game) + 2);
+    }
+
+    /**
+     * Getter for the packed secret code of a game.
+     *
+     * @param game The number of the game.
+     * @return The packed secret code.
+     * @throws IOException If reading failed.
+     * @see common.Codes#unpack(long, int, int)
+     */
+    public synchronized long getSecretCode(int game) throws IOException {
+        long start = offset(game);
+        return getCode(start + GAME_HEADER_SIZE, codeBytes(start));
+    }
+
+    /**
+     * Getter for a packed guess of a game.
+     *
+     * @param game The number of the game.
+     * @param turn The number of the turn.
+     * @return The packed guess.
+     * @throws IOException If reading failed.
+     * @see common.Codes#unpack(long, int, int)
+     */
+    public synchronized long getGuess(int game, int turn) throws IOException {
+        long start = offset(game);
+        int codeBytes = codeBytes(start);
+        return getCode(turnOffset(start, codeBytes, turn), codeBytes);
+    }
+
+    /**
+     * Getter for a packed result of a game.
+     *
+     * @param game The number of the game.
+     * @param turn The number of the turn.
+     * @return The packed result: blacks * (width + 1) + whites.
+     * @throws IOException If reading failed.
+     */
+    public synchronized int getResult(int game, int turn) throws IOException {
+        long start = offset(game);
+        int codeBytes = codeBytes(start);
+        return data.get(turnOffset(start, codeBytes, turn) + codeBytes) & 0xFF;
+    }
+
+    /**
+     * Load a game of the journal.
+     *
+     * @param game The number of the game.
+     * @return A control interface with the loaded game.
+     * @throws IOException If reading failed.
+     */
+    public ControlInterface load(int game) throws IOException {
+        ControlInterface ci = new ControlInterface();
+        ci.load(this, game);
+        return ci;
+    }
+
+    /**
+     * Read a game of the journal.
+     *
+     * @param game The number of the game.
+     * @return The read game.
+     * @throws IOException If reading failed.
+     */
+    synchronized Game read(int game) throws IOException {
+        long start = offset(game);
+        int flags = data.get(start);
+        int width = data.get(start + 1);
+        int colQuant = data.get(start + 2);
+        Settings s = new Settings();
+        s.setWidth(width);
+        s.setColQuant(colQuant);
+        s.setMaxTries(data.getInt(start + 4));
+        s.setDoubleCol((flags & FLAG_DOUBLE_COLORS) != 0);
+        s.setAiMode((flags & FLAG_AI_MODE) != 0);
+
+        int bits = Codes.bitsPerPeg(colQuant);
+        int codeBytes = Codes.packedBytes(width, bits);
+        Game g = new Game(s);
+        g.secretCode.setCode(Codes.unpack(
+                getCode(start + GAME_HEADER_SIZE, codeBytes), width, bits));
+        int turns = getTurnCount(game);
+        for (int i = 0; i < turns; i++) {
+            long pos = turnOffset(start, codeBytes, i);
+            int result = data.get(pos + codeBytes) & 0xFF;
+            g.gameField.setRow(Codes.unpack(getCode(pos, codeBytes), width,
+                    bits));
+            g.gameField.setFeedback(Feedback.of(result / (width + 1),
+                    result % (width + 1)));
+            g.gameField.incActiveRowNumber();
+            g.gameEnded = result / (width + 1) == width;
+        }
+        g.gameEnded |= turns >= s.getMaxTries();
+        return g;
+    }
+
+    /**
+     * Get the offset of a game in the data file.
+     *
+     * @param game The number of the game.
+     * @return The offset.
+     * @throws IOException If reading failed.
+     */
+    private long offset(int game) throws IOException {
+        if (game < 0 || game >= getGameCount()) {
+            throw new IndexOutOfBoundsException("No game " + game);
+        }
+        return index.getLong(game * 8L);
+    }
+
+    /**
+     * Get the size of a packed code of a game.
+     *
+     * @param start The offset of the game.
+     * @return The size of a packed code in bytes.
+     * @throws IOException If reading failed.
+     */
+    private int codeBytes(long start) throws IOException {
+        return Codes.packedBytes(data.get(start + 1),
+                Codes.bitsPerPeg(data.get(start + 2)));
+    }
+
+    /**
+     * Get the offset of a turn record.
+     *
+     * @param start The offset of the game.
+     * @param codeBytes The size of a packed code of the game.
+     * @param turn The number of the turn.
+     * @return The offset of the turn record.
+     */
+    private static long turnOffset(long start, int codeBytes, int turn) {
+        return start + GAME_HEADER_SIZE + codeBytes
+                + (long) turn * (codeBytes + 1);
+    }
+
+    /**
+     * Read a packed code from the data file.
+     *
+     * @param pos The offset of the code.
+     * @param codeBytes The size of the code in bytes.
+     * @return The packed code.
+     * @throws IOException If reading failed.
+     */
+    private long getCode(long pos, int codeBytes) throws IOException {
+        long code = 0;
+        for (int i = 0; i < codeBytes; i++) {
+            code |= (data.get(pos + i) & 0xFFL) << (i * 8);
+        }
+        return code;
+    }
+
+    /**
+     * Write a packed code.
+     *
+     * @param out The buffer to write to.
+     * @param row The code.
+     * @param codeBytes The size of the code in bytes.
+     * @param bits The number of bits per peg.
+     */
+    private static void putCode(ByteBuffer out, Row row, int codeBytes,
+            int bits) {
+        long code = Codes.pack(row, bits);
+        for (int i = 0; i < codeBytes; i++) {
+            out.put((byte) (code >>> (i * 8)));
+        }
+    }
+
+    /**
+     * A file which is appended through a buffer and read through memory
+     * maps. The file is mapped in chunks, so it may be larger than 2 GB.
+     * Ints and longs crossing the border of two chunks are read byte by
+     * byte.
+     */
+    private static class MappedFile {
+        private static final int CHUNK_BITS = 30;
+        private static final long CHUNK_SIZE = 1L << CHUNK_BITS;
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        private final List<MappedByteBuffer> chunks =
+                new ArrayList<MappedByteBuffer>();
+        /**
+         * Size of the file without the buffered data.
+         */
+        private long written;
+
+        /**
+         * Open or create a file.
+         *
+         * @param path The path of the file.
+         * @throws IOException If the file can not be opened.
+         */
+        MappedFile(Path path) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            written = channel.size();
+        }
+
+        /**
+         * Getter for the size of the file including the buffered data.
+         *
+         * @return The size.
+         */
+        long size() {
+            return written + buffer.position();
+        }
+
+        /**
+         * Get a buffer to append data to the file.
+         *
+         * @param length The number of bytes which will be appended
+         * (max. BUFFER_SIZE).
+         * @return A buffer with at least length bytes remaining.
+         * @throws IOException If writing buffered data failed.
+         */
+        ByteBuffer append(int length) throws IOException {
+            if (buffer.remaining() < length) {
+                flush();
+            }
+            return buffer;
+        }
+
+        /**
+         * Write the buffered data to the file.
+         *
+         * @throws IOException If writing failed.
+         */
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer, written);
+            }
+            buffer.clear();
+        }
+
+        /**
+         * Cut the file to a size.
+         *
+         * @param size The new size.
+         * @throws IOException If the file can not be truncated.
+         */
+        void truncate(long size) throws IOException {
+            flush();
+            if (size < written) {
+                chunks.clear();
+                channel.truncate(size);
+                written = size;
+            }
+        }
+
+        /**
+         * Read a byte.
+         *
+         * @param pos The offset of the byte.
+         * @return The byte.
+         * @throws IOException If the file can not be mapped.
+         */
+        byte get(long pos) throws IOException {
+            return chunk(pos).get((int) (pos & (CHUNK_SIZE - 1)));
+        }
+
+        /**
+         * Read an int.
+         *
+         * @param pos The offset of the int.
+         * @return The int.
+         * @throws IOException If the file can not be mapped.
+         */
+        int getInt(long pos) throws IOException {
+            if ((pos & (CHUNK_SIZE - 1)) + 4 > CHUNK_SIZE) {
+                return (int) getBytes(pos, 4);
+            }
+            return chunk(pos + 3).getInt((int) (pos & (CHUNK_SIZE - 1)));
+        }
+
+        /**
+         * Read a long.
+         *
+         * @param pos The offset of the long.
+         * @return The long.
+         * @throws IOException If the file can not be mapped.
+         */
+        long getLong(long pos) throws IOException {
+            if ((pos & (CHUNK_SIZE - 1)) + 8 > CHUNK_SIZE) {
+                return getBytes(pos, 8);
+            }
+            return chunk(pos + 7).getLong((int) (pos & (CHUNK_SIZE - 1)));
+        }
+
+        /**
+         * Read a little endian number byte by byte.
+         *
+         * @param pos The offset of the number.
+         * @param length The number of bytes (max. 8).
+         * @return The number.
+         * @throws IOException If the file can not be mapped.
+         */
+        private long getBytes(long pos, int length) throws IOException {
+            long value = 0;
+            for (int i = 0; i < length; i++) {
+                value |= (get(pos + i) & 0xFFL) << (i * 8);
+            }
+            return value;
+        }
+
+        /**
+         * Get the mapped chunk containing a position.
+         * Buffered data is written and chunks are (re)mapped if needed.
+         *
+         * @param pos The position.
+         * @return The chunk.
+         * @throws IOException If the file can not be mapped.
+         */
+        private MappedByteBuffer chunk(long pos) throws IOException {
+            if (pos >= written) {
+                flush();
+                if (pos >= written) {
+                    throw new IndexOutOfBoundsException(
+                            "Position " + pos + " is beyond the file end");
+                }
+            }
+            int n = (int) (pos >>> CHUNK_BITS);
+            if (n >= chunks.size() || chunks.get(n).limit()
+                    <= (int) (pos & (CHUNK_SIZE - 1))) {
+                // Map the chunk (again, the file has grown).
+                while (chunks.size() <= n) {
+                    chunks.add(null);
+                }
+                long start = (long) n << CHUNK_BITS;
+                MappedByteBuffer chunk = channel.map(
+                        FileChannel.MapMode.READ_ONLY, start,
+                        Math.min(CHUNK_SIZE, written - start));
+                chunk.order(ByteOrder.LITTLE_ENDIAN);
+                chunks.set(n, chunk);
+            }
+            return chunks.get(n);
+        }
+
+        /**
+         * Close the file.
+         *
+         * @throws IOException If closing failed.
+         */
+        void close() throws IOException {
+            chunks.clear();
+            channel.close();
+        }
+    }
+}
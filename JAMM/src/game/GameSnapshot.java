@@ -0,0 +1,170 @@
+/*
+ * Copyright 2011 Ikarus, René Kübler, Andreas J.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package game;
+
+import common.Feedback;
+import common.Row;
+
+/**
+ * An immutable view of a game at one point in time.
+ * All values belong to the same state of the game, even if the game is
+ * changed while the snapshot is read. The Rows of a snapshot must not be
+ * changed.
+ *
+ * @see ControlInterface#snapshot()
+ */
+public final class GameSnapshot {
+    /**
+     * The game. It is never changed (see ControlInterface).
+     */
+    private final Game game;
+
+    /**
+     * Create a snapshot.
+     *
+     * @param game The game. It must not be changed anymore.
+     */
+    GameSnapshot(Game game) {
+        this.game = game;
+    }
+
+    /**
+     * Get the history (guesses and results) of the game as immutable,
+     * columnar arrays.
+     *
+     * @return The history.
+     */
+    public History getHistory() {
+        return game.history();
+    }
+
+    /**
+     * Getter for the active Row number.
+     *
+     * @return The active Row number (the number of played turns).
+     */
+    public int getActiveRowNumber() {
+        return game.gameField.getActiveRowNumber();
+    }
+
+    /**
+     * Get a specific game Row.
+     *
+     * @param row The Row number.
+     * @return The specified game Row. If the row does not exist, null will
+     * be returned.
+     */
+    public Row getGameFieldRow(int row) {
+        if (row >= 0 && row < game.settings.getMaxTries()) {
+            return game.gameField.getRow(row);
+        }
+        return null;
+    }
+
+    /**
+     * Get the feedback of a specific Row.
+     *
+     * @param row The Row number.
+     * @return The feedback. If the row does not exist or was not played yet,
+     * Feedback.NONE will be returned.
+     * @see common.Feedback
+     */
+    public int getFeedback(int row) {
+        if (row >= 0 && row < game.settings.getMaxTries()) {
+            return game.gameField.getFeedback(row);
+        }
+        return Feedback.NONE;
+    }
+
+    /**
+     * Get a specific result Row like "black, black, white, null".
+     *
+     * @param row The Row number.
+     * @return The specified result Row. If the row does not exist, null will
+     * be returned.
+     * @see #getFeedback(int)
+     */
+    public Row getResultRow(int row) {
+        return Feedback.toRow(getFeedback(row), game.settings.getWidth());
+    }
+
+    /**
+     * Get the secret code.
+     *
+     * @return The secret code.
+     */
+    public Row getSecretCode() {
+        return game.secretCode.getCode();
+    }
+
+    /**
+     * Getter for the game width.
+     *
+     * @return The width of a guess/result Row.
+     */
+    public int getSettingWidth() {
+        return game.settings.getWidth();
+    }
+
+    /**
+     * Getter for the color quantity.
+     *
+     * @return The quantity of colors in the game.
+     */
+    public int getSettingColQuant() {
+        return game.settings.getColQuant();
+    }
+
+    /**
+     * Getter for max. number of tries (guesses).
+     *
+     * @return The max. number of tries.
+     */
+    public int getSettingMaxTries() {
+        return game.settings.getMaxTries();
+    }
+
+    /**
+     * Getter for double colors allowance.
+     *
+     * @return True if double colors are allowed. Otherwise false.
+     */
+    public boolean getSettingDoubleCol() {
+        return game.settings.getDoubleCol();
+    }
+
+    /**
+     * Getter for AI mode.
+     *
+     * @return True for AI = Codebreaker, human = Codemaker.<br />
+     * False for AI = Codemaker, human = Codebreaker.
+     */
+    public boolean getSettingAiMode() {
+        return game.settings.getAiMode();
+    }
+
+    /**
+     * Getter for game ended state.
+     *
+     * @return True if the game has ended. Otherwise false.
+     */
+    public boolean getGameEnded() {
+        return game.gameEnded;
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2011 Ikarus, René Kübler, Andreas J.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package game;
+
+import common.*;
+import java.util.Arrays;
+
+/**
+ * An immutable, columnar view of the history (guesses and results) of a
+ * game. The guesses are packed (see common.Codes), the results are stored
+ * as primitive arrays. A history is built once per game state and can be
+ * shared by any number of threads.
+ * Two histories are equal if they have the same settings and the same
+ * guesses and results, so a history can be used as a cache key.
+ *
+ * @see ControlInterface#history()
+ * @see common.Codes
+ */
+public final class History {
+    private final int width;
+    private final int colQuant;
+    private final boolean doubleColors;
+    private final int bits;
+    private final long[] guesses;
+    private final int[] blacks;
+    private final int[] whites;
+    /**
+     * Cached hash code (0 = not computed yet).
+     */
+    private int hash;
+
+    /**
+     * Build the history of a game.
+     *
+     * @param game The game. It must not be changed anymore.
+     */
+    History(Game game) {
+        width = game.settings.getWidth();
+        colQuant = game.settings.getColQuant();
+        doubleColors = game.settings.getDoubleCol();
+        bits = Codes.bitsPerPeg(colQuant);
+        int depth = game.gameField.getActiveRowNumber();
+        guesses = new long[depth];
+        blacks = new int[depth];
+        whites = new int[depth];
+        for (int i = 0; i < depth; i++) {
+            int feedback = game.gameField.getFeedback(i);
+            guesses[i] = Codes.pack(game.gameField.getRow(i), bits);
+            blacks[i] = Feedback.blacks(feedback);
+            whites[i] = Feedback.whites(feedback);
+        }
+    }
+
+    /**
+     * Getter for the number of played turns.
+     *
+     * @return The depth of the history.
+     */
+    public int getDepth() {
+        return guesses.length;
+    }
+
+    /**
+     * Getter for the game width.
+     *
+     * @return The width of a guess.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Getter for the color quantity.
+     *
+     * @return The quantity of colors in the game.
+     */
+    public int getColQuant() {
+        return colQuant;
+    }
+
+    /**
+     * Getter for double colors allowance.
+     *
+     * @return True if double colors are allowed. Otherwise false.
+     */
+    public boolean getDoubleCol() {
+        return doubleColors;
+    }
+
+    /**
+     * Getter for the number of bits per peg of the packed guesses.
+     *
+     * @return The number of bits per peg.
+     * @see common.Codes#bitsPerPeg(int)
+     */
+    public int getBitsPerPeg() {
+        return bits;
+    }
+
+    /**
+     * Getter for a packed guess.
+     *
+     * @param turn The number of the turn.
+     * @return The packed guess.
+     */
+    public long getGuess(int turn) {
+        return guesses[turn];
+    }
+
+    /**
+     * Getter for the number of black pegs of a result.
+     *
+     * @param turn The number of the turn.
+     * @return The number of black pegs.
+     */
+    public int getBlacks(int turn) {
+        return blacks[turn];
+    }
+
+    /**
+     * Getter for the number of white pegs of a result.
+     *
+     * @param turn The number of the turn.
+     * @return The number of white pegs.
+     */
+    public int getWhites(int turn) {
+        return whites[turn];
+    }
+
+    /**
+     * Getter for the feedback of a turn.
+     *
+     * @param turn The number of the turn.
+     * @return The feedback.
+     * @see common.Feedback
+     */
+    public int getFeedback(int turn) {
+        return Feedback.of(blacks[turn], whites[turn]);
+    }
+
+    /**
+     * Check if a code is consistent with the history (feasible): it would
+     * have got the same result for every guess if it was the secret code.
+     *
+     * @param code The packed code.
+     * @return True if the code is feasible. Otherwise false.
+     */
+    public boolean isConsistent(long code) {
+        for (int i = 0; i < guesses.length; i++) {
+            int feedback = Codes.feedback(code, guesses[i], width, bits);
+            if (Feedback.blacks(feedback) != blacks[i]
+                    || Feedback.whites(feedback) != whites[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Measure how far a code is from being consistent with the history.
+     * This is the sum of the differences of the black and white pegs the
+     * code would have got for every guess.
+     *
+     * @param code The packed code.
+     * @return The distance. 0 if the code is feasible.
+     */
+    public int distance(long code) {
+        int distance = 0;
+        for (int i = 0; i < guesses.length; i++) {
+            int feedback = Codes.feedback(code, guesses[i], width, bits);
+            distance += Math.abs(Feedback.blacks(feedback) - blacks[i])
+                    + Math.abs(Feedback.whites(feedback) - whites[i]);
+        }
+        return distance;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (o instanceof History == false) {
+            return false;
+        }
+        History h = (History) o;
+        return width == h.width && colQuant == h.colQuant
+                && doubleColors == h.doubleColors
+                && Arrays.equals(guesses, h.guesses)
+                && Arrays.equals(blacks, h.blacks)
+                && Arrays.equals(whites, h.whites);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            h = 31 * (31 * (31 * width + colQuant)
+                    + (doubleColors ? 1 : 0)) + Arrays.hashCode(guesses);
+            h = 31 * (31 * h + Arrays.hashCode(blacks))
+                    + Arrays.hashCode(whites);
+            hash = h;
+        }
+        return h;
+    }
+}
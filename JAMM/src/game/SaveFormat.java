@@ -0,0 +1,196 @@
+/*
+ * Copyright 2011 Ikarus, René Kübler, Andreas J.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package game;
+
+import common.*;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * The binary format of saved games.
+ * A saved game starts with a fixed header:
+ * <pre>
+ * magic     4 bytes  "JAMM"
+ * version   1 byte   FORMAT_VERSION
+ * flags     1 byte   bit 0: double colors, bit 1: AI mode, bit 2: ended
+ * width     1 byte
+ * colQuant  1 byte
+ * maxTries  4 bytes
+ * rows      4 bytes  number of played rows (active Row number)
+ * </pre>
+ * It is followed by the packed secret code and, for every played row, the
+ * packed guess and the packed result (one byte: blacks * (width + 1) +
+ * whites). A packed code uses Codes.packedBytes() bytes (little endian).
+ *
+ * @see common.Codes
+ */
+class SaveFormat {
+    /**
+     * The magic bytes at the beginning of every saved game.
+     */
+    static final int MAGIC = 0x4A414D4D; // "JAMM"
+    /**
+     * The version of the format which is written.
+     */
+    static final byte FORMAT_VERSION = 1;
+    /**
+     * Size of the fixed header in bytes.
+     */
+    static final int HEADER_SIZE = 16;
+
+    private static final int FLAG_DOUBLE_COLORS = 1;
+    private static final int FLAG_AI_MODE = 2;
+    private static final int FLAG_ENDED = 4;
+
+    /**
+     * No instances. This class only has static functions.
+     */
+    private SaveFormat() {
+    }
+
+    /**
+     * Get the number of bytes needed to store a game.
+     *
+     * @param game The game.
+     * @return The size of the stored game in bytes.
+     */
+    static int size(Game game) {
+        int width = game.settings.getWidth();
+        int codeBytes = Codes.packedBytes(width,
+                Codes.bitsPerPeg(game.settings.getColQuant()));
+        return HEADER_SIZE + codeBytes
+                + game.gameField.getActiveRowNumber() * (codeBytes + 1);
+    }
+
+    /**
+     * Write a game to a buffer.
+     *
+     * @param game The game to write.
+     * @param out The buffer. It needs size(game) bytes remaining.
+     */
+    static void write(Game game, ByteBuffer out) {
+        Settings s = game.settings;
+        int width = s.getWidth();
+        int bits = Codes.bitsPerPeg(s.getColQuant());
+        int rows = game.gameField.getActiveRowNumber();
+        int flags = (s.getDoubleCol() ? FLAG_DOUBLE_COLORS : 0)
+                | (s.getAiMode() ? FLAG_AI_MODE : 0)
+                | (game.gameEnded ? FLAG_ENDED : 0);
+        out.putInt(MAGIC);
+        out.put(FORMAT_VERSION);
+        out.put((byte) flags);
+        out.put((byte) width);
+        out.put((byte) s.getColQuant());
+        out.putInt(s.getMaxTries());
+        out.putInt(rows);
+        putCode(out, game.secretCode.getCode(), width, bits);
+        for (int i = 0; i < rows; i++) {
+            int result = game.gameField.getFeedback(i);
+            putCode(out, game.gameField.getRow(i), width, bits);
+            out.put((byte) (Feedback.blacks(result) * (width + 1)
+                    + Feedback.whites(result)));
+        }
+    }
+
+    /**
+     * Read a game from a buffer.
+     *
+     * @param in The buffer, positioned at the magic bytes.
+     * @return The read game.
+     * @throws IOException If the data is no valid saved game.
+     */
+    static Game read(ByteBuffer in) throws IOException {
+        try {
+            if (in.getInt() != MAGIC) {
+                throw new IOException("Not a JAMM save game");
+            }
+            byte version = in.get();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported save game version: "
+                        + version);
+            }
+            int flags = in.get();
+            int width = in.get();
+            int colQuant = in.get();
+            int maxTries = in.getInt();
+            int rows = in.getInt();
+            if (width < 1 || width > Codes.MAX_WIDTH || colQuant < 1
+                    || colQuant > Codes.MAX_COLORS || maxTries < 1 || rows < 0
+                    || rows > maxTries) {
+                throw new IOException("Corrupt save game header");
+            }
+            Settings s = new Settings();
+            s.setWidth(width);
+            s.setColQuant(colQuant);
+            s.setMaxTries(maxTries);
+            s.setDoubleCol((flags & FLAG_DOUBLE_COLORS) != 0);
+            s.setAiMode((flags & FLAG_AI_MODE) != 0);
+
+            int bits = Codes.bitsPerPeg(colQuant);
+            Game game = new Game(s);
+            game.secretCode.setCode(getCode(in, width, bits));
+            for (int i = 0; i < rows; i++) {
+                game.gameField.setRow(getCode(in, width, bits));
+                int result = in.get() & 0xFF;
+                if (result / (width + 1) + result % (width + 1) > width) {
+                    throw new IOException("Corrupt result in row " + i);
+                }
+                game.gameField.setFeedback(Feedback.of(result / (width + 1),
+                        result % (width + 1)));
+                game.gameField.incActiveRowNumber();
+            }
+            game.gameEnded = (flags & FLAG_ENDED) != 0;
+            return game;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated save game", e);
+        }
+    }
+
+    /**
+     * Write a packed code.
+     *
+     * @param out The buffer to write to.
+     * @param row The code.
+     * @param width The width of the game.
+     * @param bits The number of bits per peg.
+     */
+    private static void putCode(ByteBuffer out, Row row, int width,
+            int bits) {
+        long code = Codes.pack(row, bits);
+        for (int i = 0; i < Codes.packedBytes(width, bits); i++) {
+            out.put((byte) (code >>> (i * 8)));
+        }
+    }
+
+    /**
+     * Read a packed code.
+     *
+     * @param in The buffer to read from.
+     * @param width The width of the game.
+     * @param bits The number of bits per peg.
+     * @return The code.
+     */
+    private static Row getCode(ByteBuffer in, int width, int bits) {
+        long code = 0;
+        for (int i = 0; i < Codes.packedBytes(width, bits); i++) {
+            code |= (in.get() & 0xFFL) << (i * 8);
+        }
+        return Codes.unpack(code, width, bits);
+    }
+}
@@ -24,6 +24,11 @@ import java.io.Serializable;
  * This class represents the secret code the player or the AI has to guess.
  */
 class SecretCode implements Serializable {
+    /**
+     * Fixed to the value of JAMM 0.4, so that games saved with Java
+     * serialization can still be loaded.
+     */
+    private static final long serialVersionUID = 6473118104451836696L;
     // Object vars.
     private Row secretCode;
 
@@ -38,6 +43,15 @@ class SecretCode implements Serializable {
         generateCode(colorQuant, width, doubleColors);
     }
 
+    /**
+     * Copy constructor.
+     *
+     * @param code The secret code to copy.
+     */
+    public SecretCode(SecretCode code) {
+        secretCode = code.secretCode;
+    }
+
     /**
      * Creates a secret code.
      * 
@@ -47,24 +61,22 @@ class SecretCode implements Serializable {
      */
     private void generateCode(int colorQuant, int width, boolean doubleColors) {
         secretCode = new Row(width);
-        //Prepare values to fit colorQuant-rule
-        Color[] values = new Color[colorQuant];
-        Color[] all = Color.values();
-        System.arraycopy(all, 0, values, 0, colorQuant);
-
         //Do the actual code generation...
         int i = 0;
         while (i < width) {
-            Color now = values[(int) (Math.random() * colorQuant)];
-            if (secretCode.containsColor(now) > 0) {
+            int now = (int) (Math.random() * colorQuant);
+            if (secretCode.containsPeg(now) > 0) {
                 if (doubleColors == true) {
-                    secretCode.setColorAtPos(i++, now);
+                    secretCode.setPeg(i++, now);
                 }
             } else {
-                secretCode.setColorAtPos(i++, now);
+                secretCode.setPeg(i++, now);
             }
         }
-        Debug.dbgPrint("Secret code is: " + secretCode);
+        secretCode = CodePool.get(width, colorQuant) != null
+                ? CodePool.get(width, colorQuant).intern(secretCode)
+                : secretCode;
+        Log.debug("Secret code is: {}", secretCode);
     }
 
     /**
@@ -23,6 +23,11 @@ import java.io.Serializable;
  * Contains all settings of a game.
  */
 class Settings implements Serializable {
+    /**
+     * Fixed to the value of JAMM 0.4, so that games saved with Java
+     * serialization can still be loaded.
+     */
+    private static final long serialVersionUID = 575846078723197496L;
     // Object vars. representing the settings.
     // Init with standard values.
     /**
@@ -56,6 +61,25 @@ class Settings implements Serializable {
      * Std is: False.
      */
     private boolean aiMode = false;
+
+    /**
+     * Std. Constructor. Creates the standard settings.
+     */
+    public Settings() {
+    }
+
+    /**
+     * Copy constructor.
+     *
+     * @param s The settings to copy.
+     */
+    public Settings(Settings s) {
+        maxTries = s.maxTries;
+        width = s.width;
+        colQuant = s.colQuant;
+        doubleColors = s.doubleColors;
+        aiMode = s.aiMode;
+    }
     
     /**
      * Getter for game mode.
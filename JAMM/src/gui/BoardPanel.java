@@ -0,0 +1,408 @@
+/*
+ * Copyright 2011 Ikarus, René Kübler, Andreas J.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package gui;
+
+import common.*;
+import game.ControlInterface;
+import java.awt.Dimension;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.Arrays;
+import javax.swing.JComponent;
+import javax.swing.JViewport;
+import javax.swing.Scrollable;
+import javax.swing.SwingUtilities;
+import javax.swing.UIManager;
+
+/**
+ * The game table (result and guess pegs of every row) as one painted
+ * component instead of a grid of buttons.
+ * Only the rows in the visible part of the scroll pane are painted and
+ * clicks are mapped to pegs by their position, so the costs of the board
+ * grow with the viewport and not with the max. number of tries.
+ * The played rows are read from the game engine. Only the pegs of the
+ * active row (not checked yet) are stored here.
+ */
+class BoardPanel extends JComponent implements Scrollable {
+
+    /**
+     * Gets the clicks on the active row.
+     */
+    interface BoardListener {
+
+        /**
+         * A guess peg of the active row was clicked.
+         *
+         * @param column The column of the peg (0 to width - 1).
+         */
+        void guessPegClicked(int column);
+
+        /**
+         * A result peg of the active row was clicked.
+         */
+        void resultClicked();
+    }
+
+    private static final long serialVersionUID = 1L;
+    private static final int ROW_HEIGHT = 28;
+    /**
+     * Height of the key usage labels (1, 2, 3, ...) above the guesses.
+     */
+    private static final int HEADER_HEIGHT = 20;
+    private static final int LABEL_WIDTH = 30;
+    private static final int RESULT_WIDTH = 20;
+    /**
+     * Min. width of a guess peg. Guess pegs get all additional space.
+     */
+    private static final int GUESS_WIDTH = 35;
+    /**
+     * Space around every peg.
+     */
+    private static final int INSET = 2;
+    private final ControlInterface ci;
+    private final BoardListener listener;
+    /**
+     * The pegs of the active row.
+     */
+    private int[] activePegs = new int[0];
+    /**
+     * The active row when the board was refreshed last.
+     */
+    private int shownActiveRow = -1;
+
+    /**
+     * Create a board.
+     *
+     * @param ci The game to show.
+     * @param listener Gets the clicks on the active row.
+     */
+    BoardPanel(ControlInterface ci, BoardListener listener) {
+        this.ci = ci;
+        this.listener = listener;
+        setOpaque(true);
+        addMouseListener(new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                if (SwingUtilities.isLeftMouseButton(e) == true) {
+                    click(e.getX(), e.getY());
+                }
+            }
+        });
+    }
+
+    /**
+     * Show a new (or loaded) game. The active row is emptied.
+     */
+    void newGame() {
+        shownActiveRow = -1;
+        refresh();
+    }
+
+    /**
+     * Show changes of the game (e.g. a checked row).
+     * If there is a new active row, it is emptied and scrolled to.
+     */
+    void refresh() {
+        int active = ci.getActiveRowNumber();
+        if (active != shownActiveRow
+                || activePegs.length != ci.getSettingWidth()) {
+            shownActiveRow = active;
+            activePegs = new int[ci.getSettingWidth()];
+            Arrays.fill(activePegs, Row.EMPTY);
+            revalidate();
+            // Scroll down as soon as the new size is layed out.
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    scrollRectToVisible(rowBounds(getRowCount() - 1));
+                }
+            });
+        }
+        repaint();
+    }
+
+    /**
+     * Getter for a peg of the active row.
+     *
+     * @param column The column.
+     * @return The peg. Row.EMPTY if it is not set.
+     */
+    int getPeg(int column) {
+        return activePegs[column];
+    }
+
+    /**
+     * Set a peg of the active row.
+     *
+     * @param column The column.
+     * @param peg The peg.
+     */
+    void setPeg(int column, int peg) {
+        activePegs[column] = peg;
+        repaint(rowBounds(ci.getActiveRowNumber()));
+    }
+
+    /**
+     * Getter for the pegs of the active row.
+     *
+     * @return A copy of the pegs.
+     */
+    int[] getPegs() {
+        return activePegs.clone();
+    }
+
+    /**
+     * Set all pegs of the active row.
+     *
+     * @param pegs The pegs.
+     */
+    void setPegs(int[] pegs) {
+        System.arraycopy(pegs, 0, activePegs, 0, activePegs.length);
+        repaint(rowBounds(ci.getActiveRowNumber()));
+    }
+
+    /**
+     * Checks if all pegs of the active row are set.
+     *
+     * @return True if all pegs are set.
+     */
+    boolean isRowSet() {
+        for (int peg : activePegs) {
+            if (peg == Row.EMPTY) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        if (isPreferredSizeSet() == true) {
+            return super.getPreferredSize();
+        }
+        int width = ci.getSettingWidth();
+        return new Dimension(
+                LABEL_WIDTH + width * (RESULT_WIDTH + GUESS_WIDTH),
+                HEADER_HEIGHT + getRowCount() * ROW_HEIGHT);
+    }
+
+    public Dimension getPreferredScrollableViewportSize() {
+        return new Dimension(getPreferredSize().width,
+                HEADER_HEIGHT + 10 * ROW_HEIGHT);
+    }
+
+    public int getScrollableUnitIncrement(Rectangle visibleRect,
+            int orientation, int direction) {
+        return ROW_HEIGHT;
+    }
+
+    public int getScrollableBlockIncrement(Rectangle visibleRect,
+            int orientation, int direction) {
+        return Math.max(ROW_HEIGHT, visibleRect.height - ROW_HEIGHT);
+    }
+
+    public boolean getScrollableTracksViewportWidth() {
+        return true;
+    }
+
+    public boolean getScrollableTracksViewportHeight() {
+        // Fill the viewport if there are only a few rows.
+        return getParent() instanceof JViewport
+                && getParent().getHeight() > getPreferredSize().height;
+    }
+
+    @Override
+    protected void paintComponent(Graphics graphics) {
+        Graphics2D g = (Graphics2D) graphics.create();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                    RenderingHints.VALUE_ANTIALIAS_ON);
+            Rectangle clip = g.getClipBounds();
+            if (clip == null) {
+                clip = new Rectangle(0, 0, getWidth(), getHeight());
+            }
+            g.setColor(getBackground());
+            g.fillRect(clip.x, clip.y, clip.width, clip.height);
+            g.setColor(getForeground());
+            int width = ci.getSettingWidth();
+            int guessWidth = guessWidth();
+            FontMetrics fm = g.getFontMetrics();
+            if (clip.y < HEADER_HEIGHT) {
+                // Key usage labels.
+                for (int i = 0; i < width; i++) {
+                    drawCentered(g, fm, "" + (i + 1), guessX(i, guessWidth),
+                            0, guessWidth, HEADER_HEIGHT);
+                }
+            }
+            // Paint only the visible rows.
+            int first = Math.max(0, (clip.y - HEADER_HEIGHT) / ROW_HEIGHT);
+            int last = Math.min(getRowCount() - 1,
+                    (clip.y + clip.height - HEADER_HEIGHT) / ROW_HEIGHT);
+            for (int row = first; row <= last; row++) {
+                paintRow(g, fm, row, width, guessWidth);
+            }
+        } finally {
+            g.dispose();
+        }
+    }
+
+    /**
+     * Paint a row.
+     *
+     * @param g The graphics.
+     * @param fm The metrics of the font.
+     * @param row The row.
+     * @param width The game width.
+     * @param guessWidth The width of a guess peg.
+     */
+    private void paintRow(Graphics2D g, FontMetrics fm, int row, int width,
+            int guessWidth) {
+        int y = HEADER_HEIGHT + row * ROW_HEIGHT;
+        boolean played = row < ci.getActiveRowNumber();
+        if (played == false && ci.getGameEnded() == false) {
+            // Mark the active row.
+            g.setColor(UIManager.getColor("List.selectionBackground") != null
+                    ? UIManager.getColor("List.selectionBackground")
+                    : java.awt.Color.LIGHT_GRAY);
+            g.fillRect(0, y, getWidth(), ROW_HEIGHT);
+        }
+        g.setColor(getForeground());
+        drawCentered(g, fm, "" + (row + 1), 0, y, LABEL_WIDTH, ROW_HEIGHT);
+        Row result = played ? ci.getResultRow(row) : null;
+        Row guess = played ? ci.getGameFieldRow(row) : null;
+        for (int i = 0; i < width; i++) {
+            Color color = result != null ? result.getColorAtPos(i)
+                    : Color.Null;
+            paintPeg(g, LABEL_WIDTH + i * RESULT_WIDTH, y, RESULT_WIDTH,
+                    color);
+            int peg = guess != null ? guess.getPeg(i) : activePegs[i];
+            paintPeg(g, guessX(i, guessWidth), y, guessWidth,
+                    Color.fromPeg(peg));
+        }
+    }
+
+    /**
+     * Paint a peg.
+     *
+     * @param g The graphics.
+     * @param x The left border of the cell.
+     * @param y The upper border of the cell.
+     * @param w The width of the cell.
+     * @param color The color of the peg.
+     */
+    private void paintPeg(Graphics2D g, int x, int y, int w, Color color) {
+        java.awt.Color c = new java.awt.Color(
+                (color != null ? color : Color.Null).getRGB());
+        g.setColor(c);
+        g.fillRoundRect(x + INSET, y + INSET, w - 2 * INSET,
+                ROW_HEIGHT - 2 * INSET, 8, 8);
+        g.setColor(c.darker());
+        g.drawRoundRect(x + INSET, y + INSET, w - 2 * INSET - 1,
+                ROW_HEIGHT - 2 * INSET - 1, 8, 8);
+    }
+
+    /**
+     * Draw a text centered in a cell.
+     *
+     * @param g The graphics.
+     * @param fm The metrics of the font.
+     * @param text The text.
+     * @param x The left border of the cell.
+     * @param y The upper border of the cell.
+     * @param w The width of the cell.
+     * @param h The height of the cell.
+     */
+    private static void drawCentered(Graphics2D g, FontMetrics fm,
+            String text, int x, int y, int w, int h) {
+        g.drawString(text, x + (w - fm.stringWidth(text)) / 2,
+                y + (h - fm.getHeight()) / 2 + fm.getAscent());
+    }
+
+    /**
+     * Map a click to a peg of the active row and tell the listener.
+     *
+     * @param x The x coordinate of the click.
+     * @param y The y coordinate of the click.
+     */
+    private void click(int x, int y) {
+        if (y < HEADER_HEIGHT || ci.getGameEnded() == true
+                || (y - HEADER_HEIGHT) / ROW_HEIGHT
+                != ci.getActiveRowNumber()) {
+            return;
+        }
+        int width = ci.getSettingWidth();
+        int guessWidth = guessWidth();
+        if (x >= LABEL_WIDTH && x < LABEL_WIDTH + width * RESULT_WIDTH) {
+            listener.resultClicked();
+        } else if (x >= guessX(0, guessWidth)
+                && x < guessX(width, guessWidth)) {
+            listener.guessPegClicked((x - guessX(0, guessWidth))
+                    / guessWidth);
+        }
+    }
+
+    /**
+     * Get the number of shown rows (the played rows and the active row).
+     *
+     * @return The number of rows.
+     */
+    private int getRowCount() {
+        int active = ci.getActiveRowNumber();
+        return ci.getGameEnded() == true ? Math.max(1, active) : active + 1;
+    }
+
+    /**
+     * Get the bounds of a row.
+     *
+     * @param row The row.
+     * @return The bounds.
+     */
+    private Rectangle rowBounds(int row) {
+        return new Rectangle(0, HEADER_HEIGHT + row * ROW_HEIGHT, getWidth(),
+                ROW_HEIGHT);
+    }
+
+    /**
+     * Get the width of a guess peg. Guess pegs share the space which is not
+     * needed by the row numbers and results.
+     *
+     * @return The width.
+     */
+    private int guessWidth() {
+        int width = ci.getSettingWidth();
+        return Math.max(GUESS_WIDTH,
+                (getWidth() - LABEL_WIDTH - width * RESULT_WIDTH) / width);
+    }
+
+    /**
+     * Get the left border of a guess peg.
+     *
+     * @param column The column.
+     * @param guessWidth The width of a guess peg.
+     * @return The x coordinate.
+     */
+    private int guessX(int column, int guessWidth) {
+        return LABEL_WIDTH + ci.getSettingWidth() * RESULT_WIDTH
+                + column * guessWidth;
+    }
+}
@@ -21,6 +21,7 @@ package gui;
 // Our packages.
 import common.*;
 import game.ControlInterface;
+import launcher.HeadlessLauncher;
 import ai.*;
 
 // Java packages.
@@ -31,11 +32,15 @@ import java.awt.Desktop;
 import java.awt.Dimension;
 import java.awt.Component;
 import java.awt.GridBagConstraints;
-import java.awt.GridBagLayout;
 import java.awt.GridLayout;
 import java.awt.Insets;
 import java.awt.AWTEvent;
 import java.awt.Toolkit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 
 /**
@@ -59,6 +64,11 @@ public class MainWindow extends javax.swing.JFrame {
      * AI was fast enouth).
      */
     private final int AI_GUESS_DELAY = 500;
+    /**
+     * The interval (in ms) in which the progress of an AI search is shown.
+     * Progress events in between are skipped.
+     */
+    private final int PROGRESS_INTERVAL = 100;
     private static ControlInterface ci = new ControlInterface();
     private JDialog aboutDialog;
     private JButton chosenColorButton;
@@ -74,12 +84,66 @@ public class MainWindow extends javax.swing.JFrame {
     private JScrollPane colorScrollPane;
     private JButton secretCodeButtons[];
     private JPanel secretCodePanel;
-    private JButton gameButtons[][];
-    private JPanel gamePanel;
+    private BoardPanel board;
     private JScrollPane gameScrollPane;
-    private JLabel gamePlaceholder;
     private JLabel gameState;
+    private JButton cancelSearchButton;
     private Timer aiTimer;
+    /**
+     * Shows the progress of the running AI search.
+     */
+    private Timer progressTimer;
+    /**
+     * The progress of the running AI search. Null if the AI is idle.
+     */
+    private ProgressChannel aiProgress;
+    /**
+     * The state text shown with the progress of the running AI search.
+     */
+    private String aiProgressText;
+    /**
+     * Creates the (daemon) threads of the AI.
+     */
+    private static final ThreadFactory AI_THREADS =
+            new DaemonThreadFactory("JAMM AI");
+    /**
+     * Runs the AI searches (AI guesses and hints) in the background,
+     * so that the GUI stays responsive while the AI is thinking.
+     */
+    private final ExecutorService aiExecutor =
+            Executors.newSingleThreadExecutor(AI_THREADS);
+    /**
+     * Runs the searches of the AI for the next guess (one for every
+     * plausible result of the shown guess) in parallel.
+     */
+    private final ExecutorService speculationExecutor =
+            Executors.newFixedThreadPool(
+                    Runtime.getRuntime().availableProcessors(), AI_THREADS);
+    /**
+     * The AI playing the running AI game. Null if there is none.
+     */
+    private PipelinedSolver aiSolver;
+    /**
+     * True if the AI has shown a guess which is not checked yet.
+     */
+    private boolean aiGuessShown = false;
+    /**
+     * Publishes the results of the AI searches on the Event Dispatch Thread.
+     */
+    private final Executor edtExecutor = new Executor() {
+        public void execute(Runnable r) {
+            SwingUtilities.invokeLater(r);
+        }
+    };
+    /**
+     * The running AI search (guess or hint). Null if the AI is idle.
+     */
+    private CompletableFuture<Row> aiSearch;
+    /**
+     * Searches the hint for the next guess while the player is thinking.
+     */
+    private final HintPrefetcher hintPrefetcher =
+            new HintPrefetcher(aiExecutor);
 
     /**
      * Creates new form MainWindow and initializes all components.
@@ -89,6 +153,17 @@ public class MainWindow extends javax.swing.JFrame {
         initKeyListener();
         initComponents();
         initNewGame();
+        // Measure the speed of the solving algorithms, so the AI chooses
+        // the best one which is fast enough on this computer. Not on the
+        // AI thread: hints and AI guesses must not wait for it.
+        Thread calibration = new DaemonThreadFactory("JAMM Calibration")
+                .newThread(new Runnable() {
+            public void run() {
+                SolverRegistry.shared().calibrate();
+            }
+        });
+        calibration.setPriority(Thread.MIN_PRIORITY);
+        calibration.start();
 
     }
 
@@ -115,9 +190,17 @@ public class MainWindow extends javax.swing.JFrame {
         chosenColorButton = new JButton();
         colorScrollPane = new JScrollPane();
         gameMenuBar = new JMenuBar();
-        gamePanel = new JPanel();
-        gamePlaceholder = new JLabel();
+        board = new BoardPanel(ci, new BoardPanel.BoardListener() {
+            public void guessPegClicked(int column) {
+                boardPegActionPerformed(column);
+            }
+
+            public void resultClicked() {
+                boardResultActionPerformed();
+            }
+        });
         gameState = new JLabel();
+        cancelSearchButton = new JButton("Cancel");
         gameModeComboBox = new JComboBox<String>();
 
         // ### About Dialog. ###################################################
@@ -187,7 +270,7 @@ public class MainWindow extends javax.swing.JFrame {
 
         JLabel colorsLabel = new JLabel("Colors:");
 
-        colorsSlider.setMaximum(Color.values().length -1);
+        colorsSlider.setMaximum(Color.PEG_COLORS);
         colorsSlider.setMinimum(1);
         colorsSlider.setMinorTickSpacing(1);
         colorsSlider.setMajorTickSpacing(2);
@@ -197,7 +280,7 @@ public class MainWindow extends javax.swing.JFrame {
 
         JLabel gameWidthLabel = new JLabel("Game Width:");
 
-        gameWidthSlider.setMaximum(8);
+        gameWidthSlider.setMaximum(Codes.MAX_WIDTH);
         gameWidthSlider.setMinimum(1);
         gameWidthSlider.setMajorTickSpacing(1);
         gameWidthSlider.setPaintLabels(true);
@@ -345,18 +428,7 @@ public class MainWindow extends javax.swing.JFrame {
         getContentPane().add(resultLabel, gridBagConstraints);
 
         gameScrollPane.setPreferredSize(new Dimension(400, 400));
-        gamePanel.addComponentListener(
-                new ComponentListener() {
-                    public void componentResized(ComponentEvent e) {
-                        // Scroll down if gamePanel was resized.
-                        gameScrollPane.getVerticalScrollBar().setValue(
-                            gameScrollPane.getVerticalScrollBar().getMaximum());
-                    }
-
-                    public void componentMoved(ComponentEvent e) {}
-                    public void componentShown(ComponentEvent e) {}
-                    public void componentHidden(ComponentEvent e) {}
-                });
+        gameScrollPane.setViewportView(board);
         gridBagConstraints = new java.awt.GridBagConstraints();
         gridBagConstraints.gridx = 0;
         gridBagConstraints.gridy = 3;
@@ -443,11 +515,34 @@ public class MainWindow extends javax.swing.JFrame {
         gridBagConstraints = new java.awt.GridBagConstraints();
         gridBagConstraints.gridx = 0;
         gridBagConstraints.gridy = 6;
-        gridBagConstraints.gridwidth = 2;
         gridBagConstraints.insets = new Insets(5, 5, 5, 5);
         gridBagConstraints.fill = GridBagConstraints.BOTH;
         getContentPane().add(gameState, gridBagConstraints);
 
+        // Cancel the running AI search (enabled while the AI is thinking).
+        cancelSearchButton.setEnabled(false);
+        // Remove binding to space key.
+        cancelSearchButton.getInputMap().put(
+                KeyStroke.getKeyStroke("SPACE"), "none" );
+        cancelSearchButton.addActionListener(
+                new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                cancelSearchButtonActionPerformed(evt);
+            }
+        });
+        gridBagConstraints = new java.awt.GridBagConstraints();
+        gridBagConstraints.gridx = 1;
+        gridBagConstraints.gridy = 6;
+        gridBagConstraints.insets = new Insets(5, 10, 5, 10);
+        gridBagConstraints.fill = GridBagConstraints.BOTH;
+        getContentPane().add(cancelSearchButton, gridBagConstraints);
+        progressTimer = new Timer(PROGRESS_INTERVAL,
+                new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                showProgress();
+            }
+        });
+
 
         // ### Main Window Menus (Taken from designer).
         JMenu gameMenu = new JMenu("Game");
@@ -589,10 +684,17 @@ public class MainWindow extends javax.swing.JFrame {
     private void initNewGame() {
         this.requestFocus();
 
-        // Stop AI guess timer.
+        // Stop AI guess timer and abort a running search.
         if (aiTimer != null) {
             aiTimer.stop();
         }
+        cancelAISearch();
+        hintPrefetcher.discard();
+        if (aiSolver != null) {
+            aiSolver.cancel();
+            aiSolver = null;
+        }
+        aiGuessShown = false;
 
         // Set state.
         if (ci.getGameEnded() == false &&
@@ -610,6 +712,11 @@ public class MainWindow extends javax.swing.JFrame {
         initGameTable();
         initSecretCode();
         initColorTable();
+
+        // Search the first hint while the player is thinking.
+        if (ci.getGameEnded() == false && ci.getSettingAiMode() == false) {
+            hintPrefetcher.prefetch(ci);
+        }
     }
 
     /**
@@ -617,7 +724,6 @@ public class MainWindow extends javax.swing.JFrame {
      * The available colors depends on the color quantity setting.
      */
     private void initColorTable() {
-        Color[] all = Color.values();
         colorButtons = new JButton[ci.getSettingColQuant()];
         JPanel buttons = new JPanel();
         buttons.setLayout(new BoxLayout(buttons, BoxLayout.Y_AXIS));
@@ -641,7 +747,8 @@ public class MainWindow extends javax.swing.JFrame {
                 }
             });
             // Set color.
-            java.awt.Color color = new java.awt.Color(all[i].getRGB());
+            java.awt.Color color =
+                    new java.awt.Color(Color.fromPeg(i).getRGB());
             colorButtons[i].setBackground(color);
             // Set size.
             colorButtons[i].setMinimumSize(new Dimension(100, 28));
@@ -659,61 +766,17 @@ public class MainWindow extends javax.swing.JFrame {
     /**
      * Initialize the game table (game field).
      *
-     * Creates a panel in table layout with result and guess pins.
-     * If a game was loaded the table will be filled with the
-     * loaded game. Otherwise a new game with one empty Row will
-     * be initialized.
+     * The board shows the rows of the game engine, so a loaded game is
+     * shown as it is. Otherwise a new game with one empty Row will
+     * be shown.
      *
-     * @see #showLoadedGameTable()
+     * @see BoardPanel
      */
     private void initGameTable() {
-        int width = ci.getSettingWidth();
-        GridBagLayout layout = new GridBagLayout();
-        GridBagConstraints gbc = new GridBagConstraints();
-        gamePanel.removeAll();
-        gameButtons = new JButton[0][0];
-        gamePanel.setLayout(layout);
-
-        // Add key usage labels.
-        gbc.gridy = 0;
-        gbc.weightx = 0.9;
-        gbc.fill = GridBagConstraints.HORIZONTAL;
-        for (int i = 0; i < width; i++) {
-            JLabel label = new JLabel("" + (i + 1), SwingConstants.CENTER);
-            gbc.gridx = width + i + 1;
-            gamePanel.add(label, gbc);
-
-        }
-
-        // Add empty row.
-        addRow();
-        if (ci.getLoaded() == true) {
-            // Show the loaded game.
-            showLoadedGameTable();
-        }
-        gameScrollPane.setViewportView(gamePanel);
+        board.newGame();
         gameScrollPane.revalidate();
     }
 
-    /**
-     * Draw the game table by using loaded game data.
-     */
-    private void showLoadedGameTable() {
-        int i = 0;
-        int arn = ci.getActiveRowNumber();
-        while (i < arn) {
-            // Add result.
-            showResultRow(i);
-            // Add guess.
-            showGameRow(i);
-            if (ci.getGameEnded() == false || i < arn - 1) {
-                // Add new row at the end if game not ended.
-                addRow();
-            }
-            i++;
-        }
-    }
-
     /**
      * Initialize the secret code row.
      * This function only initializes the buttons and reveals the code if the
@@ -888,13 +951,13 @@ public class MainWindow extends javax.swing.JFrame {
             return;
         }
         try {
-            Debug.dbgPrint(fileChooser.getSelectedFile().getAbsolutePath());
+            Log.debug("Load from {}", fileChooser.getSelectedFile());
             // Load game.
             ci.load(
                     fileChooser.getSelectedFile().getAbsolutePath());
         }
         catch (Exception e) {
-            Debug.errorPrint(e.toString());
+            Log.error("{}", e);
             return;
         }
         // Init loaded game.
@@ -919,12 +982,12 @@ public class MainWindow extends javax.swing.JFrame {
             if (file.endsWith("." + ci.FILE_EXTENSION) == false) {
                 file += "." + ci.FILE_EXTENSION;
             }
-            Debug.dbgPrint("Save to " + file);
+            Log.debug("Save to {}", file);
             // Save game.
             ci.save(file);
         }
         catch (Exception e) {
-            Debug.errorPrint(e.toString());
+            Log.error("{}", e);
             return;
         }
     }
@@ -939,16 +1002,7 @@ public class MainWindow extends javax.swing.JFrame {
      * @return true if all fields in the active Row are set. False otherwise.
      */
     private boolean rowIsSet(){
-        int width = ci.getSettingWidth();
-        for (int i = width; i < width * 2; i++){
-            JButton button = (JButton)
-                    gameButtons[ci.getActiveRowNumber()][i];
-            // If empty (gray) cell was found return false
-            if (button.getBackground().getRGB() == Color.Null.getRGB()) {
-                return false;
-            }
-        }
-        return true;
+        return board.isRowSet();
     }
 
     /**
@@ -966,19 +1020,10 @@ public class MainWindow extends javax.swing.JFrame {
     }
 
     /**
-     * Cycles through the active game Row (GUI) and sets it in the game engine.
-     *
-     * @see #translateColor(java.awt.Color)
+     * Sets the active game Row (GUI) in the game engine.
      */
     private void writeToGameField() {
-        int width = ci.getSettingWidth();
-        Color[] colors = new Color[width];
-        for (int i = width; i < width * 2; i++) {
-            colors[-width+i] = translateColor(
-                    gameButtons[ci.getActiveRowNumber()]
-                    [i].getBackground());
-        }
-        ci.writeToGameField(colors);
+        ci.writeToGameField(board.getPegs());
     }
 
     /**
@@ -1053,51 +1098,19 @@ public class MainWindow extends javax.swing.JFrame {
         }
     }
 
-    /**
-     * Show the guess result of a Row.
-     * (Gets the guess result from the game engine.)
-     *
-     * @param row The row in which the result is displayed.
-     */
-    private void showResultRow(int row) {
-        Color[] result = ci.getResultRow(row).getColors();
-        for (int i = 0; i < ci.getSettingWidth(); i++) {
-            JButton button = (JButton) gameButtons[row][i];
-            java.awt.Color c = new java.awt.Color(result[i].getRGB());
-            if (c.getRGB() == Color.Null.getRGB()) {
-                // Use color "null" as the default color.
-                c = null;
-            }
-            button.setBackground(c);
-        }
-    }
-
-    /**
-     * Show the guess row.
-     * Function is used to display a loaded or AI game.
-     * (Gets the guess row from the game engine.)
-     * @param row The row in which the guess is displayed.
-     */
-    private void showGameRow(int row) {
-        int width = ci.getSettingWidth();
-        Color[] colors = ci.getGameFieldRow(row).getColors();
-        for (int i = width; i < width * 2; i++) {
-            gameButtons[row][i].setBackground(
-                    new java.awt.Color(colors[i-width].getRGB()));
-        }
-    }
-
     /**
      * Parse the return state of the ControlInterface.turn() function.
      * For state == 1 show "you won" message; for state == -1 show
-     * "you lose" message. Otherwise add a new Row.
+     * "you lose" message. Otherwise a new Row is shown.
      *
      * @param state A state integer like the ControlInterface.turn() function
      * returns it.
      * @see game.ControlInterface
-     * @see #addRow()
+     * @see BoardPanel#refresh()
      */
     private void parseGameState(int state) {
+        // Show the result (and the new Row).
+        board.refresh();
         if (state == 1) {
             revealSecretCode();
             this.setEnabled(false);
@@ -1127,89 +1140,12 @@ public class MainWindow extends javax.swing.JFrame {
             }
             this.setEnabled(true);
         } else {
-            // Only add a new row if the game continues.
-            addRow();
             if (ci.getSettingAiMode() == false) {
                 gameState.setText("Choose a color and place it.");
             }
         }
     }
 
-    /**
-     * Add a new Row to the game table.
-     */
-    private void addRow() {
-        int width = ci.getSettingWidth();
-        int i;
-        GridBagConstraints gbc = new GridBagConstraints();
-        gbc.anchor = GridBagConstraints.CENTER;
-        gbc.fill = GridBagConstraints.HORIZONTAL;
-        JLabel label;
-
-        // Add new row.
-        JButton[][] temp = new JButton[gameButtons.length + 1][width * 2];
-        // Get ref. from old game table.
-        System.arraycopy(gameButtons, 0, temp, 0, gameButtons.length);
-        i = gameButtons.length;
-        gameButtons = temp;
-
-        label = new JLabel("" + (i + 1), SwingConstants.CENTER);
-        gbc.gridx = 0;
-        gbc.gridy = i + 1;
-        gbc.weightx = 0.05;
-        gamePanel.add(label, gbc);
-
-        // Results.
-        gbc.weightx = 0.1;
-        for (int j = 0; j < width; j++) {
-            gameButtons[i][j] = new JButton();
-            gameButtons[i][j].getInputMap().put(
-                    KeyStroke.getKeyStroke("SPACE"), "none" );
-            gameButtons[i][j].setPreferredSize(new Dimension(20, 28));
-            gameButtons[i][j].addActionListener(
-                    new java.awt.event.ActionListener() {
-                public void actionPerformed(java.awt.event.ActionEvent evt) {
-                    gameButtonResultActionPerformed(evt);
-                }
-            });
-            gbc.gridx = j + 1; // +1 because of guess nr. label.
-            gbc.gridy = i + 1; // +1 because of key usage label.
-            gamePanel.add(gameButtons[i][j], gbc);
-        }
-        // Guesses.
-        gbc.weightx = 0.9;
-        for (int j = width; j < width * 2; j++) {
-            gameButtons[i][j] = new JButton();
-            // Add ToolTipText.
-            // This tag is used to find the buttons position in the array.
-            // By this effecitve way the button knows its own position. with out
-            // crawling through the button array.
-            gameButtons[i][j].setToolTipText(
-                    "Button in row: " + (i + 1) +
-                    ", column: " + ((j - width) + 1));
-            gameButtons[i][j].getInputMap().put(
-                    KeyStroke.getKeyStroke("SPACE"), "none" );
-            gameButtons[i][j].setPreferredSize(new Dimension(35, 28));
-            gameButtons[i][j].addActionListener(
-                    new java.awt.event.ActionListener() {
-                public void actionPerformed(java.awt.event.ActionEvent evt) {
-                    gameButtonPinActionPerformed(evt);
-                }
-            });
-            gbc.gridx = j + 1;
-            gbc.gridy = i + 1;
-            gamePanel.add(gameButtons[i][j], gbc);
-        }
-
-        // Placeholder dummy.
-        gbc.gridy = i + 2;
-        gbc.weightx = 0.5;
-        gbc.weighty = 1.0;
-        gamePanel.remove(gamePlaceholder);
-        gamePanel.add(gamePlaceholder, gbc);
-        gamePanel.revalidate();
-    }
-
     /**
      * Parse the typed key.
      * Choose color for keys: a, b, c, etc.
@@ -1230,9 +1166,7 @@ public class MainWindow extends javax.swing.JFrame {
             else if (key-49 >= 0 &&
                     key-49 < ci.getSettingWidth()) {
                 if (ci.getSettingAiMode() == false) {
-                    gameButtons[ci.getActiveRowNumber()]
-                            [(key - 49) +
-                            ci.getSettingWidth()].doClick();
+                    boardPegActionPerformed(key - 49);
                 } else {
                     secretCodeButtons[key - 49].doClick();
                 }
@@ -1240,8 +1174,7 @@ public class MainWindow extends javax.swing.JFrame {
             // If it is the check result key (SPACE).
             else if (key == 32) {
                 if (ci.getSettingAiMode() == false) {
-                    gameButtons[ci.getActiveRowNumber()]
-                            [0].doClick();
+                    boardResultActionPerformed();
                 }
             }
         }
@@ -1249,34 +1182,54 @@ public class MainWindow extends javax.swing.JFrame {
 
     /**
      * Run an AI game until the game is solved.
-     * While the AI is guessing the GUI is locked.
-     * Every "AI_GUESS_DELAY"ms the timer makes a guess. This provides the GUI
-     * enouth time between two guesses to repaint.
+     * A guess of the AI is shown as soon as it is found. It is checked
+     * "AI_GUESS_DELAY"ms later by the timer. This provides the GUI
+     * enouth time between two guesses to repaint. Meanwhile the AI already
+     * searches the next guess for every plausible result of the shown guess,
+     * so the next guess is usually ready when the result is known.
      * (In most cases the AI can guess very fast. Only if the game width is
      * large and the color quantity is high it will take
      * longer in later guesses.)
      * If a guess creation takes more than "AI_GUESS_DELAY"ms the timer
-     * waits until the guess is computed.
+     * waits until the guess is computed. The GUI stays responsive all the
+     * time, a new game aborts the search.
      *
      * @see #AI_GUESS_DELAY
+     * @see ai.PipelinedSolver
+     * @see ai.SolverRegistry#choose(int, int, boolean)
+     * @see #showAIGuess(java.util.concurrent.CompletableFuture,
+     * common.Row, java.lang.Throwable)
      */
     private void doAIGame() {
-        final GeneticSolver gs = new GeneticSolver(ci);
-        gs.initResults();
+        SolverProvider provider = SolverRegistry.shared().choose(
+                ci.getSettingWidth(), ci.getSettingColQuant(),
+                ci.getSettingDoubleCol());
+        Log.debug("AI game with solving algorithm {}", provider.getName());
+        final PipelinedSolver solver = new PipelinedSolver(ci,
+                provider::create, speculationExecutor);
+        aiSolver = solver;
         gameState.setText("AI is guessing. Please wait...");
-        setEnabled(false);
 
         ActionListener taskPerformer = new ActionListener() {
             public void actionPerformed(ActionEvent evt) {
-                // Do a guess every AI_GUESS_DELAY ms.
-                if (ci.getGameEnded() == false) {
-                    int state = gs.makeGuess();
-                    showGameRow(ci.getActiveRowNumber()-1);
-                    showResultRow(ci.getActiveRowNumber()-1);
-                    parseGameState(state);
-                } else {
+                if (aiGuessShown == true) {
+                    // Check the shown guess.
+                    aiGuessShown = false;
+                    parseGameState(ci.turn());
+                }
+                // Start the next guess if the AI is idle.
+                if (ci.getGameEnded() == true) {
                     aiTimer.stop();
-                    setEnabled(true);
+                    solver.cancel();
+                } else if (aiSearch == null && aiGuessShown == false) {
+                    ProgressChannel progress = new ProgressChannel();
+                    final CompletableFuture<Row> search =
+                            solver.generateGuessAsync(aiExecutor, progress);
+                    aiSearch = search;
+                    startProgress("AI is guessing.", progress);
+                    search.whenCompleteAsync(
+                            (guess, error) -> showAIGuess(
+                                    search, guess, error), edtExecutor);
                 }
             }
         };
@@ -1286,70 +1239,96 @@ public class MainWindow extends javax.swing.JFrame {
     }
 
     /**
-     * Subfunction to parse the arguments from the command line.
+     * Show a guess the AI has found in the background and let the AI
+     * think ahead. The guess is checked by the next timer event.
+     * (Called on the Event Dispatch Thread.)
+     * Results of aborted searches are ignored.
      *
-     * @param args Command line arguments from the main function.
-     * @see #main(java.lang.String[])
+     * @param search The search which found the guess.
+     * @param guess The guess to play. Null if the search failed.
+     * @param error The error of the search. Null if the search succeeded.
      */
-    private static void parseArgs(String args[]) {
-        // -d = debug ?
-        for (int i = 0; i < args.length; i++) {
-            if (args[i].equals("-d") == true) {
-                // Arguments contain "-d" Debung mode on.
-                System.out.println("Debug mode on");
-                Debug.setDebug(true);
-            }
+    private void showAIGuess(CompletableFuture<Row> search, Row guess,
+            Throwable error) {
+        if (search != aiSearch) {
+            // Aborted (e.g. by a new game).
+            return;
         }
-        // -b = benchmark?
-        for (int i = 0; i < args.length; i++) {
-            if (args[i].equals("-b") == true) {
-                try {
-                    if ((args.length - 1 - i) >= 5) {
-                        // There are at least 5 following args for -b.
-                        int gameRepetitions = Integer.parseInt(args[i+1]);
-                        int maxTries = Integer.parseInt(args[i+2]);
-                        int gameWidth = Integer.parseInt(args[i+3]);
-                        int colorQuant = Integer.parseInt(args[i+4]);
-                        boolean doubleColors = Boolean.parseBoolean(args[i+5]);
-
-                        // Check input.
-                        if (gameRepetitions < 1) {
-                            throw new Exception("There has to be at " +
-                                    "least one repetition");
-                        }
-                        if (maxTries < 1) {
-                            throw new Exception("There has to be at " +
-                                    "least one try to solve a game");
-                        }
-                        if (gameWidth > colorQuant && doubleColors == false) {
-                            throw new Exception("Too few colors or too wide " +
-                                    "game width. Use double colors or " +
-                                    "change color quantity / game width " +
-                                    "settings.");
-                        }
-                        // Set settings.
-                        ci.setSettingMaxTries(maxTries);
-                        ci.setSettingWidth(gameWidth);
-                        ci.setSettingColQuant(colorQuant);
-                        ci.setSettingDoubleCol(doubleColors);
-                        // Start banchmark.
-                        System.out.println("Starting benchmark...");
-                        GeneticSolver solve = new GeneticSolver(ci);
-                        solve.geneticSolverTest(gameRepetitions);
-                        System.exit(0);
-                    } else {
-                        throw new Exception("Not enough benchmark arguemtns");
-                    }
+        aiSearch = null;
+        stopProgress();
+        if (error != null) {
+            Log.error("{}", error);
+            aiTimer.stop();
+            gameState.setText("AI: Something went wrong. Start a new game.");
+            return;
+        }
+        aiSolver.speculate(guess);
+        ci.writeToGameField(guess.getPegs());
+        board.setPegs(guess.getPegs());
+        aiGuessShown = true;
+    }
 
-                } catch (Exception e) {
-                    Debug.errorPrint("Benchmark arguments error");
-                    System.out.println(""+e.toString());
-                    System.exit(1);
-                }
-            }
+    /**
+     * Abort the running AI search (guess or hint) if there is one.
+     * The search stops in the background, its result will be ignored.
+     */
+    private void cancelAISearch() {
+        if (aiSearch != null) {
+            aiSearch.cancel(false);
+            aiSearch = null;
         }
+        stopProgress();
+    }
+
+    /**
+     * Show the progress of an AI search until stopProgress() is called.
+     * The newest progress is shown every "PROGRESS_INTERVAL"ms, so the
+     * search never waits for the GUI.
+     *
+     * @param text The state text (e.g. "AI is guessing.").
+     * @param progress The progress of the search.
+     * @see #PROGRESS_INTERVAL
+     */
+    private void startProgress(String text, ProgressChannel progress) {
+        aiProgressText = text;
+        aiProgress = progress;
+        gameState.setText(text + " Please wait...");
+        cancelSearchButton.setEnabled(true);
+        progressTimer.restart();
     }
 
+    /**
+     * Stop showing the progress of an AI search.
+     */
+    private void stopProgress() {
+        progressTimer.stop();
+        aiProgress = null;
+        cancelSearchButton.setEnabled(false);
+    }
+
+    /**
+     * Show the newest progress of the running AI search.
+     * (Called by the progress timer.)
+     */
+    private void showProgress() {
+        SearchProgress progress = aiProgress != null ? aiProgress.poll()
+                : null;
+        if (progress != null) {
+            gameState.setText(aiProgressText + " (" + progress + ")");
+        }
+    }
+
+    /**
+     * Subfunction to parse the arguments from the command line.
+     *
+     * @param args Command line arguments from the main function.
+     * @see #main(java.lang.String[])
+     * @see HeadlessLauncher#parseArgs(String[])
+     */
+    private static void parseArgs(String args[]) {
+        // Benchmarks, evaluations and the server do not need the GUI.
+        HeadlessLauncher.parseArgs(args);
+    }
     // </editor-fold>
 
     // <editor-fold defaultstate="collapsed" desc="Menu actions (by click)">
@@ -1377,24 +1356,55 @@ public class MainWindow extends javax.swing.JFrame {
     /**
      * Fill out the current game table Row with a guess.
      * The logic for a valid guess is managed in the AI.
+     * The guess is searched in the background and set as soon as it was
+     * found. Usually it was already searched while the player was thinking.
      *
      * @param evt The triggered event. Not used.
-     * @see ai.GeneticSolver
+     * @see ai.HintPrefetcher
+     * @see #showHint(java.util.concurrent.CompletableFuture, common.Row,
+     * java.lang.Throwable)
      */
     private void showHintMenuItemActionPerformed(
             java.awt.event.ActionEvent evt) {
-        if (ci.getGameEnded() == false && ci.getSettingAiMode() == false) {
-            int i = ci.getSettingWidth();
-            GeneticSolver hint = new GeneticSolver(ci);
-            hint.initResults();
-            Row r = hint.generateGuess();
-            for (Color color : r.getColors()) {
-                gameButtons[ci.getActiveRowNumber()]
-                        [i++].setBackground(new java.awt.Color(color.getRGB()));
-            }
+        if (ci.getGameEnded() == false && ci.getSettingAiMode() == false
+                && aiSearch == null) {
+            final CompletableFuture<Row> search =
+                    hintPrefetcher.getHint(ci);
+            aiSearch = search;
+            startProgress("Searching a hint.", hintPrefetcher.getProgress());
+            search.whenCompleteAsync(
+                    (hint, error) -> showHint(search, hint, error),
+                    edtExecutor);
         }
     }
 
+    /**
+     * Fill out the current game table Row with a hint the AI has found
+     * in the background. (Called on the Event Dispatch Thread.)
+     * Results of aborted searches are ignored.
+     *
+     * @param search The search which found the hint.
+     * @param hint The hint to show. Null if the search failed.
+     * @param error The error of the search. Null if the search succeeded.
+     */
+    private void showHint(CompletableFuture<Row> search, Row hint,
+            Throwable error) {
+        if (search != aiSearch) {
+            // Aborted (e.g. by a new game or a new guess).
+            return;
+        }
+        aiSearch = null;
+        stopProgress();
+        if (error != null) {
+            Log.error("{}", error);
+            gameState.setText("No hint found.");
+            return;
+        }
+        board.setPegs(hint.getPegs());
+        gameState.setText("Click on one result button (or press SPACE) " +
+                "to check your guess.");
+    }
+
     /**
      * Checks if the guess is valide or makes no sense in context
      * of previous guesses and results.
@@ -1406,14 +1416,7 @@ public class MainWindow extends javax.swing.JFrame {
             java.awt.event.ActionEvent evt) {
         if (ci.getGameEnded() == false && ci.getSettingAiMode() == false) {
             if (rowIsSet() == true) {
-                Color[] c = new Color[ci.getSettingWidth()];
-                for (int i = 0; i < c.length; i++) {
-                    c[i] = translateColor(
-                            gameButtons[ci.getActiveRowNumber()]
-                            [ci.getSettingWidth()
-                            + i].getBackground());
-                }
-                Row r = new Row(c);
+                Row r = new Row(board.getPegs());
                 if (Clues.isFeasible(ci, r) == true) {
                     JOptionPane.showMessageDialog(null, "Good guess!", "Info:",
                             JOptionPane.INFORMATION_MESSAGE);
@@ -1438,14 +1441,10 @@ public class MainWindow extends javax.swing.JFrame {
      */
     private void setLastGuessMenuItemMenuItemActionPerformed(
             java.awt.event.ActionEvent evt) {
-        int i = ci.getSettingWidth();
         if (ci.getGameEnded() == false && ci.getSettingAiMode() == false
                 && ci.getActiveRowNumber() > 0) {
-            for (Color c : ci.getGameFieldRow(
-                    ci.getActiveRowNumber()-1).getColors()) {
-                gameButtons[ci.getActiveRowNumber()][i++].setBackground(
-                        new java.awt.Color(c.getRGB()));
-            }
+            board.setPegs(ci.getGameFieldRow(
+                    ci.getActiveRowNumber()-1).getPegs());
         }
     }
 
@@ -1480,19 +1479,19 @@ public class MainWindow extends javax.swing.JFrame {
                 if (Desktop.isDesktopSupported()) {
                     Desktop.getDesktop().open(f);
                 } else {
-                    Debug.errorPrint("Awt Desktop is not supported!");
+                    Log.error("Awt Desktop is not supported!");
                     JOptionPane.showMessageDialog(null,
                             "Awt Desktop is not supported!", "Error:",
                             JOptionPane.ERROR_MESSAGE);
                 }
             } else {
-                Debug.errorPrint(tempPath + " dosen't exist!");
+                Log.error("{} dosen't exist!", tempPath);
                 JOptionPane.showMessageDialog(null,
                         tempPath + " dosen't exist!", "Error:",
                         JOptionPane.ERROR_MESSAGE);
             }
         } catch (Exception ex) {
-            Debug.errorPrint(ex.toString());
+            Log.error("{}", ex);
             JOptionPane.showMessageDialog(null,
                         "Couldn't open " + tempPath, "Error:",
                         JOptionPane.ERROR_MESSAGE);
@@ -1523,7 +1522,8 @@ public class MainWindow extends javax.swing.JFrame {
     private void secretCodeButtonsActionPerformed(
             java.awt.event.ActionEvent evt) {
         if (ci.getSettingAiMode() &&
-                ci.getGameEnded() == false) {
+                ci.getGameEnded() == false &&
+                (aiTimer == null || aiTimer.isRunning() == false)) {
             if (ci.getSettingDoubleCol() == false) {
                 // Check for double colors.
                 for (int i = 0; i< secretCodeButtons.length; i++){
@@ -1554,72 +1554,80 @@ public class MainWindow extends javax.swing.JFrame {
     }
 
     /**
-     * Check the active game Row and display the result.
+     * Cancel the running AI search. An AI game is stopped, it can not be
+     * continued.
      *
      * @param evt The triggered event. Not used.
+     */
+    private void cancelSearchButtonActionPerformed(
+            java.awt.event.ActionEvent evt) {
+        if (aiSearch == null) {
+            return;
+        }
+        cancelAISearch();
+        if (ci.getSettingAiMode() == true) {
+            aiTimer.stop();
+            if (aiSolver != null) {
+                aiSolver.cancel();
+            }
+            gameState.setText("AI stopped. Start a new game.");
+        } else {
+            gameState.setText("Hint search cancelled.");
+        }
+    }
+
+    /**
+     * Check the active game Row and display the result.
+     *
      * @see #writeToGameField()
      * @see #parseGameState(int)
-     * @see #showResultRow(int)
      */
-    private void gameButtonResultActionPerformed(
-            java.awt.event.ActionEvent evt) {
+    private void boardResultActionPerformed() {
         if (ci.getSettingAiMode() == false &&
                 ci.getGameEnded() == false &&
                 rowIsSet() == true) {
             // Check for guess result.
+            // A hint for this row is not needed anymore.
+            cancelAISearch();
             // Write the colors (form the GUI) to the real game.
             writeToGameField();
-            // Check colors.
+            // Check colors and show the result in the GUI.
             parseGameState(ci.turn());
-            // Show the guess result in the GUI.
-            showResultRow(ci.getActiveRowNumber() - 1);
+            // Search the next hint while the player is thinking.
+            if (ci.getGameEnded() == false) {
+                hintPrefetcher.prefetch(ci);
+            }
         }
     }
 
     /**
-     * Place the chosen color to the game table pin.
+     * Place the chosen color to a pin of the active game table Row.
      *
-     * @param evt The triggered event.
-     * The souce object color will be set to the chosen color.
+     * @param column The column of the pin.
      */
-    private void gameButtonPinActionPerformed(
-            java.awt.event.ActionEvent evt) {
-        if (ci.getSettingAiMode() == false) {
-            JButton button = (JButton) evt.getSource();
-            // Get buttons array pos. by parsing the ToolTipText.
-            int row = Integer.parseInt(button.getToolTipText().substring(
-                    button.getToolTipText().indexOf(": ") + 2,
-                    button.getToolTipText().indexOf(","))) - 1;
-            int col = Integer.parseInt(button.getToolTipText().substring(
-                    button.getToolTipText().lastIndexOf(": ")+2)) - 1;
-            int width = ci.getSettingWidth();
-
-            if (row == ci.getActiveRowNumber()) {
-                if (ci.getSettingDoubleCol() == false) {
-                    // Check for double colors.
-                    for (int i = width; i < width * 2; i++) {
-                        java.awt.Color c = gameButtons[row][i].getBackground();
-                        if (c.getRGB() != Color.Null.getRGB() &&
-                                i != col + width &&
-                                c.getRGB() ==
-                                chosenColorButton.getBackground().getRGB()) {
-                            gameState.setText(
-                            "Double colors are not allowed.");
-                            return;
-                        }
+    private void boardPegActionPerformed(int column) {
+        if (ci.getSettingAiMode() == false && ci.getGameEnded() == false) {
+            int peg = Color.toPeg(
+                    translateColor(chosenColorButton.getBackground()));
+            if (ci.getSettingDoubleCol() == false) {
+                // Check for double colors.
+                for (int i = 0; i < ci.getSettingWidth(); i++) {
+                    if (i != column && board.getPeg(i) == peg) {
+                        gameState.setText(
+                        "Double colors are not allowed.");
+                        return;
                     }
                 }
-                button.setBackground(chosenColorButton.getBackground());
-                if (ci.getGameEnded() == false &&
-                        rowIsSet() == true) {
-                    gameState.setText(
-                            "Click on one result button (or press SPACE) " +
-                            "to check your guess.");
-                } else {
-                    gameState.setText(
-                            "Choose a color (Click or key a, b, c,..) " +
-                            "and place it (Click or key 1, 2, 3,...).");
-                }
+            }
+            board.setPeg(column, peg);
+            if (rowIsSet() == true) {
+                gameState.setText(
+                        "Click on one result button (or press SPACE) " +
+                        "to check your guess.");
+            } else {
+                gameState.setText(
+                        "Choose a color (Click or key a, b, c,..) " +
+                        "and place it (Click or key 1, 2, 3,...).");
             }
         }
     }
@@ -1632,9 +1640,8 @@ public class MainWindow extends javax.swing.JFrame {
      *
      * @param args The command line arguments. <br />
      * -d = Show debug messages.<br />
-     * -b &lt;repetitions&gt; &lt;max tries&gt; &lt;game width&gt;
-     * &lt;color quantity&gt; &lt;double colors&gt; = AI benchmark<br />
-     * Example: -b 100 10 4 6 True
+     * -b, -e, -m and -s run without GUI
+     * (see launcher.HeadlessLauncher#parseArgs(String[])).
      */
     public static void main(String args[]) {
 
@@ -1649,7 +1656,7 @@ public class MainWindow extends javax.swing.JFrame {
                 }
             }
         } catch (Exception e) {
-            Debug.errorPrint("Nimbus Look & Feel not found. Fallback.");
+            Log.error("Nimbus Look & Feel not found. Fallback.");
         }
 
         java.awt.EventQueue.invokeLater(new Runnable() {
@@ -0,0 +1,329 @@
+/*
+ * Copyright 2011 Ikarus, René Kübler, Andreas J.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package launcher;
+
+import ai.*;
+import common.*;
+import game.ControlInterface;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import server.GameServer;
+
+/**
+ * The entry point for benchmarks, evaluations and the server.
+ * It only uses the packages game, ai, common and server, so Swing and AWT
+ * are never loaded. This works without a display and starts faster than
+ * gui.MainWindow, which delegates these arguments to this class.
+ */
+public final class HeadlessLauncher {
+
+    /**
+     * No instances. This class only has static functions.
+     */
+    private HeadlessLauncher() {
+    }
+
+    /**
+     * Run a benchmark, an evaluation or the server.
+     *
+     * @param args The command line arguments (see parseArgs()).
+     * Without -b, -e, -m (write), -s or -t the usage is shown.
+     */
+    public static void main(String args[]) {
+        parseArgs(args);
+        System.out.println("Usage: java -jar JAMM-headless.jar [-d] "
+                + "[-m <file> [<game width> <color quantity>]]\n"
+                + "  -b <repetitions> <max tries> <game width> "
+                + "<color quantity> <double colors>\n"
+                + "  -e <max tries> <game width> <color quantity> "
+                + "<double colors> [auto|<solver>]\n"
+                + "  -t <trials> <games> <game width> <color quantity> "
+                + "<double colors> [<max. average guesses>]\n"
+                + "  -s [<port>]");
+        System.exit(1);
+    }
+
+    /**
+     * Parse the arguments of the headless modes. A benchmark, an evaluation,
+     * a tuning or writing a score matrix end the program when done, the
+     * server runs until the process is killed.
+     *
+     * @param args The command line arguments. <br />
+     * -d = Show debug messages.<br />
+     * -b &lt;repetitions&gt; &lt;max tries&gt; &lt;game width&gt;
+     * &lt;color quantity&gt; &lt;double colors&gt; = AI benchmark<br />
+     * Example: -b 100 10 4 6 True<br />
+     * -e &lt;max tries&gt; &lt;game width&gt; &lt;color quantity&gt;
+     * &lt;double colors&gt; [&lt;solver&gt;] = Evaluate a solver against
+     * all secret codes. The solver is a name of SolverRegistry (std.
+     * genetic) or "auto" to let the registry choose.<br />
+     * -t &lt;trials&gt; &lt;games&gt; &lt;game width&gt; &lt;color
+     * quantity&gt; &lt;double colors&gt; [&lt;max. average guesses&gt;] =
+     * Tune the parameters of the genetic algorithm and save the best<br />
+     * Example: -t 30 200 8 15 True<br />
+     * -m &lt;file&gt; &lt;game width&gt; &lt;color quantity&gt; = Write a
+     * score matrix file<br />
+     * -m &lt;file&gt; = Load a score matrix file (for -b, -e and -s)<br />
+     * -s [&lt;port&gt;] = Run the headless game server (std. port 8080).
+     */
+    public static void parseArgs(String args[]) {
+        // -d = debug ?
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-d") == true) {
+                // Arguments contain "-d" Debung mode on.
+                System.out.println("Debug mode on");
+                Log.setLevel(Log.Level.DEBUG);
+            }
+        }
+        // -m = write or load a score matrix?
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-m") == true) {
+                try {
+                    if (i + 1 >= args.length
+                            || args[i+1].startsWith("-") == true) {
+                        throw new Exception("No score matrix file");
+                    }
+                    Path file = Paths.get(args[i+1]);
+                    if (i + 3 < args.length
+                            && args[i+2].startsWith("-") == false) {
+                        // Width and color quantity follow: write the file.
+                        int gameWidth = Integer.parseInt(args[i+2]);
+                        int colorQuant = Integer.parseInt(args[i+3]);
+                        if (gameWidth < 1 || gameWidth > Codes.MAX_WIDTH
+                                || colorQuant < 1
+                                || colorQuant > Codes.MAX_COLORS) {
+                            throw new Exception("The game width has to be "
+                                    + "1 to " + Codes.MAX_WIDTH + ", the "
+                                    + "color quantity 1 to "
+                                    + Codes.MAX_COLORS);
+                        }
+                        System.out.println("Writing score matrix...");
+                        long start = System.currentTimeMillis();
+                        ScoreMatrix.write(file, gameWidth, colorQuant);
+                        System.out.println("Duration in s: "
+                                + (System.currentTimeMillis() - start) / 1000f);
+                        System.exit(0);
+                    }
+                    // Load the file for the AI of the following runs.
+                    ScoreMatrix matrix = ScoreMatrix.load(file);
+                    ScoreMatrix.install(matrix);
+                    Log.info("Score matrix loaded for width and colors {}",
+                            matrix.getWidth() + " x " + matrix.getColQuant());
+                } catch (Exception e) {
+                    Log.error("Score matrix error");
+                    System.out.println(""+e.toString());
+                    System.exit(1);
+                }
+            }
+        }
+        // -b = benchmark?
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-b") == true) {
+                try {
+                    if ((args.length - 1 - i) >= 5) {
+                        // There are at least 5 following args for -b.
+                        int gameRepetitions = Integer.parseInt(args[i+1]);
+                        int maxTries = Integer.parseInt(args[i+2]);
+                        int gameWidth = Integer.parseInt(args[i+3]);
+                        int colorQuant = Integer.parseInt(args[i+4]);
+                        boolean doubleColors = Boolean.parseBoolean(args[i+5]);
+
+                        // Check input.
+                        if (gameRepetitions < 1) {
+                            throw new Exception("There has to be at " +
+                                    "least one repetition");
+                        }
+                        if (maxTries < 1) {
+                            throw new Exception("There has to be at " +
+                                    "least one try to solve a game");
+                        }
+                        if (gameWidth < 1 || gameWidth > Codes.MAX_WIDTH
+                                || colorQuant < 1
+                                || colorQuant > Codes.MAX_COLORS) {
+                            throw new Exception("The game width has to be "
+                                    + "1 to " + Codes.MAX_WIDTH + ", the "
+                                    + "color quantity 1 to "
+                                    + Codes.MAX_COLORS);
+                        }
+                        if (gameWidth > colorQuant && doubleColors == false) {
+                            throw new Exception("Too few colors or too wide " +
+                                    "game width. Use double colors or " +
+                                    "change color quantity / game width " +
+                                    "settings.");
+                        }
+                        // Set settings.
+                        ControlInterface ci = new ControlInterface();
+                        ci.setSettingMaxTries(maxTries);
+                        ci.setSettingWidth(gameWidth);
+                        ci.setSettingColQuant(colorQuant);
+                        ci.setSettingDoubleCol(doubleColors);
+                        // Start banchmark.
+                        System.out.println("Starting benchmark...");
+                        GeneticSolver solve = new GeneticSolver(ci);
+                        solve.geneticSolverTest(gameRepetitions);
+                        System.exit(0);
+                    } else {
+                        throw new Exception("Not enough benchmark arguemtns");
+                    }
+
+                } catch (Exception e) {
+                    Log.error("Benchmark arguments error");
+                    System.out.println(""+e.toString());
+                    System.exit(1);
+                }
+            }
+        }
+        // -e = evaluate a solving algorithm against all secret codes?
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-e") == true) {
+                try {
+                    if ((args.length - 1 - i) >= 4) {
+                        // There are at least 4 following args for -e.
+                        int maxTries = Integer.parseInt(args[i+1]);
+                        int gameWidth = Integer.parseInt(args[i+2]);
+                        int colorQuant = Integer.parseInt(args[i+3]);
+                        boolean doubleColors = Boolean.parseBoolean(args[i+4]);
+                        String solver = "genetic";
+                        if (i + 5 < args.length
+                                && args[i+5].startsWith("-") == false) {
+                            solver = args[i+5];
+                        }
+                        SolverRegistry registry = SolverRegistry.shared();
+                        SolverProvider provider;
+                        if (solver.equals("auto") == true) {
+                            // Let the registry choose by the board size.
+                            registry.calibrate();
+                            provider = registry.choose(gameWidth, colorQuant,
+                                    doubleColors);
+                            System.out.println("Chosen solving algorithm: "
+                                    + provider.getName());
+                        } else {
+                            provider = registry.get(solver);
+                        }
+                        if (provider == null) {
+                            throw new Exception("Unknown solving algorithm: "
+                                    + solver + " (auto, "
+                                    + registry.getNames() + ")");
+                        }
+                        if (provider.supports(gameWidth, colorQuant,
+                                doubleColors) == false) {
+                            throw new Exception("The solving algorithm "
+                                    + solver + " does not support "
+                                    + gameWidth + " x " + colorQuant);
+                        }
+                        StrategyEvaluator evaluator = new StrategyEvaluator(
+                                provider::create, gameWidth, colorQuant,
+                                doubleColors, maxTries,
+                                provider.isDeterministic());
+                        System.out.println("Starting evaluation...");
+                        long start = System.currentTimeMillis();
+                        StrategyEvaluator.Report report = evaluator.evaluate(
+                                Runtime.getRuntime().availableProcessors());
+                        System.out.println("##################\n"
+                                + "Evaluation results:");
+                        System.out.print(report);
+                        System.out.println("Duration in s: "
+                                + (System.currentTimeMillis() - start) / 1000f);
+                        System.exit(0);
+                    } else {
+                        throw new Exception("Not enough evaluation arguments");
+                    }
+                } catch (Exception e) {
+                    Log.error("Evaluation arguments error");
+                    System.out.println(""+e.toString());
+                    System.exit(1);
+                }
+            }
+        }
+        // -t = tune the genetic algorithm?
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-t") == true) {
+                try {
+                    if ((args.length - 1 - i) >= 5) {
+                        // There are at least 5 following args for -t.
+                        int trials = Integer.parseInt(args[i+1]);
+                        int games = Integer.parseInt(args[i+2]);
+                        int gameWidth = Integer.parseInt(args[i+3]);
+                        int colorQuant = Integer.parseInt(args[i+4]);
+                        boolean doubleColors = Boolean.parseBoolean(args[i+5]);
+                        double maxAverage = 0;
+                        if (i + 6 < args.length
+                                && args[i+6].startsWith("-") == false) {
+                            maxAverage = Double.parseDouble(args[i+6]);
+                        }
+                        if (trials < 0 || games < 1) {
+                            throw new Exception("There has to be at "
+                                    + "least one game per trial");
+                        }
+                        GeneticTuner tuner = new GeneticTuner(gameWidth,
+                                colorQuant, doubleColors, games,
+                                System.nanoTime());
+                        // Show the trials.
+                        if (Log.isEnabled(Log.Level.INFO) == false) {
+                            Log.setLevel(Log.Level.INFO);
+                        }
+                        System.out.println("Starting tuning...");
+                        long start = System.currentTimeMillis();
+                        GeneticTuner.Trial best = tuner.tune(trials,
+                                maxAverage,
+                                Runtime.getRuntime().availableProcessors());
+                        GeneticParameters.put(gameWidth, colorQuant,
+                                doubleColors, best.getParameters());
+                        Log.flush();
+                        System.out.println("##################\n"
+                                + "Tuning results:\n" + best);
+                        System.out.println("Saved to "
+                                + GeneticParameters.getFile());
+                        System.out.println("Duration in s: "
+                                + (System.currentTimeMillis() - start) / 1000f);
+                        System.exit(0);
+                    } else {
+                        throw new Exception("Not enough tuning arguments");
+                    }
+                } catch (Exception e) {
+                    Log.error("Tuning arguments error");
+                    System.out.println(""+e.toString());
+                    System.exit(1);
+                }
+            }
+        }
+        // -s = server?
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-s") == true) {
+                try {
+                    int port = 8080;
+                    if (i + 1 < args.length
+                            && args[i+1].startsWith("-") == false) {
+                        port = Integer.parseInt(args[i+1]);
+                    }
+                    GameServer server = new GameServer(port);
+                    server.start();
+                    System.out.println("Server listening on port "
+                            + server.getPort());
+                    // Keep running until the process is killed.
+                    Thread.currentThread().join();
+                } catch (Exception e) {
+                    Log.error("Server error");
+                    System.out.println(""+e.toString());
+                    System.exit(1);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,5 @@
+/**
+ * The headless entry point for benchmarks, evaluations and the server
+ * (without package gui).
+ */
+package launcher;
@@ -0,0 +1,511 @@
+/*
+ * Copyright 2011 Ikarus, René Kübler, Andreas J.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import common.*;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A headless server which hosts many games at once.
+ * Every game is a session with its own engine and optional AI. Requests
+ * to different sessions are handled in parallel, requests to the same
+ * session one after the other (every session has its own lock).
+ * Idle sessions are moved off-heap by the SessionStore.<br />
+ * The API (all responses are JSON, parameters are given in the query
+ * string or as form data):
+ * <pre>
+ * POST   /games                  Create a session. Parameters: width,
+ *                                colors, tries, double, ai (all optional).
+ * GET    /games                  Number of sessions.
+ * GET    /games/{id}             State of a session.
+ * DELETE /games/{id}             Remove a session.
+ * POST   /games/{id}/guess       Play a guess. Parameter: code (color
+ *                                numbers separated by commas).
+ * POST   /games/{id}/ai          Let the AI of the session play a guess.
+ * GET    /games/{id}/hint        Get a hint for the next guess.
+ * </pre>
+ */
+public class GameServer {
+    /**
+     * The path of the API.
+     */
+    public static final String PATH = "/games";
+    /**
+     * Std. max. number of sessions on the heap.
+     */
+    public static final int STD_MAX_HOT_SESSIONS = 10000;
+    /**
+     * Std. time (in ms) after which an unused session is moved off-heap.
+     */
+    public static final long STD_SESSION_TTL = 60000;
+    /**
+     * Max. number of sessions.
+     */
+    private final int MAX_SESSIONS = 1000000;
+    /**
+     * Max. size of a request body in bytes.
+     */
+    private final int MAX_BODY_SIZE = 4096;
+    /**
+     * Interval (in ms) in which expired sessions are moved off-heap.
+     */
+    private final long EVICTION_INTERVAL = 1000;
+    /**
+     * Max. number of threads handling requests. Further requests wait
+     * in a queue.
+     */
+    private final int MAX_REQUEST_THREADS = 256;
+    /**
+     * Time (in s) after which an unused request thread ends.
+     */
+    private final long REQUEST_THREAD_TTL = 60;
+    private final HttpServer http;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService evictor;
+    private final SessionStore sessions;
+
+    /**
+     * Create a server with the std. session store settings.
+     * It has to be started with start().
+     *
+     * @param port The TCP port to listen on.
+     * @throws IOException If the port can not be bound.
+     */
+    public GameServer(int port) throws IOException {
+        this(port, new SessionStore(STD_MAX_HOT_SESSIONS, STD_SESSION_TTL));
+    }
+
+    /**
+     * Create a server. It has to be started with start().
+     *
+     * @param port The TCP port to listen on.
+     * @param sessions The store for the sessions.
+     * @throws IOException If the port can not be bound.
+     */
+    public GameServer(int port, SessionStore sessions) throws IOException {
+        this.sessions = sessions;
+        evictor = Executors.newSingleThreadScheduledExecutor(
+                new DaemonThreadFactory("JAMM-Server-Evictor"));
+        http = HttpServer.create(new InetSocketAddress(port), 0);
+        // Requests block while they wait for a session lock or an AI,
+        // so there are many threads. They are limited, so a burst of
+        // requests is queued instead of starting a thread per request.
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(MAX_REQUEST_THREADS,
+                MAX_REQUEST_THREADS, REQUEST_THREAD_TTL, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable r) {
+                return new Thread(r, "JAMM-Server-" + count.incrementAndGet());
+            }
+        });
+        pool.allowCoreThreadTimeOut(true);
+        executor = pool;
+        http.setExecutor(executor);
+        http.createContext(PATH, new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                handleRequest(exchange);
+            }
+        });
+    }
+
+    /**
+     * Start the server.
+     */
+    public void start() {
+        evictor.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                sessions.evictExpired();
+            }
+        }, EVICTION_INTERVAL, EVICTION_INTERVAL, TimeUnit.MILLISECONDS);
+        http.start();
+        Log.debug("Server: Listening on port {}",
+                http.getAddress().getPort());
+    }
+
+    /**
+     * Stop the server. Running requests get one second to finish.
+     */
+    public void stop() {
+        http.stop(1);
+        executor.shutdown();
+        evictor.shutdown();
+    }
+
+    /**
+     * Getter for the port the server listens on.
+     *
+     * @return The port.
+     */
+    public int getPort() {
+        return http.getAddress().getPort();
+    }
+
+    /**
+     * Handle a request.
+     *
+     * @param exchange The request.
+     * @throws IOException If the response can not be sent.
+     */
+    private void handleRequest(HttpExchange exchange) throws IOException {
+        try {
+            String uri = exchange.getRequestURI().getPath();
+            // The context also matches e.g. "/gamesXYZ".
+            if (uri.equals(PATH) == false
+                    && uri.startsWith(PATH + "/") == false) {
+                throw new RequestException(404, "Not found");
+            }
+            String[] path = uri.substring(PATH.length()).split("/");
+            // path[0] is empty, path[1] the session ID, path[2] the action.
+            String method = exchange.getRequestMethod();
+            Map<String, String> params = readParams(exchange);
+            if (path.length <= 1) {
+                if (method.equals("POST")) {
+                    send(exchange, 201, create(params));
+                } else if (method.equals("GET")) {
+                    send(exchange, 200, "{\"sessions\":" + sessions.size()
+                            + ",\"hot\":" + sessions.getHotCount()
+                            + ",\"idle\":" + sessions.getIdleCount() + "}");
+                } else {
+                    throw new RequestException(405, "Method not allowed");
+                }
+                return;
+            }
+            if (path.length > 3) {
+                throw new RequestException(404, "Not found");
+            }
+            String action = path.length > 2 ? path[2] : "";
+            if (action.isEmpty() && method.equals("DELETE")) {
+                if (sessions.remove(path[1]) == false) {
+                    throw new RequestException(404, "No such session");
+                }
+                send(exchange, 200, "{\"id\":\"" + path[1] + "\"}");
+                return;
+            }
+            GameSession session = lockSession(path[1]);
+            String response;
+            try {
+                session.touch();
+                response = handleSession(session, method, action, params);
+            } finally {
+                session.lock.unlock();
+            }
+            send(exchange, 200, response);
+        } catch (RequestException e) {
+            send(exchange, e.status, "{\"error\":\""
+                    + e.getMessage().replace("\\", "\\\\")
+                    .replace("\"", "\\\"") + "\"}");
+        } catch (RuntimeException e) {
+            Log.error("Server: {}", e);
+            send(exchange, 500, "{\"error\":\"Internal error\"}");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Handle a request to a session. The lock of the session is held.
+     *
+     * @param session The session.
+     * @param method The HTTP method.
+     * @param action The action (last part of the path). Empty if none.
+     * @param params The request parameters.
+     * @return The JSON response.
+     * @throws RequestException If the request is invalid.
+     */
+    private String handleSession(GameSession session, String method,
+            String action, Map<String, String> params)
+            throws RequestException {
+        if (action.isEmpty() && method.equals("GET")) {
+            return session.toJson();
+        }
+        if (action.equals("hint") && method.equals("GET")) {
+            if (session.getControlInterface().getGameEnded() == true) {
+                throw new RequestException(409, "The game has ended");
+            }
+            StringBuilder json = new StringBuilder("{\"hint\":");
+            GameSession.appendCode(json, session.hint());
+            return json.append('}').toString();
+        }
+        if (action.equals("guess") && method.equals("POST")) {
+            checkRunning(session);
+            session.guess(parseCode(session, params.get("code")));
+            return session.toJson();
+        }
+        if (action.equals("ai") && method.equals("POST")) {
+            checkRunning(session);
+            try {
+                session.aiGuess();
+            } catch (IllegalStateException e) {
+                throw new RequestException(409, e.getMessage());
+            }
+            return session.toJson();
+        }
+        throw new RequestException(404, "Not found");
+    }
+
+    /**
+     * Create a new session.
+     *
+     * @param params The request parameters.
+     * @return The JSON state of the new session.
+     * @throws RequestException If the settings are invalid or there are
+     * too many sessions.
+     */
+    private String create(Map<String, String> params)
+            throws RequestException {
+        if (sessions.size() >= MAX_SESSIONS) {
+            throw new RequestException(503, "Too many sessions");
+        }
+        int width = parseInt(params, "width", 4);
+        int colQuant = parseInt(params, "colors", 6);
+        int maxTries = parseInt(params, "tries", 10);
+        boolean doubleColors = Boolean.parseBoolean(
+                params.getOrDefault("double", "false"));
+        boolean withAI = Boolean.parseBoolean(
+                params.getOrDefault("ai", "false"));
+        if (width < 1 || width > Codes.MAX_WIDTH || colQuant < 1
+                || colQuant > Codes.MAX_COLORS
+                || maxTries < 1
+                || (width > colQuant && doubleColors == false)) {
+            throw new RequestException(400, "Invalid settings");
+        }
+        GameSession session = new GameSession(UUID.randomUUID().toString(),
+                width, colQuant, maxTries, doubleColors, withAI);
+        String json = session.toJson();
+        sessions.put(session);
+        Log.debug("Server: Created session {}", session.id);
+        return json;
+    }
+
+    /**
+     * Get a session and lock it.
+     * If the session is evicted while waiting for the lock, it is
+     * rehydrated and locked again.
+     *
+     * @param id The ID of the session.
+     * @return The locked session.
+     * @throws RequestException If there is no such session.
+     */
+    private GameSession lockSession(String id) throws RequestException {
+        while (true) {
+            GameSession session = sessions.get(id);
+            if (session == null) {
+                throw new RequestException(404, "No such session");
+            }
+            session.lock.lock();
+            if (session.isEvicted() == false) {
+                return session;
+            }
+            session.lock.unlock();
+        }
+    }
+
+    /**
+     * Check that the game of a session has not ended.
+     *
+     * @param session The session.
+     * @throws RequestException If the game has ended.
+     */
+    private static void checkRunning(GameSession session)
+            throws RequestException {
+        if (session.getControlInterface().getGameEnded() == true) {
+            throw new RequestException(409, "The game has ended");
+        }
+    }
+
+    /**
+     * Parse a code (color numbers separated by commas).
+     *
+     * @param session The session the code is for.
+     * @param code The code.
+     * @return The pegs (color indices) of the code.
+     * @throws RequestException If the code is invalid.
+     */
+    private static int[] parseCode(GameSession session, String code)
+            throws RequestException {
+        if (code == null) {
+            throw new RequestException(400, "Missing code");
+        }
+        String[] pegs = code.split(",");
+        int width = session.getControlInterface().getSettingWidth();
+        int colQuant = session.getControlInterface().getSettingColQuant();
+        if (pegs.length != width) {
+            throw new RequestException(400, "The code needs " + width
+                    + " colors");
+        }
+        int[] colors = new int[width];
+        for (int i = 0; i < width; i++) {
+            int color;
+            try {
+                color = Integer.parseInt(pegs[i].trim());
+            } catch (NumberFormatException e) {
+                color = -1;
+            }
+            if (color < 0 || color >= colQuant) {
+                throw new RequestException(400, "Invalid color: " + pegs[i]);
+            }
+            colors[i] = color;
+        }
+        return colors;
+    }
+
+    /**
+     * Parse an int parameter.
+     *
+     * @param params The request parameters.
+     * @param name The name of the parameter.
+     * @param std The value if the parameter is missing.
+     * @return The value of the parameter.
+     * @throws RequestException If the parameter is no number.
+     */
+    private static int parseInt(Map<String, String> params, String name,
+            int std) throws RequestException {
+        String value = params.get(name);
+        if (value == null) {
+            return std;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new RequestException(400, "Invalid " + name);
+        }
+    }
+
+    /**
+     * Read the parameters of a request from the query string and the
+     * (form data) body.
+     *
+     * @param exchange The request.
+     * @return The parameters.
+     * @throws IOException If the body can not be read.
+     * @throws RequestException If the body is too large.
+     */
+    private Map<String, String> readParams(HttpExchange exchange)
+            throws IOException, RequestException {
+        Map<String, String> params = new HashMap<String, String>();
+        parseParams(exchange.getRequestURI().getRawQuery(), params);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        InputStream in = exchange.getRequestBody();
+        byte[] buffer = new byte[512];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            body.write(buffer, 0, n);
+            if (body.size() > MAX_BODY_SIZE) {
+                throw new RequestException(413, "Request too large");
+            }
+        }
+        parseParams(body.toString("UTF-8"), params);
+        return params;
+    }
+
+    /**
+     * Parse URL encoded parameters (a=1&amp;b=2).
+     *
+     * @param query The parameters. May be null.
+     * @param params The map the parameters are added to.
+     */
+    private static void parseParams(String query, Map<String, String> params) {
+        if (query == null || query.isEmpty()) {
+            return;
+        }
+        for (String param : query.split("&")) {
+            int eq = param.indexOf('=');
+            if (eq > 0) {
+                params.put(decode(param.substring(0, eq)),
+                        decode(param.substring(eq + 1)));
+            }
+        }
+    }
+
+    /**
+     * Decode a URL encoded String.
+     *
+     * @param s The encoded String.
+     * @return The decoded String.
+     */
+    private static String decode(String s) {
+        try {
+            return URLDecoder.decode(s, "UTF-8");
+        } catch (IOException e) {
+            // UTF-8 is always supported.
+            throw new IllegalStateException(e);
+        } catch (IllegalArgumentException e) {
+            return s;
+        }
+    }
+
+    /**
+     * Send a JSON response.
+     *
+     * @param exchange The request.
+     * @param status The HTTP status.
+     * @param json The JSON body.
+     * @throws IOException If the response can not be sent.
+     */
+    private static void send(HttpExchange exchange, int status, String json)
+            throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type",
+                "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(body);
+        out.close();
+    }
+
+    /**
+     * An invalid request. The message is sent to the client.
+     */
+    private static class RequestException extends Exception {
+        private static final long serialVersionUID = 1L;
+        private final int status;
+
+        /**
+         * Create the exception.
+         *
+         * @param status The HTTP status.
+         * @param message The error message.
+         */
+        RequestException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
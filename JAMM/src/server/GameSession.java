@@ -0,0 +1,272 @@
+/*
+ * Copyright 2011 Ikarus, René Kübler, Andreas J.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package server;
+
+import ai.CachingSolver;
+import ai.GuessCache;
+import ai.SolverProvider;
+import ai.SolverRegistry;
+import ai.SolvingAlgorithm;
+import common.*;
+import game.ControlInterface;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A game hosted by the GameServer.
+ * Every session has its own game engine and (optionally) its own AI.
+ * A session must only be used while its lock is held. Different sessions
+ * can be used in parallel.
+ */
+class GameSession {
+    /**
+     * The ID of the session.
+     */
+    final String id;
+    /**
+     * The lock guarding the session.
+     */
+    final ReentrantLock lock = new ReentrantLock();
+    private final ControlInterface ci;
+    /**
+     * True if the session has an AI.
+     */
+    private final boolean withAI;
+    /**
+     * The AI of the session. Null until it is used.
+     */
+    private SolvingAlgorithm ai;
+    /**
+     * True if the session was moved out of the heap by the SessionStore.
+     * An evicted session must not be used anymore.
+     */
+    private boolean evicted = false;
+    /**
+     * Time (System.nanoTime()) of the last use of the session.
+     */
+    private volatile long lastAccess = System.nanoTime();
+
+    /**
+     * Create a session with a new game.
+     * The settings have to be checked before.
+     *
+     * @param id The ID of the session.
+     * @param width The game width.
+     * @param colQuant The quantity of colors.
+     * @param maxTries The max. number of tries.
+     * @param doubleColors True if double colors are allowed.
+     * @param withAI True if the session has an AI.
+     */
+    GameSession(String id, int width, int colQuant, int maxTries,
+            boolean doubleColors, boolean withAI) {
+        this(id, new ControlInterface(), withAI);
+        ci.setSettingDoubleCol(doubleColors);
+        // Set the colors before and after the width since both setters
+        // check the other value.
+        ci.setSettingColQuant(colQuant);
+        ci.setSettingWidth(width);
+        ci.setSettingColQuant(colQuant);
+        ci.setSettingMaxTries(maxTries);
+        ci.newGame();
+    }
+
+    /**
+     * Create a session for an existing game (e.g. a rehydrated one).
+     *
+     * @param id The ID of the session.
+     * @param ci The control interface of the game.
+     * @param withAI True if the session has an AI.
+     */
+    GameSession(String id, ControlInterface ci, boolean withAI) {
+        this.id = id;
+        this.ci = ci;
+        // The AI is created lazily, after the settings are final.
+        this.withAI = withAI;
+    }
+
+    /**
+     * Mark the session as used now.
+     */
+    void touch() {
+        lastAccess = System.nanoTime();
+    }
+
+    /**
+     * Getter for the time of the last use.
+     *
+     * @return The time of the last use (System.nanoTime()).
+     */
+    long getLastAccess() {
+        return lastAccess;
+    }
+
+    /**
+     * Getter for the AI state.
+     *
+     * @return True if the session has an AI.
+     */
+    boolean hasAI() {
+        return withAI;
+    }
+
+    /**
+     * Getter for the eviction state. The lock has to be held.
+     *
+     * @return True if the session was evicted and must not be used.
+     */
+    boolean isEvicted() {
+        return evicted;
+    }
+
+    /**
+     * Mark the session as evicted. The lock has to be held.
+     */
+    void evict() {
+        evicted = true;
+    }
+
+    /**
+     * Getter for the control interface of the game.
+     *
+     * @return The control interface.
+     */
+    ControlInterface getControlInterface() {
+        return ci;
+    }
+
+    /**
+     * Play a guess.
+     *
+     * @param pegs The pegs (color indices) of the guess.
+     * @return The game state.
+     * @see ControlInterface#turn()
+     */
+    int guess(int[] pegs) {
+        return ci.submitTurn(ci.getActiveRowNumber(), pegs);
+    }
+
+    /**
+     * Let the AI play a guess.
+     *
+     * @return The game state.
+     * @throws IllegalStateException If the session has no AI.
+     * @see ControlInterface#turn()
+     */
+    int aiGuess() {
+        if (withAI == false) {
+            throw new IllegalStateException("The session has no AI");
+        }
+        return getAI().makeGuess();
+    }
+
+    /**
+     * Search a hint (a good next guess) without playing it.
+     *
+     * @return The hint.
+     */
+    Row hint() {
+        return withAI ? getAI().generateGuess()
+                : createAI().generateGuess();
+    }
+
+    /**
+     * Getter for the AI. It is created on first use.
+     *
+     * @return The AI.
+     */
+    private SolvingAlgorithm getAI() {
+        if (ai == null) {
+            ai = createAI();
+        }
+        return ai;
+    }
+
+    /**
+     * Create the solving algorithm SolverRegistry chooses for the game.
+     * The guesses of a deterministic algorithm are shared with all other
+     * sessions (see GuessCache). A randomized algorithm is not cached,
+     * otherwise all sessions would get the same guesses.
+     *
+     * @return The AI.
+     */
+    private SolvingAlgorithm createAI() {
+        SolverProvider provider = SolverRegistry.shared().choose(
+                ci.getSettingWidth(), ci.getSettingColQuant(),
+                ci.getSettingDoubleCol());
+        SolvingAlgorithm solver = provider.create(ci);
+        if (provider.isDeterministic() == true
+                && solver instanceof CachingSolver == false) {
+            solver = new CachingSolver(ci, solver, GuessCache.shared());
+        }
+        return solver;
+    }
+
+    /**
+     * Render the session as a JSON object.
+     * The secret code is only included if the game has ended.
+     *
+     * @return The JSON object.
+     */
+    String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"id\":\"").append(id).append('"')
+                .append(",\"width\":").append(ci.getSettingWidth())
+                .append(",\"colors\":").append(ci.getSettingColQuant())
+                .append(",\"maxTries\":").append(ci.getSettingMaxTries())
+                .append(",\"doubleColors\":").append(ci.getSettingDoubleCol())
+                .append(",\"ai\":").append(withAI)
+                .append(",\"ended\":").append(ci.getGameEnded())
+                .append(",\"turns\":[");
+        for (int i = 0; i < ci.getActiveRowNumber(); i++) {
+            int feedback = ci.getFeedback(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"guess\":");
+            appendCode(json, ci.getGameFieldRow(i));
+            json.append(",\"blacks\":")
+                    .append(Feedback.blacks(feedback))
+                    .append(",\"whites\":")
+                    .append(Feedback.whites(feedback))
+                    .append('}');
+        }
+        json.append(']');
+        if (ci.getGameEnded() == true) {
+            json.append(",\"secret\":");
+            appendCode(json, ci.getSecretCode());
+        }
+        return json.append('}').toString();
+    }
+
+    /**
+     * Append a code as a JSON array of color numbers.
+     *
+     * @param json The JSON to append to.
+     * @param code The code.
+     */
+    static void appendCode(StringBuilder json, Row code) {
+        json.append('[');
+        for (int i = 0; i < code.width(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(code.getPeg(i));
+        }
+        json.append(']');
+    }
+}
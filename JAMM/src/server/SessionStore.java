@@ -0,0 +1,546 @@
+/*
+ * Copyright 2011 Ikarus, René Kübler, Andreas J.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package server;
+
+import common.*;
+import game.ControlInterface;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Stores the sessions of the GameServer.
+ * Recently used sessions are kept on the heap. Sessions which were not used
+ * for a while (TTL) or which are the least recently used ones when there
+ * are too many sessions on the heap are evicted: their game is packed
+ * into the binary save format and stored off-heap (in slabs of direct
+ * ByteBuffers). An evicted session is rehydrated when it is used again.
+ * An idle session needs a few dozen bytes off-heap and about 150 bytes on
+ * the heap (its ID and its map entry).<br />
+ * There is no global lock: the sessions are found in a concurrent map and
+ * every session is evicted and rehydrated under its own lock. Only the
+ * allocation of space in the slabs is serialized. Slabs with few live
+ * records are compacted by evictExpired(), so single records do not keep
+ * whole slabs alive.<br />
+ * A session is only evicted if its lock is free, so a session in use
+ * stays on the heap. A session might be evicted after it was handed out
+ * but before its lock was taken. Users have to check
+ * GameSession.isEvicted() after locking and get the session again.
+ *
+ * @see ControlInterface#save(java.nio.ByteBuffer)
+ */
+public class SessionStore {
+    /**
+     * Size of a slab (direct ByteBuffer) in bytes.
+     */
+    private final int SLAB_SIZE = 1 << 20;
+    /**
+     * Max. size of a packed session. Larger sessions stay on the heap.
+     */
+    private final int MAX_RECORD_SIZE = SLAB_SIZE / 16;
+    /**
+     * Slabs with less live bytes than this are compacted.
+     */
+    private final int COMPACTION_THRESHOLD = SLAB_SIZE / 4;
+    /**
+     * Max. number of sessions on the heap.
+     */
+    private final int maxHot;
+    /**
+     * Time (in ns) after which an unused session is evicted.
+     */
+    private final long ttl;
+    /**
+     * All sessions by ID.
+     */
+    private final ConcurrentHashMap<String, Slot> slots =
+            new ConcurrentHashMap<String, Slot>();
+    /**
+     * The sessions on the heap, least recently put on the heap first.
+     * Sessions used since they were queued get a second chance (they are
+     * queued again), so the order approximates least recently used.
+     */
+    private final ConcurrentLinkedQueue<Slot> hotQueue =
+            new ConcurrentLinkedQueue<Slot>();
+    /**
+     * Number of sessions on the heap.
+     */
+    private final AtomicInteger hotCount = new AtomicInteger();
+    /**
+     * Held by the thread which evicts the least recently used sessions.
+     */
+    private final ReentrantLock evicting = new ReentrantLock();
+    /**
+     * Guards the slabs and their bookkeeping.
+     */
+    private final Object slabLock = new Object();
+    /**
+     * The slabs the packed sessions are stored in.
+     */
+    private final List<ByteBuffer> slabs = new ArrayList<ByteBuffer>();
+    /**
+     * Number of bytes of live records in each slab.
+     */
+    private int[] slabLive = new int[0];
+    /**
+     * Empty slabs which can be reused.
+     */
+    private final ArrayDeque<Integer> freeSlabs = new ArrayDeque<Integer>();
+    /**
+     * The slab new records are appended to. -1 if there is none.
+     */
+    private int currentSlab = -1;
+    /**
+     * The slabs whose records are moved by the running compaction. Null
+     * if there is none.
+     */
+    private boolean[] compacting;
+
+    /**
+     * Create a session store.
+     *
+     * @param maxHot Max. number of sessions on the heap.
+     * @param ttlMillis Time (in ms) after which an unused session is
+     * evicted from the heap.
+     */
+    public SessionStore(int maxHot, long ttlMillis) {
+        this.maxHot = maxHot;
+        this.ttl = ttlMillis * 1000000L;
+    }
+
+    /**
+     * Add a new session.
+     *
+     * @param session The session.
+     */
+    void put(GameSession session) {
+        Slot slot = new Slot(session);
+        slots.put(session.id, slot);
+        hotCount.incrementAndGet();
+        synchronized (slot) {
+            enqueue(slot);
+        }
+        evictOverflow();
+    }
+
+    /**
+     * Get a session. An evicted session is rehydrated.
+     *
+     * @param id The ID of the session.
+     * @return The session. Null if there is no session with this ID.
+     */
+    GameSession get(String id) {
+        Slot slot = slots.get(id);
+        if (slot == null) {
+            return null;
+        }
+        GameSession session;
+        synchronized (slot) {
+            if (slot.removed == true) {
+                return null;
+            }
+            if (slot.session != null) {
+                return slot.session;
+            }
+            ByteBuffer record = ByteBuffer.wrap(take(slot.handle));
+            boolean withAI = record.get() != 0;
+            ControlInterface ci = new ControlInterface();
+            try {
+                ci.load(record);
+            } catch (IOException e) {
+                // Can not happen, the record was written by this store.
+                Log.error("Server: Corrupt session {}: {}", id, e);
+                slot.removed = true;
+                slots.remove(id, slot);
+                return null;
+            }
+            session = new GameSession(id, ci, withAI);
+            slot.session = session;
+            hotCount.incrementAndGet();
+            enqueue(slot);
+        }
+        evictOverflow();
+        return session;
+    }
+
+    /**
+     * Remove a session.
+     *
+     * @param id The ID of the session.
+     * @return True if the session existed.
+     */
+    boolean remove(String id) {
+        Slot slot = slots.remove(id);
+        if (slot == null) {
+            return false;
+        }
+        synchronized (slot) {
+            slot.removed = true;
+            if (slot.session != null) {
+                hotCount.decrementAndGet();
+            } else {
+                synchronized (slabLock) {
+                    release(slot.handle);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Getter for the number of sessions.
+     *
+     * @return The number of sessions (on the heap and evicted).
+     */
+    public int size() {
+        return slots.size();
+    }
+
+    /**
+     * Getter for the number of sessions on the heap.
+     *
+     * @return The number of sessions on the heap.
+     */
+    public int getHotCount() {
+        return hotCount.get();
+    }
+
+    /**
+     * Getter for the number of evicted sessions.
+     *
+     * @return The number of evicted sessions.
+     */
+    public int getIdleCount() {
+        return Math.max(0, slots.size() - hotCount.get());
+    }
+
+    /**
+     * Getter for the off-heap memory used by the store.
+     *
+     * @return The size of all slabs in bytes.
+     */
+    public long getOffHeapSize() {
+        synchronized (slabLock) {
+            return (long) slabs.size() * SLAB_SIZE;
+        }
+    }
+
+    /**
+     * Evict all sessions which were not used within the TTL and compact
+     * sparse slabs. Has to be called periodically.
+     */
+    public void evictExpired() {
+        long now = System.nanoTime();
+        Iterator<Slot> it = hotQueue.iterator();
+        while (it.hasNext()) {
+            Slot slot = it.next();
+            synchronized (slot) {
+                GameSession session = slot.session;
+                if (session == null || slot.removed == true
+                        || (now - session.getLastAccess() >= ttl
+                        && evict(slot) == true)) {
+                    it.remove();
+                    slot.queued = false;
+                }
+            }
+        }
+        compact();
+    }
+
+    /**
+     * Evict the least recently used sessions until there are at most
+     * maxHot sessions on the heap. Sessions in use are skipped. If another
+     * thread is evicting already, nothing is done.
+     */
+    private void evictOverflow() {
+        if (hotCount.get() <= maxHot || evicting.tryLock() == false) {
+            return;
+        }
+        try {
+            // Every session is tried about once, some may be in use. (The
+            // queue may also hold some removed sessions.)
+            int tries = 2 * hotCount.get();
+            while (hotCount.get() > maxHot && tries-- > 0) {
+                Slot slot = hotQueue.poll();
+                if (slot == null) {
+                    break;
+                }
+                synchronized (slot) {
+                    slot.queued = false;
+                    GameSession session = slot.session;
+                    if (session == null || slot.removed == true) {
+                        continue;
+                    }
+                    if (session.getLastAccess() - slot.queuedAt > 0
+                            || evict(slot) == false) {
+                        // Used since it was queued (second chance) or in
+                        // use now.
+                        enqueue(slot);
+                    }
+                }
+            }
+        } finally {
+            evicting.unlock();
+        }
+    }
+
+    /**
+     * Queue a session on the heap for eviction. The monitor of the slot
+     * has to be held.
+     *
+     * @param slot The slot of the session.
+     */
+    private void enqueue(Slot slot) {
+        if (slot.queued == false) {
+            slot.queued = true;
+            slot.queuedAt = System.nanoTime();
+            hotQueue.add(slot);
+        }
+    }
+
+    /**
+     * Pack a session and store it off-heap.
+     *
+     * @param slot The slot of the session.
+     * @return True if the session was evicted. False if it is in use, too
+     * large or not on the heap.
+     */
+    private boolean evict(Slot slot) {
+        synchronized (slot) {
+            GameSession session = slot.session;
+            if (session == null || slot.removed == true
+                    || session.lock.tryLock() == false) {
+                return false;
+            }
+            try {
+                ControlInterface ci = session.getControlInterface();
+                int size = 1 + ci.getSaveSize();
+                if (size > MAX_RECORD_SIZE) {
+                    return false;
+                }
+                synchronized (slabLock) {
+                    ByteBuffer slab = allocate(size);
+                    int offset = slab.position();
+                    slab.put((byte) (session.hasAI() ? 1 : 0));
+                    ci.save(slab);
+                    slabLive[currentSlab] += size;
+                    slot.handle = handle(currentSlab, offset, size);
+                }
+                slot.session = null;
+                session.evict();
+                hotCount.decrementAndGet();
+                return true;
+            } finally {
+                session.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Move the records of sparse slabs to the current slab, so the sparse
+     * slabs can be reused.
+     */
+    private synchronized void compact() {
+        synchronized (slabLock) {
+            boolean found = false;
+            compacting = new boolean[slabs.size()];
+            for (int i = 0; i < slabs.size(); i++) {
+                if (i != currentSlab && slabLive[i] > 0
+                        && slabLive[i] < COMPACTION_THRESHOLD) {
+                    compacting[i] = true;
+                    found = true;
+                }
+            }
+            if (found == false) {
+                compacting = null;
+                return;
+            }
+        }
+        for (Slot slot : slots.values()) {
+            synchronized (slot) {
+                if (slot.session != null || slot.removed == true) {
+                    continue;
+                }
+                synchronized (slabLock) {
+                    int slab = (int) (slot.handle >>> 40);
+                    if (slab < compacting.length
+                            && compacting[slab] == true) {
+                        ByteBuffer record = record(slot.handle);
+                        int size = record.remaining();
+                        ByteBuffer target = allocate(size);
+                        int offset = target.position();
+                        target.put(record);
+                        slabLive[currentSlab] += size;
+                        release(slot.handle);
+                        slot.handle = handle(currentSlab, offset, size);
+                    }
+                }
+            }
+        }
+        synchronized (slabLock) {
+            compacting = null;
+        }
+    }
+
+    /**
+     * Get space for a new record. The slab lock has to be held.
+     *
+     * @param size The size of the record.
+     * @return The current slab, positioned at the free space.
+     */
+    private ByteBuffer allocate(int size) {
+        if (currentSlab < 0 || slabs.get(currentSlab).remaining() < size) {
+            nextSlab();
+        }
+        return slabs.get(currentSlab);
+    }
+
+    /**
+     * Switch to an empty slab for new records. The slab lock has to be
+     * held.
+     */
+    private void nextSlab() {
+        if (currentSlab >= 0 && slabLive[currentSlab] == 0) {
+            // Still empty (all its records were released), reuse it.
+            slabs.get(currentSlab).clear();
+            return;
+        }
+        Integer free = freeSlabs.poll();
+        if (free != null) {
+            currentSlab = free;
+            slabs.get(currentSlab).clear();
+        } else {
+            slabs.add(ByteBuffer.allocateDirect(SLAB_SIZE));
+            currentSlab = slabs.size() - 1;
+            if (slabLive.length < slabs.size()) {
+                int[] live = new int[slabs.size() * 2];
+                System.arraycopy(slabLive, 0, live, 0, slabLive.length);
+                slabLive = live;
+            }
+        }
+        if (compacting != null && currentSlab < compacting.length) {
+            // New records of the running compaction stay here.
+            compacting[currentSlab] = false;
+        }
+    }
+
+    /**
+     * Copy a packed session to the heap and free its space.
+     *
+     * @param handle The handle of the packed session.
+     * @return The packed session.
+     */
+    private byte[] take(long handle) {
+        synchronized (slabLock) {
+            ByteBuffer record = record(handle);
+            byte[] bytes = new byte[record.remaining()];
+            record.get(bytes);
+            release(handle);
+            return bytes;
+        }
+    }
+
+    /**
+     * Get a buffer containing a packed session. The slab lock has to be
+     * held.
+     *
+     * @param handle The handle of the packed session.
+     * @return The buffer, positioned at the record.
+     */
+    private ByteBuffer record(long handle) {
+        int offset = (int) (handle >>> 20) & (SLAB_SIZE - 1);
+        ByteBuffer record = slabs.get((int) (handle >>> 40)).duplicate();
+        record.limit(offset + (int) (handle & (SLAB_SIZE - 1)));
+        record.position(offset);
+        return record;
+    }
+
+    /**
+     * Free the space of a packed session. A slab is reused as soon as all
+     * its records are freed. The slab lock has to be held.
+     *
+     * @param handle The handle of the packed session.
+     */
+    private void release(long handle) {
+        int slab = (int) (handle >>> 40);
+        slabLive[slab] -= (int) (handle & (SLAB_SIZE - 1));
+        if (slabLive[slab] == 0 && slab != currentSlab) {
+            freeSlabs.add(slab);
+        }
+    }
+
+    /**
+     * Build the handle of a packed session.
+     * Slab (24 bits), offset (20 bits) and size (20 bits) in one long.
+     *
+     * @param slab The number of the slab.
+     * @param offset The offset in the slab.
+     * @param size The size of the record.
+     * @return The handle.
+     */
+    private static long handle(int slab, int offset, int size) {
+        return ((long) slab << 40) | ((long) offset << 20) | size;
+    }
+
+    /**
+     * The entry of a session in the store: the session itself while it is
+     * on the heap, the handle of its packed game while it is evicted.
+     * Changes are made while holding the monitor of the slot.
+     */
+    private static final class Slot {
+        /**
+         * The session. Null if it is evicted.
+         */
+        volatile GameSession session;
+        /**
+         * The handle of the packed session if it is evicted.
+         *
+         * @see #handle(int, int, int)
+         */
+        long handle;
+        /**
+         * True if the session was removed.
+         */
+        boolean removed;
+        /**
+         * True if the slot is in the queue of the sessions on the heap.
+         */
+        boolean queued;
+        /**
+         * Time (System.nanoTime()) the slot was queued.
+         */
+        long queuedAt;
+
+        /**
+         * Create the slot of a session on the heap.
+         *
+         * @param session The session.
+         */
+        Slot(GameSession session) {
+            this.session = session;
+        }
+    }
+}
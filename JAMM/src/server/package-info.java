@@ -0,0 +1,5 @@
+/**
+ * A headless server which hosts many Mastermind games (package game)
+ * behind a JSON/HTTP API.
+ */
+package server;
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2011 Ikarus, René Kübler, Andreas J.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ai;
+
+import common.Codes;
+import common.Row;
+import game.ControlInterface;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the candidate based solver: known results of the standard game
+ * and the handling of foreign transposition table entries.
+ */
+public class CandidateSolverTest {
+
+    /**
+     * Start a 4 x 6 game with double colors and play some guesses.
+     *
+     * @param guesses The guesses to play.
+     * @return The control interface of the game.
+     */
+    private static ControlInterface play(int[]... guesses) {
+        ControlInterface ci = new ControlInterface();
+        ci.setSettingDoubleCol(true);
+        ci.setSettingColQuant(6);
+        ci.setSettingWidth(4);
+        ci.setSettingMaxTries(10);
+        ci.newGame();
+        ci.setSecretCode(new int[] {1, 2, 3, 4});
+        for (int t = 0; t < guesses.length; t++) {
+            ci.submitTurn(t, guesses[t]);
+        }
+        return ci;
+    }
+
+    @Test
+    public void testStandardGame() throws InterruptedException {
+        StrategyEvaluator evaluator = new StrategyEvaluator(
+                new BuiltinSolvers.Exact()::create, 4, 6, true, 10, true);
+        StrategyEvaluator.Report report = evaluator.evaluate(1);
+        assertEquals(1296, report.getGames());
+        assertEquals(0, report.getLost());
+        assertEquals(6, report.getWorstCase());
+        assertEquals(4.3796, report.getAverage(), 1e-4);
+    }
+
+    @Test
+    public void testForeignEntryIgnored() {
+        ControlInterface ci = play(new int[] {0, 0, 1, 1},
+                new int[] {1, 2, 2, 3});
+        CandidateSet candidates = CandidateSet.of(ci.history());
+        assertTrue(candidates.size() > 1);
+        assertTrue(candidates.size() <= 64);
+        // A colliding entry of another set: the guess is no candidate.
+        long foreign = Codes.pack(new Row(new int[] {5, 5, 5, 5}),
+                Codes.bitsPerPeg(6));
+        assertFalse(candidates.contains(candidates.rank(foreign)));
+        TranspositionTable table = new TranspositionTable(16);
+        table.put(new TranspositionTable.Entry(candidates.getHash(),
+                foreign, 1, (int) candidates.size()));
+        Row guess = new CandidateSolver(ci, table).generateGuess();
+        long code = Codes.pack(guess, Codes.bitsPerPeg(6));
+        assertTrue(candidates.contains(candidates.rank(code)));
+        // The entry is replaced by the searched one.
+        assertEquals(code, table.get(candidates.getHash()).guess);
+    }
+
+    @Test
+    public void testTableKeepsLargerEntries() {
+        TranspositionTable table = new TranspositionTable(2);
+        table.put(new TranspositionTable.Entry(2, 20, 3, 5));
+        table.put(new TranspositionTable.Entry(4, 40, 3, 9));
+        // The bucket is full: the entry with fewer candidates is replaced.
+        table.put(new TranspositionTable.Entry(6, 60, 3, 7));
+        assertNull(table.get(2));
+        assertEquals(40, table.get(4).guess);
+        assertEquals(60, table.get(6).guess);
+        // A cheaper entry does not replace anything.
+        table.put(new TranspositionTable.Entry(8, 80, 3, 1));
+        assertNull(table.get(8));
+        assertEquals(2, table.getMisses());
+    }
+}
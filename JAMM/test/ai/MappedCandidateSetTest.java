@@ -0,0 +1,97 @@
+/*
+ * Copyright 2011 Ikarus, René Kübler, Andreas J.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ai;
+
+import common.Codes;
+import common.Row;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the memory-mapped candidate sets: on small configurations they
+ * must equal the compressed sets.
+ */
+public class MappedCandidateSetTest {
+
+    /**
+     * Check that two sets have the same candidates and hash.
+     *
+     * @param expected The compressed set.
+     * @param actual The mapped set.
+     */
+    private static void assertSameSet(CandidateSet expected,
+            CandidateSet actual) {
+        assertEquals(expected.capacity(), actual.capacity());
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.getHash(), actual.getHash());
+        for (long rank = 0; rank < expected.capacity(); rank++) {
+            assertEquals(expected.contains(rank), actual.contains(rank));
+        }
+        assertEquals(expected.next(0), actual.next(0));
+    }
+
+    /**
+     * Pack a code.
+     *
+     * @param colQuant The quantity of colors.
+     * @param pegs The pegs of the code.
+     * @return The packed code.
+     */
+    private static long pack(int colQuant, int... pegs) {
+        return Codes.pack(new Row(pegs), Codes.bitsPerPeg(colQuant));
+    }
+
+    @Test
+    public void testAll() {
+        assertSameSet(RoaringCandidateSet.all(4, 6, true),
+                MappedCandidateSet.all(4, 6, true));
+    }
+
+    @Test
+    public void testAllWithoutDoubleColors() {
+        assertSameSet(RoaringCandidateSet.all(5, 8, false),
+                MappedCandidateSet.all(5, 8, false));
+    }
+
+    @Test
+    public void testFilter() {
+        CandidateSet expected = RoaringCandidateSet.all(5, 8, false);
+        MappedCandidateSet actual = MappedCandidateSet.all(5, 8, false);
+        long secret = pack(8, 7, 1, 4, 0, 2);
+        long[] guesses = {pack(8, 0, 1, 2, 3, 4), pack(8, 1, 5, 6, 7, 0)};
+        for (long guess : guesses) {
+            int feedback = Codes.feedback(guess, secret, 5,
+                    Codes.bitsPerPeg(8));
+            expected = expected.filter(guess, feedback);
+            MappedCandidateSet filtered = actual.filter(guess, feedback);
+            assertSameSet(expected, filtered);
+            // Filtering in place gives the same set.
+            assertSameSet(expected, actual.replace(guess, feedback));
+            actual = filtered;
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testReplaceTwice() {
+        MappedCandidateSet set = MappedCandidateSet.all(4, 6, true);
+        long guess = pack(6, 0, 0, 1, 1);
+        set.replace(guess, Codes.feedback(guess, guess, 4,
+                Codes.bitsPerPeg(6)));
+        set.replace(guess, 0);
+    }
+}
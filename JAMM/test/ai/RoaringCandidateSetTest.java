@@ -0,0 +1,172 @@
+/*
+ * Copyright 2011 Ikarus, René Kübler, Andreas J.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ai;
+
+import common.Codes;
+import common.Row;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the compressed candidate sets: filtered sets are compared with
+ * a scan of all codes, the hash with a hash computed from scratch.
+ */
+public class RoaringCandidateSetTest {
+
+    /**
+     * Pack a code.
+     *
+     * @param colQuant The quantity of colors.
+     * @param pegs The pegs of the code.
+     * @return The packed code.
+     */
+    private static long pack(int colQuant, int... pegs) {
+        return Codes.pack(new Row(pegs), Codes.bitsPerPeg(colQuant));
+    }
+
+    /**
+     * Check a set against a scan of all codes of its configuration.
+     *
+     * @param set The set.
+     * @param doubleColors Allowance of same colors.
+     * @param guesses The played guesses (packed).
+     * @param feedbacks The feedbacks of the guesses.
+     * @param count The number of guesses to check.
+     */
+    private static void assertScan(CandidateSet set, boolean doubleColors,
+            long[] guesses, int[] feedbacks, int count) {
+        int width = set.getWidth();
+        int colQuant = set.getColQuant();
+        int bits = Codes.bitsPerPeg(colQuant);
+        long hash = CandidateSet.zobrist(width, colQuant, doubleColors);
+        long size = 0;
+        int[] pegs = new int[width];
+        for (long rank = 0; rank < set.capacity(); rank++) {
+            long digits = rank;
+            for (int i = 0; i < width; i++) {
+                pegs[i] = (int) (digits % colQuant);
+                digits /= colQuant;
+            }
+            Row row = new Row(pegs);
+            long code = Codes.pack(row, bits);
+            boolean candidate = doubleColors == true
+                    || row.containsDoubleColor() == false;
+            for (int g = 0; g < count && candidate == true; g++) {
+                candidate = Codes.feedback(guesses[g], code, width, bits)
+                        == feedbacks[g];
+            }
+            assertEquals(candidate, set.contains(rank));
+            if (candidate == true) {
+                size++;
+            } else {
+                hash ^= CandidateSet.zobrist(rank);
+            }
+        }
+        assertEquals(size, set.size());
+        assertEquals(hash, set.getHash());
+    }
+
+    /**
+     * Filter all codes of a configuration by guesses, check every set
+     * against a scan and count the containers.
+     *
+     * @param width The game width.
+     * @param colQuant The quantity of colors.
+     * @param doubleColors Allowance of same colors.
+     * @param secret The secret code (packed).
+     * @param guesses The guesses (packed).
+     * @return The number of array, bitmap and run containers of all sets.
+     */
+    private static int[] filterAndScan(int width, int colQuant,
+            boolean doubleColors, long secret, long... guesses) {
+        int bits = Codes.bitsPerPeg(colQuant);
+        int[] feedbacks = new int[guesses.length];
+        RoaringCandidateSet set = RoaringCandidateSet.all(width, colQuant,
+                doubleColors);
+        assertScan(set, doubleColors, guesses, feedbacks, 0);
+        int[] counts = set.getContainerCounts();
+        for (int g = 0; g < guesses.length; g++) {
+            feedbacks[g] = Codes.feedback(guesses[g], secret, width, bits);
+            set = set.filter(guesses[g], feedbacks[g]);
+            assertScan(set, doubleColors, guesses, feedbacks, g + 1);
+            int[] c = set.getContainerCounts();
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += c[i];
+            }
+        }
+        return counts;
+    }
+
+    @Test
+    public void testFilter() {
+        filterAndScan(4, 6, true, pack(6, 1, 2, 3, 4), pack(6, 0, 0, 1, 1),
+                pack(6, 1, 2, 2, 3), pack(6, 3, 2, 1, 4));
+    }
+
+    @Test
+    public void testFilterWithoutDoubleColors() {
+        filterAndScan(5, 8, false, pack(8, 7, 1, 4, 0, 2),
+                pack(8, 0, 1, 2, 3, 4), pack(8, 1, 5, 6, 7, 0));
+    }
+
+    @Test
+    public void testAllContainerForms() {
+        // All codes are one run per block, the large parts are bitmaps,
+        // the small parts arrays.
+        int[] counts = filterAndScan(6, 10, true,
+                pack(10, 9, 1, 4, 0, 2, 2), pack(10, 0, 1, 2, 3, 4, 5),
+                pack(10, 9, 9, 1, 1, 0, 0), pack(10, 2, 1, 0, 4, 6, 8));
+        assertTrue(counts[0] > 0);
+        assertTrue(counts[1] > 0);
+        assertTrue(counts[2] > 0);
+    }
+
+    @Test
+    public void testAnd() {
+        RoaringCandidateSet all = RoaringCandidateSet.all(6, 10, true);
+        long guess = pack(10, 0, 1, 2, 3, 4, 5);
+        int bits = Codes.bitsPerPeg(10);
+        int feedback = Codes.feedback(guess, pack(10, 0, 1, 2, 3, 5, 4), 6,
+                bits);
+        RoaringCandidateSet part = all.filter(guess, feedback);
+        // Intersecting with itself removes nothing, with the whole
+        // configuration keeps the set.
+        assertEquals(part.getHash(), part.and(part).getHash());
+        assertEquals(part.size(), all.and(part).size());
+        assertEquals(part.getHash(), part.and(all).getHash());
+        assertScan(part.and(all), true, new long[] {guess},
+                new int[] {feedback}, 1);
+    }
+
+    @Test
+    public void testPartitionEviction() {
+        RoaringCandidateSet all = RoaringCandidateSet.all(5, 8, true);
+        long guess = pack(8, 0, 1, 2, 3, 4);
+        int feedback = Codes.feedback(guess, pack(8, 4, 3, 2, 1, 0), 5,
+                Codes.bitsPerPeg(8));
+        RoaringCandidateSet cached = all.filter(guess, feedback);
+        assertTrue(RoaringCandidateSet.getPartitionBytes() > 0);
+        RoaringCandidateSet.trimPartitions(0);
+        assertEquals(0, RoaringCandidateSet.getPartitionBytes());
+        // The partition is built again.
+        RoaringCandidateSet rebuilt = all.filter(guess, feedback);
+        assertTrue(RoaringCandidateSet.getPartitionBytes() > 0);
+        assertEquals(cached.size(), rebuilt.size());
+        assertEquals(cached.getHash(), rebuilt.getHash());
+    }
+}
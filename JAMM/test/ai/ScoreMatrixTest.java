@@ -0,0 +1,119 @@
+/*
+ * Copyright 2011 Ikarus, René Kübler, Andreas J.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ai;
+
+import common.Codes;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the score matrix files: written matrices are loaded unchanged,
+ * invalid files are rejected.
+ */
+public class ScoreMatrixTest {
+    private Path dir;
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("jamm-matrix");
+        file = dir.resolve("4x6.jams");
+    }
+
+    @After
+    public void tearDown() {
+        for (File f : dir.toFile().listFiles()) {
+            f.delete();
+        }
+        dir.toFile().delete();
+    }
+
+    /**
+     * Overwrite a byte of the matrix file.
+     *
+     * @param pos The position of the byte.
+     * @param value The new value.
+     * @throws IOException If writing failed.
+     */
+    private void poke(long pos, int value) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(),
+                "rw")) {
+            raf.seek(pos);
+            raf.write(value);
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        ScoreMatrix.write(file, 4, 6);
+        ScoreMatrix matrix = ScoreMatrix.load(file);
+        assertEquals(4, matrix.getWidth());
+        assertEquals(6, matrix.getColQuant());
+        assertEquals(1296, matrix.capacity());
+        CandidateSet codes = RoaringCandidateSet.all(4, 6, true);
+        int bits = Codes.bitsPerPeg(6);
+        for (long guess = 0; guess < matrix.capacity(); guess++) {
+            for (long secret = 0; secret < matrix.capacity(); secret++) {
+                assertEquals(Codes.feedback(codes.code(guess),
+                        codes.code(secret), 4, bits),
+                        matrix.feedback(guess, secret));
+            }
+        }
+    }
+
+    @Test
+    public void testReplace() throws IOException {
+        ScoreMatrix.write(file, 4, 6);
+        ScoreMatrix.write(file, 3, 5);
+        assertEquals(125, ScoreMatrix.load(file).capacity());
+        // No temporary file is left.
+        assertEquals(1, dir.toFile().listFiles().length);
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncated() throws IOException {
+        ScoreMatrix.write(file, 4, 6);
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(),
+                "rw")) {
+            raf.setLength(raf.length() - 1);
+        }
+        ScoreMatrix.load(file);
+    }
+
+    @Test(expected = IOException.class)
+    public void testCorruptHeader() throws IOException {
+        ScoreMatrix.write(file, 4, 6);
+        // The width is the 6th byte of the header.
+        poke(5, 20);
+        ScoreMatrix.load(file);
+    }
+
+    @Test(expected = IOException.class)
+    public void testNoMatrix() throws IOException {
+        ScoreMatrix.write(file, 4, 6);
+        poke(0, 0);
+        ScoreMatrix.load(file);
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2011 Ikarus, René Kübler, Andreas J.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package game;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the game journal: games read back equal the written ones, and
+ * partly written data is cut when a journal is opened again.
+ */
+public class GameJournalTest {
+    private File file;
+    private File indexFile;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("jamm-journal", ".jnl");
+        file.delete();
+        indexFile = new File(file.getPath() + "."
+                + GameJournal.INDEX_EXTENSION);
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+        indexFile.delete();
+    }
+
+    /**
+     * Play a game with fixed guesses.
+     *
+     * @param secret The secret code.
+     * @param turns The number of guesses.
+     * @return The control interface of the game.
+     */
+    private static ControlInterface play(int[] secret, int turns) {
+        ControlInterface ci = new ControlInterface();
+        ci.newGame();
+        ci.setSecretCode(secret);
+        for (int i = 0; i < turns; i++) {
+            ci.submitTurn(i, new int[] {i % 6, 1, 2, 3});
+        }
+        return ci;
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        GameJournal journal = new GameJournal(file.getPath());
+        for (int g = 0; g < 10; g++) {
+            ControlInterface ci = play(new int[] {g % 6, 5, 4, 3}, g % 5);
+            assertEquals(g, journal.append(ci));
+        }
+        journal.close();
+
+        journal = new GameJournal(file.getPath());
+        assertEquals(10, journal.getGameCount());
+        for (int g = 0; g < 10; g++) {
+            ControlInterface expected = play(new int[] {g % 6, 5, 4, 3},
+                    g % 5);
+            ControlInterface ci = journal.load(g);
+            assertEquals(g % 5, journal.getTurnCount(g));
+            assertEquals(4, journal.getWidth(g));
+            assertEquals(6, journal.getColQuant(g));
+            assertEquals(expected.history(), ci.history());
+            assertEquals(expected.getActiveRowNumber(),
+                    ci.getActiveRowNumber());
+        }
+        journal.close();
+    }
+
+    @Test
+    public void testAppendTurn() throws IOException {
+        GameJournal journal = new GameJournal(file.getPath());
+        ControlInterface ci = play(new int[] {0, 1, 2, 3}, 0);
+        journal.append(ci);
+        for (int i = 0; i < 3; i++) {
+            ci.submitTurn(i, new int[] {i, i, i, i});
+            journal.appendTurn(ci);
+        }
+        assertEquals(3, journal.getTurnCount(0));
+        assertEquals(ci.history(), journal.load(0).history());
+        journal.close();
+    }
+
+    @Test
+    public void testRecoverPartlyWrittenTurn() throws IOException {
+        writeGames(3);
+        long size = file.length();
+        truncate(size - 1);
+        GameJournal journal = new GameJournal(file.getPath());
+        assertEquals(3, journal.getGameCount());
+        assertEquals(1, journal.getTurnCount(2));
+        // Appending continues after the last complete turn.
+        journal.append(play(new int[] {1, 1, 1, 1}, 2));
+        assertEquals(1, journal.getTurnCount(2));
+        assertEquals(2, journal.getTurnCount(3));
+        journal.close();
+    }
+
+    @Test
+    public void testRecoverPartlyWrittenHeader() throws IOException {
+        writeGames(3);
+        long gameSize = (file.length() - 8) / 3;
+        // Cut within the header of the last game.
+        truncate(8 + 2 * gameSize + 3);
+        GameJournal journal = new GameJournal(file.getPath());
+        assertEquals(2, journal.getGameCount());
+        assertEquals(2, journal.getTurnCount(1));
+        assertEquals(8 + 2 * gameSize, file.length());
+        journal.close();
+    }
+
+    /**
+     * Write a journal with games of two turns each.
+     *
+     * @param games The number of games.
+     * @throws IOException If writing failed.
+     */
+    private void writeGames(int games) throws IOException {
+        GameJournal journal = new GameJournal(file.getPath());
+        for (int g = 0; g < games; g++) {
+            journal.append(play(new int[] {5, 4, 3, 2}, 2));
+        }
+        journal.close();
+    }
+
+    /**
+     * Cut the journal file like a crash while writing.
+     *
+     * @param size The new size.
+     * @throws IOException If the file can not be truncated.
+     */
+    private void truncate(long size) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(size);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2011 Ikarus, René Kübler, Andreas J.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package game;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the binary save format: saved games are loaded unchanged,
+ * invalid data is rejected.
+ */
+public class SaveFormatTest {
+
+    /**
+     * Create a game with some played rows.
+     *
+     * @param width The game width.
+     * @param colQuant The quantity of colors.
+     * @param turns The number of guesses.
+     * @return The control interface of the game.
+     */
+    private static ControlInterface play(int width, int colQuant,
+            int turns) {
+        ControlInterface ci = new ControlInterface();
+        ci.setSettingDoubleCol(true);
+        ci.setSettingColQuant(colQuant);
+        ci.setSettingWidth(width);
+        ci.setSettingMaxTries(12);
+        ci.newGame();
+        int[] secret = new int[width];
+        for (int i = 0; i < width; i++) {
+            secret[i] = (i * 5 + 1) % colQuant;
+        }
+        ci.setSecretCode(secret);
+        for (int t = 0; t < turns; t++) {
+            int[] guess = new int[width];
+            for (int i = 0; i < width; i++) {
+                guess[i] = (i + t) % colQuant;
+            }
+            ci.submitTurn(t, guess);
+        }
+        return ci;
+    }
+
+    /**
+     * Save a game to a buffer and load it again.
+     *
+     * @param ci The game.
+     * @return The loaded game.
+     * @throws IOException If loading failed.
+     */
+    private static ControlInterface roundTrip(ControlInterface ci)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(ci.getSaveSize());
+        ci.save(buffer);
+        assertFalse(buffer.hasRemaining());
+        buffer.flip();
+        ControlInterface loaded = new ControlInterface();
+        loaded.load(buffer);
+        return loaded;
+    }
+
+    /**
+     * Check that two games are equal.
+     *
+     * @param expected The saved game.
+     * @param actual The loaded game.
+     */
+    private static void assertSameGame(ControlInterface expected,
+            ControlInterface actual) {
+        assertEquals(expected.getSettingWidth(), actual.getSettingWidth());
+        assertEquals(expected.getSettingColQuant(),
+                actual.getSettingColQuant());
+        assertEquals(expected.getSettingMaxTries(),
+                actual.getSettingMaxTries());
+        assertEquals(expected.getSettingDoubleCol(),
+                actual.getSettingDoubleCol());
+        assertEquals(expected.getGameEnded(), actual.getGameEnded());
+        assertEquals(expected.getActiveRowNumber(),
+                actual.getActiveRowNumber());
+        assertEquals(expected.history(), actual.history());
+        assertEquals(expected.snapshot().getSecretCode(),
+                actual.snapshot().getSecretCode());
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        ControlInterface ci = play(4, 6, 3);
+        assertFalse(ci.getGameEnded());
+        assertEquals(3, ci.getActiveRowNumber());
+        assertSameGame(ci, roundTrip(ci));
+    }
+
+    @Test
+    public void testRoundTripLargeGame() throws IOException {
+        ControlInterface ci = play(8, 15, 5);
+        assertSameGame(ci, roundTrip(ci));
+    }
+
+    @Test
+    public void testRoundTripEndedGame() throws IOException {
+        ControlInterface ci = play(4, 6, 12);
+        assertTrue(ci.getGameEnded());
+        assertSameGame(ci, roundTrip(ci));
+    }
+
+    @Test
+    public void testRoundTripFile() throws IOException,
+            ClassNotFoundException {
+        File file = File.createTempFile("jamm-save", ".jamm");
+        try {
+            ControlInterface ci = play(5, 8, 4);
+            ci.save(file.getPath());
+            ControlInterface loaded = new ControlInterface();
+            loaded.load(file.getPath());
+            assertSameGame(ci, loaded);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncated() throws IOException {
+        ControlInterface ci = play(4, 6, 3);
+        ByteBuffer buffer = ByteBuffer.allocate(ci.getSaveSize());
+        ci.save(buffer);
+        buffer.flip();
+        buffer.limit(buffer.limit() - 1);
+        new ControlInterface().load(buffer);
+    }
+
+    @Test(expected = IOException.class)
+    public void testTooWide() throws IOException {
+        ControlInterface ci = play(4, 6, 3);
+        ByteBuffer buffer = ByteBuffer.allocate(ci.getSaveSize());
+        ci.save(buffer);
+        // The width is the 7th byte of the header.
+        buffer.put(6, (byte) 20);
+        buffer.flip();
+        new ControlInterface().load(buffer);
+    }
+
+    @Test(expected = IOException.class)
+    public void testCorruptResult() throws IOException {
+        ControlInterface ci = play(4, 6, 3);
+        ByteBuffer buffer = ByteBuffer.allocate(ci.getSaveSize());
+        ci.save(buffer);
+        // The result of the last row is the last byte: 4 blacks, 4 whites.
+        buffer.put(buffer.limit() - 1, (byte) (4 * 5 + 4));
+        buffer.flip();
+        new ControlInterface().load(buffer);
+    }
+
+    @Test(expected = IOException.class)
+    public void testNoSaveGame() throws IOException {
+        new ControlInterface().load(ByteBuffer.wrap(new byte[32]));
+    }
+}